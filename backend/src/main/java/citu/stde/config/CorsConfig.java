@@ -1,6 +1,7 @@
 // File: src/main/java/citu/stde/config/CorsConfig.java
 package citu.stde.config;
 
+import citu.stde.dto.CursorPage;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.cors.CorsConfiguration;
@@ -22,6 +23,7 @@ public class CorsConfig implements WebMvcConfigurer {
                 .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS", "PATCH")
                 .allowedHeaders("*")
                 .allowCredentials(true)
+                .exposedHeaders("Authorization", CursorPage.NEXT_CURSOR_HEADER)
                 .maxAge(3600);
     }
 
@@ -46,8 +48,8 @@ public class CorsConfig implements WebMvcConfigurer {
         // Allow credentials (cookies, authorization headers)
         configuration.setAllowCredentials(true);
         
-        // Expose authorization header
-        configuration.setExposedHeaders(Arrays.asList("Authorization"));
+        // Expose authorization and pagination headers
+        configuration.setExposedHeaders(Arrays.asList("Authorization", CursorPage.NEXT_CURSOR_HEADER));
         
         // How long the response from a pre-flight request can be cached
         configuration.setMaxAge(3600L);
@@ -0,0 +1,61 @@
+package citu.stde.config;
+
+import com.google.api.client.googleapis.GoogleUtils;
+import com.google.api.client.http.apache.v2.ApacheHttpTransport;
+import com.google.api.client.util.SslUtils;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.conn.SystemDefaultRoutePlanner;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.net.ProxySelector;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One pooled HTTP transport for every Google Drive call.
+ * The Google trust store is loaded once and TLS connections are kept alive and reused.
+ */
+@Configuration
+public class GoogleDriveConfig {
+
+    @Value("${app.drive.http.max-connections:50}")
+    private int maxConnections;
+
+    @Value("${app.drive.http.idle-timeout-seconds:60}")
+    private long idleTimeoutSeconds;
+
+    @Bean(destroyMethod = "shutdown")
+    public ApacheHttpTransport driveHttpTransport() throws GeneralSecurityException, IOException {
+        SSLContext sslContext = SslUtils.getTlsSslContext();
+        SslUtils.initSslContext(sslContext, GoogleUtils.getCertificateTrustStore(), SslUtils.getPkixTrustManagerFactory());
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(
+                RegistryBuilder.<ConnectionSocketFactory>create()
+                        .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                        .register("https", new SSLConnectionSocketFactory(sslContext))
+                        .build(),
+                null, null, null, idleTimeoutSeconds, TimeUnit.SECONDS);
+        // Nearly all traffic goes to www.googleapis.com, so one route may use the whole pool
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        connectionManager.setValidateAfterInactivity(2000);
+
+        return new ApacheHttpTransport(HttpClientBuilder.create()
+                .useSystemProperties()
+                .setConnectionManager(connectionManager)
+                .setRoutePlanner(new SystemDefaultRoutePlanner(ProxySelector.getDefault()))
+                .evictIdleConnections(idleTimeoutSeconds, TimeUnit.SECONDS)
+                .disableRedirectHandling()
+                .disableAutomaticRetries()
+                .build());
+    }
+}
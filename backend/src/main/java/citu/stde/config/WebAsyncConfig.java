@@ -0,0 +1,32 @@
+package citu.stde.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Executor for asynchronous MVC handlers (WebAsyncTask, StreamingResponseBody).
+ *
+ * An evaluation waits most of its time in the LLM scheduler queue, so each one holds a
+ * thread for up to the evaluation deadline. On the shared 8-thread applicationTaskExecutor
+ * a handful of queued evaluations would stall every other async request; virtual threads
+ * make a waiting evaluation cost next to nothing. The LLM scheduler still bounds the real
+ * work; app.web.async.max-concurrent only caps runaway growth.
+ */
+@Configuration
+public class WebAsyncConfig implements WebMvcConfigurer {
+
+    @Value("${app.web.async.max-concurrent:1000}")
+    private int maxConcurrent;
+
+    // Registered after Boot's own configurer, so this executor replaces applicationTaskExecutor here only
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("mvc-async-");
+        executor.setVirtualThreads(true);
+        executor.setConcurrencyLimit(maxConcurrent);
+        configurer.setTaskExecutor(executor);
+    }
+}
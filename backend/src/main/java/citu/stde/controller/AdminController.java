@@ -1,13 +1,22 @@
 package citu.stde.controller;
 
+import citu.stde.dto.ActivityLogFilter;
+import citu.stde.dto.CursorPage;
+import citu.stde.entity.ActivityLog;
 import citu.stde.entity.User;
+import citu.stde.service.ActivityLogExporter;
 import citu.stde.service.AdminService;
 import citu.stde.service.UserService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
 import java.util.Map;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/admin")
@@ -16,6 +25,7 @@ public class AdminController {
 
     private final AdminService adminService;
     private final UserService userService;
+    private final ActivityLogExporter activityLogExporter;
 
     @GetMapping("/users")
     public ResponseEntity<?> getAllUsers() {
@@ -30,8 +40,57 @@ public class AdminController {
     }
 
     @GetMapping("/logs")
-    public ResponseEntity<?> getLogs() {
-        return ResponseEntity.ok(adminService.getAllLogs());
+    public ResponseEntity<?> getLogs(
+            @RequestParam(value = "action", required = false) String action,
+            @RequestParam(value = "email", required = false) String email,
+            @RequestParam(value = "from", required = false) String from,
+            @RequestParam(value = "to", required = false) String to,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        try {
+            CursorPage<ActivityLog> page = adminService.getLogs(ActivityLogFilter.of(action, email, from, to), cursor, limit);
+            return ResponseEntity.ok().headers(page.headers()).body(page.items());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // Streams every matching log as CSV (default) or NDJSON; same filters as /logs
+    @GetMapping("/logs/export")
+    public ResponseEntity<?> exportLogs(
+            @RequestParam(value = "format", required = false) String format,
+            @RequestParam(value = "action", required = false) String action,
+            @RequestParam(value = "email", required = false) String email,
+            @RequestParam(value = "from", required = false) String from,
+            @RequestParam(value = "to", required = false) String to) {
+        ActivityLogExporter.Format exportFormat;
+        ActivityLogFilter filter;
+        try {
+            exportFormat = ActivityLogExporter.Format.of(format);
+            filter = ActivityLogFilter.of(action, email, from, to);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", e.getMessage()));
+        }
+        Optional<ResponseBodyEmitter> export = activityLogExporter.start(filter, exportFormat);
+        if (export.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .body(Map.of("error", "Other exports are running. Please try again in a minute."));
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.contentType))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"activity-logs." + exportFormat.extension + "\"")
+                .body(export.get());
+    }
+
+    // Events per day and action, for the overview charts
+    @GetMapping("/logs/daily")
+    public ResponseEntity<?> getDailyActivity(@RequestParam(value = "days", required = false) Integer days) {
+        try {
+            return ResponseEntity.ok(adminService.getDailyActivity(days));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", e.getMessage()));
+        }
     }
 
     @GetMapping("/health")
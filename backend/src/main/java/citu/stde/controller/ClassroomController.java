@@ -4,7 +4,6 @@ import citu.stde.entity.Classroom;
 import citu.stde.entity.User;
 import citu.stde.repository.UserRepository;
 import citu.stde.service.ClassroomService;
-import citu.stde.repository.ClassroomRepository;
 import citu.stde.dto.ClassroomDTO;
 
 import lombok.RequiredArgsConstructor;
@@ -27,32 +26,16 @@ public class ClassroomController {
 
     private final ClassroomService classroomService;
     private final UserRepository userRepository;
-    private final ClassroomRepository classroomRepository;
 
     @GetMapping
-    public ResponseEntity<List<Classroom>> getAllClassrooms() {
-        return ResponseEntity.ok(classroomRepository.findAll());
+    public ResponseEntity<List<ClassroomDTO>> getAllClassrooms() {
+        return ResponseEntity.ok(classroomService.getAllClassrooms());
     }
 
     @GetMapping("/teacher")
     public ResponseEntity<List<ClassroomDTO>> getTeacherClassrooms(Authentication authentication) {
         UUID teacherId = getUserId(authentication);
-        List<Classroom> classrooms = classroomRepository.findByTeacherId(teacherId);
-        
-        List<ClassroomDTO> dtos = classrooms.stream()
-            .map(c -> ClassroomDTO.builder()
-                .id(c.getId())
-                .name(c.getName())
-                .section(c.getSection())
-                .classCode(c.getClassCode())
-                .teacherId(c.getTeacherId())
-                .driveFolderId(c.getDriveFolderId())
-                .createdAt(c.getCreatedAt())
-                .studentCount(c.getStudents() != null ? c.getStudents().size() : 0)
-                .build())
-            .collect(Collectors.toList());
-        
-        return ResponseEntity.ok(dtos);
+        return ResponseEntity.ok(classroomService.getTeacherClassrooms(teacherId));
     }
 
     // Pass driveFolderId to service
@@ -116,6 +99,21 @@ public class ClassroomController {
         }
     }
 
+    // Retry creating the Drive folder after provisioning failed
+    @PostMapping("/{id}/provision")
+    public ResponseEntity<?> retryProvisioning(@PathVariable UUID id, Authentication authentication) {
+        try {
+            UUID teacherId = getUserId(authentication);
+            return ResponseEntity.ok(classroomService.retryProvisioning(id, teacherId));
+        } catch (SecurityException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @PostMapping("/join")
     public ResponseEntity<?> joinClassroom(@RequestBody Map<String, String> payload, Authentication authentication) {
         try {
@@ -132,7 +130,7 @@ public class ClassroomController {
     }
 
     @GetMapping("/student")
-    public ResponseEntity<List<Classroom>> getStudentClassrooms(Authentication authentication) {
+    public ResponseEntity<List<ClassroomDTO>> getStudentClassrooms(Authentication authentication) {
         UUID studentId = getUserId(authentication);
         return ResponseEntity.ok(classroomService.getStudentClassrooms(studentId));
     }
@@ -1,5 +1,6 @@
 package citu.stde.controller;
 
+import citu.stde.dto.CursorPage;
 import citu.stde.dto.DocumentDTO;
 import citu.stde.service.DocumentService;
 import citu.stde.service.ClassroomService; 
@@ -47,11 +48,19 @@ public class DocumentController {
     }
 
     @GetMapping
-    public ResponseEntity<?> getUserDocuments(Authentication authentication) {
+    public ResponseEntity<?> getUserDocuments(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            Authentication authentication) {
         try {
             UUID userId = extractUserIdFromAuth(authentication);
-            List<DocumentDTO> documents = documentService.getUserDocuments(userId);
-            return ResponseEntity.ok(Map.of("documents", documents, "count", documents.size()));
+            CursorPage<DocumentDTO> page = documentService.getUserDocuments(userId, cursor, limit);
+            List<DocumentDTO> documents = page.items();
+            // count is the user's total, also when only one page is returned
+            long count = cursor == null && page.nextCursor() == null ? documents.size() : documentService.countUserDocuments(userId);
+            return ResponseEntity.ok().headers(page.headers()).body(Map.of("documents", documents, "count", count));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", "Failed to fetch documents: " + e.getMessage()));
         }
@@ -95,22 +104,30 @@ public class DocumentController {
     }
 
     @GetMapping("/classroom/{classId}")
-    public ResponseEntity<?> getClassDocuments(@PathVariable UUID classId, Authentication authentication) {
+    public ResponseEntity<?> getClassDocuments(
+            @PathVariable UUID classId,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            Authentication authentication) {
         try {
             UUID userId = extractUserIdFromAuth(authentication);
             User user = userRepository.findById(userId).orElseThrow();
             
             if ("TEACHER".equalsIgnoreCase(user.getUserType().name())) {
                 classroomService.verifyClassroomOwnership(classId, userId);
-                return ResponseEntity.ok(documentService.getDocumentsByClass(classId)); // Filtered by submitted=true
+                CursorPage<DocumentDTO> page = documentService.getDocumentsByClass(classId, cursor, limit); // Filtered by submitted=true
+                return ResponseEntity.ok().headers(page.headers()).body(page.items());
             } else {
                 if (!classroomService.isStudentEnrolled(classId, userId)) {
                     return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "You are not enrolled in this class"));
                 }
-                return ResponseEntity.ok(documentService.getDocumentsByClassAndStudent(classId, userId)); // Filtered by user
+                CursorPage<DocumentDTO> page = documentService.getDocumentsByClassAndStudent(classId, userId, cursor, limit); // Filtered by user
+                return ResponseEntity.ok().headers(page.headers()).body(page.items());
             }
         } catch (SecurityException e) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", "Failed to fetch class documents: " + e.getMessage()));
         }
@@ -1,15 +1,18 @@
 package citu.stde.controller;
 
+import citu.stde.dto.CursorPage;
 import citu.stde.dto.EvaluationDTO;
 import citu.stde.repository.UserRepository;
 import citu.stde.service.EvaluationService;
+import citu.stde.service.RequestDeadline;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus; 
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
 
-import java.util.List;
 import java.util.UUID;
 import java.util.Map;
 
@@ -22,20 +25,59 @@ public class EvaluationController {
     private final UserRepository userRepository;
 
     @PostMapping("/evaluate/{documentId}")
-    public ResponseEntity<?> evaluateDocument(
+    public WebAsyncTask<ResponseEntity<?>> evaluateDocument(
             @PathVariable UUID documentId,
             Authentication authentication) {
-        try {
-            UUID userId = getUserId(authentication);
-            return ResponseEntity.ok(evaluationService.evaluateDocument(documentId, userId));
-        } catch (RuntimeException e) {
-            // Check for our custom Quota error
-            if (e.getMessage().contains("TYPE:QUOTA_EXCEEDED")) {
-                String cleanMessage = e.getMessage().replace("TYPE:QUOTA_EXCEEDED|", "");
-                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(Map.of("error", cleanMessage));
+        UUID userId = getUserId(authentication);
+        RequestDeadline deadline = evaluationService.newDeadline();
+
+        // Runs off the servlet thread so a disconnect or timeout can cancel the work in progress
+        WebAsyncTask<ResponseEntity<?>> task = new WebAsyncTask<>(deadline.remainingMillis() + 5000, () -> {
+            try {
+                return ResponseEntity.ok(evaluationService.evaluateDocument(documentId, userId, deadline));
+            } catch (RuntimeException e) {
+                // Check for our custom Quota error
+                if (e.getMessage().contains("TYPE:QUOTA_EXCEEDED")) {
+                    String cleanMessage = e.getMessage().replace("TYPE:QUOTA_EXCEEDED|", "");
+                    return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(Map.of("error", cleanMessage));
+                }
+                // Another request holds the processing lease, or the upload is not stored yet:
+                // report the document's status and let the client retry
+                if (e.getMessage().contains("TYPE:ALREADY_PROCESSING")) {
+                    return busy(e.getMessage().replace("TYPE:ALREADY_PROCESSING|", ""), "PROCESSING");
+                }
+                if (e.getMessage().contains("TYPE:STILL_UPLOADING")) {
+                    return busy(e.getMessage().replace("TYPE:STILL_UPLOADING|", ""), "PENDING_STORAGE");
+                }
+                if (e.getMessage().contains("TYPE:TIMEOUT")) {
+                    String cleanMessage = e.getMessage().replace("TYPE:TIMEOUT|", "");
+                    return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(Map.of("error", cleanMessage));
+                }
+                // Cancelled after a disconnect or timeout (already answered), or by shutdown
+                if (e.getMessage().contains("TYPE:CANCELLED")) {
+                    String cleanMessage = e.getMessage().replace("TYPE:CANCELLED|", "");
+                    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                            .header(HttpHeaders.RETRY_AFTER, "5")
+                            .body(Map.of("error", cleanMessage));
+                }
+                throw e;
             }
-            throw e;
-        }
+        });
+        task.onTimeout(() -> {
+            deadline.cancel();
+            return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(Map.of("error", "The evaluation took too long and was stopped. Please try again."));
+        });
+        task.onError(() -> {
+            deadline.cancel(); // Client went away
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", "Evaluation was cancelled."));
+        });
+        return task;
+    }
+
+    private static ResponseEntity<?> busy(String message, String status) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .header(HttpHeaders.RETRY_AFTER, "5")
+                .body(Map.of("error", message, "status", status));
     }
 
     // Get Usage Stats
@@ -54,9 +96,17 @@ public class EvaluationController {
     }
 
     @GetMapping("/user")
-    public ResponseEntity<List<EvaluationDTO>> getUserEvaluations(Authentication authentication) {
+    public ResponseEntity<?> getUserEvaluations(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            Authentication authentication) {
         UUID userId = getUserId(authentication);
-        return ResponseEntity.ok(evaluationService.getUserEvaluations(userId));
+        try {
+            CursorPage<EvaluationDTO> page = evaluationService.getUserEvaluations(userId, cursor, limit);
+            return ResponseEntity.ok().headers(page.headers()).body(page.items());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", e.getMessage()));
+        }
     }
 
     @PutMapping("/override/{documentId}")
@@ -0,0 +1,11 @@
+package citu.stde.dto;
+
+import lombok.*;
+import java.time.LocalDate;
+
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class ActivityCountDTO {
+    private LocalDate day; // UTC
+    private String action;
+    private long count;
+}
@@ -0,0 +1,39 @@
+package citu.stde.dto;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Optional conditions on the admin activity log; null means "any".
+ * The time range is [from, to).
+ */
+public record ActivityLogFilter(String action, String email, Instant from, Instant to) {
+
+    public static final ActivityLogFilter NONE = new ActivityLogFilter(null, null, null, null);
+
+    /**
+     * Builds a filter from request parameters; blank values are ignored.
+     * @throws IllegalArgumentException if a time is not ISO-8601 or the range is empty
+     */
+    public static ActivityLogFilter of(String action, String email, String from, String to) {
+        ActivityLogFilter filter = new ActivityLogFilter(blankToNull(action), blankToNull(email),
+                parseTime("from", from), parseTime("to", to));
+        if (filter.from() != null && filter.to() != null && !filter.from().isBefore(filter.to())) {
+            throw new IllegalArgumentException("'from' must be before 'to'");
+        }
+        return filter;
+    }
+
+    private static Instant parseTime(String name, String value) {
+        if (value == null || value.isBlank()) return null;
+        try {
+            return Instant.parse(value.trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid '" + name + "' time; expected ISO-8601 such as 2025-01-31T00:00:00Z");
+        }
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+}
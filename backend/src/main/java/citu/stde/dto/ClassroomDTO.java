@@ -1,5 +1,6 @@
 package citu.stde.dto;
 
+import citu.stde.entity.ProvisioningStatus;
 import lombok.*;
 import java.util.UUID;
 import java.time.Instant;
@@ -12,6 +13,7 @@ public class ClassroomDTO {
     private String classCode;
     private UUID teacherId;
     private String driveFolderId;
+    private ProvisioningStatus provisioningStatus;
     private Instant createdAt;
     private int studentCount;
 }
\ No newline at end of file
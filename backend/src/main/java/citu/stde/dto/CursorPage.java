@@ -0,0 +1,23 @@
+package citu.stde.dto;
+
+import org.springframework.http.HttpHeaders;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated list.
+ * @param nextCursor Cursor for the following page; null on the last page
+ */
+public record CursorPage<T>(List<T> items, String nextCursor) {
+
+    // Listing endpoints keep their response bodies and return the next cursor in this header
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    public HttpHeaders headers() {
+        HttpHeaders headers = new HttpHeaders();
+        if (nextCursor != null) {
+            headers.set(NEXT_CURSOR_HEADER, nextCursor);
+        }
+        return headers;
+    }
+}
@@ -1,5 +1,6 @@
 package citu.stde.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
 import java.util.UUID;
@@ -30,11 +31,20 @@ public class Classroom {
 
     @Column(name = "drive_folder_id")
     private String driveFolderId;
+
+    // Null on rows created before provisioning existed; those always have their folder
+    @Enumerated(EnumType.STRING)
+    @Column(name = "provisioning_status", length = 20)
+    @Builder.Default
+    private ProvisioningStatus provisioningStatus = ProvisioningStatus.READY;
+
     
     @Column(name = "created_at")
     @Builder.Default
     private Instant createdAt = Instant.now();
 
+    // Never serialized: list endpoints use ClassroomDTO with a counted studentCount
+    @JsonIgnore
     @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(
         name = "student_enrollments",
@@ -45,6 +45,10 @@ public class Document {
     @Column(name = "content_hash", length = 64)
     private String contentHash;
 
+    // SHA-256 of the file bytes; key of the local BlobCache copy
+    @Column(name = "blob_hash", length = 64)
+    private String blobHash;
+
     @Column(name = "is_submitted")
     @Builder.Default
     private Boolean isSubmitted = false;
@@ -56,6 +60,18 @@ public class Document {
     @Enumerated(EnumType.STRING)
     private DocumentStatus status;
 
+    // Lease on a PROCESSING document: when it was claimed and by which node
+    @Column(name = "processing_claimed_at")
+    private Instant processingClaimedAt;
+
+    @Column(name = "processing_owner", length = 100)
+    private String processingOwner;
+
+    // Optimistic lock; status changes go through DocumentRepository.transitionStatus
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
+
     @PrePersist
     protected void onCreate() {
         if (uploadDate == null) {
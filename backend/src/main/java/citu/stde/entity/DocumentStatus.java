@@ -1,8 +1,22 @@
 package citu.stde.entity;
 
 public enum DocumentStatus {
+    PENDING_STORAGE, // Accepted and spooled locally; not yet in the storage backend
     UPLOADED,
     PROCESSING,
     COMPLETED,
-    FAILED
-}
\ No newline at end of file
+    FAILED;
+
+    /**
+     * Allowed status changes. PROCESSING is only entered through a lease claim and
+     * only left by finishing the evaluation; COMPLETED can also be set by a teacher override.
+     * PENDING_STORAGE is left once the upload worker has stored the file (or given up).
+     */
+    public boolean canTransitionTo(DocumentStatus target) {
+        return switch (this) {
+            case PENDING_STORAGE -> target == UPLOADED || target == FAILED;
+            case UPLOADED, FAILED, COMPLETED -> target == PROCESSING || target == COMPLETED;
+            case PROCESSING -> target == COMPLETED || target == FAILED;
+        };
+    }
+}
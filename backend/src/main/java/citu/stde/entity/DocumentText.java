@@ -0,0 +1,31 @@
+package citu.stde.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.Instant;
+import java.util.UUID;
+
+// Extracted plain text of a document, kept apart so loading a Document never pulls the text
+@Entity
+@Table(name = "document_texts")
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class DocumentText {
+
+    @Id
+    @Column(name = "document_id")
+    private UUID documentId;
+
+    // SHA-256 of the file bytes the text was extracted from (matches Document.blobHash)
+    @Column(name = "blob_hash", length = 64)
+    private String blobHash;
+
+    // SHA-256 of the text itself (becomes Document.contentHash on evaluation)
+    @Column(name = "content_hash", length = 64, nullable = false)
+    private String contentHash;
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String text;
+
+    @Column(name = "extracted_at", nullable = false)
+    private Instant extractedAt;
+}
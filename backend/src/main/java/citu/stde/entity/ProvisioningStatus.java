@@ -0,0 +1,7 @@
+package citu.stde.entity;
+
+public enum ProvisioningStatus {
+    PROVISIONING, // Saved; the Drive folder is being created in the background
+    READY,
+    FAILED        // Folder creation gave up; the teacher can retry
+}
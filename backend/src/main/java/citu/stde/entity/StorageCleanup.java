@@ -0,0 +1,36 @@
+package citu.stde.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.Instant;
+
+// A stored file (or Drive folder) whose row is gone and that StorageCleanupWorker still has to delete
+@Entity
+@Table(name = "storage_cleanup")
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class StorageCleanup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Document.storagePath ("backend:key"); null for Drive files known only by their id
+    @Column(name = "storage_path")
+    private String storagePath;
+
+    @Column(name = "drive_file_id")
+    private String driveFileId;
+
+    // Whose Drive (or storage identity) the delete runs as
+    @Column(name = "owner_principal", nullable = false)
+    private String ownerPrincipal;
+
+    @Column(name = "enqueued_at", nullable = false)
+    private Instant enqueuedAt;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+}
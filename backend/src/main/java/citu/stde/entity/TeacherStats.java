@@ -0,0 +1,30 @@
+package citu.stde.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.Instant;
+import java.util.UUID;
+
+// Teacher dashboard counters, kept up to date by TeacherStatsService instead of counted per load
+@Entity
+@Table(name = "teacher_stats")
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class TeacherStats {
+
+    @Id
+    @Column(name = "teacher_id")
+    private UUID teacherId;
+
+    @Column(name = "total_classes", nullable = false)
+    private long totalClasses;
+
+    // Distinct students across all of the teacher's classrooms
+    @Column(name = "total_students", nullable = false)
+    private long totalStudents;
+
+    @Column(name = "total_submissions", nullable = false)
+    private long totalSubmissions;
+
+    @Column(name = "reconciled_at", nullable = false)
+    private Instant reconciledAt;
+}
@@ -50,6 +50,10 @@ public class User {
 
     @Column(name = "password_updated_at")
     private Instant passwordUpdatedAt;
+
+    // Drive changes.list cursor of this teacher's Drive, for the folder sync; null until the first sync
+    @Column(name = "drive_changes_page_token")
+    private String driveChangesPageToken;
     
     @PrePersist
     protected void onCreate() {
@@ -2,10 +2,49 @@ package citu.stde.repository;
 
 import citu.stde.entity.ActivityLog;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.UUID;
 
 public interface ActivityLogRepository extends JpaRepository<ActivityLog, UUID> {
-    // Get latest logs first
-    List<ActivityLog> findAllByOrderByTimestampDesc();
+    // Filtered pages and exports of the logs: see ActivityLogSearch
+
+    // Recomputes the daily counts per action of the logs in [from, to); days are UTC
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO activity_log_daily (day, action, event_count) " +
+                   "SELECT CAST(l.timestamp AT TIME ZONE 'UTC' AS date), l.action, count(*) FROM activity_logs l " +
+                   "WHERE l.timestamp >= :from AND l.timestamp < :to GROUP BY 1, 2 " +
+                   "ON CONFLICT (day, action) DO UPDATE SET event_count = EXCLUDED.event_count",
+           nativeQuery = true)
+    int rollUp(@Param("from") Instant from, @Param("to") Instant to);
+
+    @Query(value = "SELECT max(day) FROM activity_log_daily", nativeQuery = true)
+    LocalDate findLastRolledUpDay();
+
+    @Query("SELECT min(l.timestamp) FROM ActivityLog l")
+    Instant findOldestTimestamp();
+
+    @Query(value = "SELECT day AS day, action AS action, event_count AS eventCount FROM activity_log_daily " +
+                   "WHERE day >= :from AND day < :to ORDER BY day, action",
+           nativeQuery = true)
+    List<DailyCount> findDailyCounts(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    // Live counts for the days not rolled up yet
+    @Query(value = "SELECT CAST(l.timestamp AT TIME ZONE 'UTC' AS date) AS day, l.action AS action, count(*) AS eventCount " +
+                   "FROM activity_logs l WHERE l.timestamp >= :from GROUP BY 1, 2 ORDER BY 1, 2",
+           nativeQuery = true)
+    List<DailyCount> countDailySince(@Param("from") Instant from);
+
+    interface DailyCount {
+        LocalDate getDay();
+        String getAction();
+        long getEventCount();
+    }
 }
\ No newline at end of file
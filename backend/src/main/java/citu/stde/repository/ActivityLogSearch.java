@@ -0,0 +1,94 @@
+package citu.stde.repository;
+
+import citu.stde.dto.ActivityLogFilter;
+import citu.stde.entity.ActivityLog;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Filtered reads of activity_logs in plain SQL.
+ *
+ * Only the filters that are set become conditions, so PostgreSQL plans each combination
+ * against its own index (action or user email, then time) and prunes the monthly
+ * partitions outside the time range; a catch-all "(? IS NULL OR ...)" query could not.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ActivityLogSearch {
+
+    private static final String SELECT = "SELECT id, action, details, user_email, \"timestamp\" FROM activity_logs";
+    private static final String NEWEST_FIRST = " ORDER BY \"timestamp\" DESC, id DESC";
+
+    private static final RowMapper<ActivityLog> ROW_MAPPER = (rs, rowNum) -> ActivityLog.builder()
+            .id(rs.getObject("id", UUID.class))
+            .action(rs.getString("action"))
+            .details(rs.getString("details"))
+            .userEmail(rs.getString("user_email"))
+            .timestamp(rs.getTimestamp("timestamp").toInstant())
+            .build();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * One keyset page of matching logs after the cursor, latest first.
+     */
+    public List<ActivityLog> findPage(ActivityLogFilter filter, Instant cursorAt, UUID cursorId, int limit) {
+        List<Object> args = new ArrayList<>();
+        // The redundant "<=" lets PostgreSQL skip the partitions newer than the cursor
+        String sql = SELECT + where(filter, args) +
+                " AND \"timestamp\" <= ? AND (\"timestamp\" < ? OR (\"timestamp\" = ? AND id < ?))" + NEWEST_FIRST + " LIMIT ?";
+        Timestamp at = Timestamp.from(cursorAt);
+        args.addAll(List.of(at, at, at, cursorId, limit));
+        return jdbcTemplate.query(sql, ROW_MAPPER, args.toArray());
+    }
+
+    /**
+     * Hands every matching log, latest first, to the consumer as it is read. Rows are fetched
+     * fetchSize at a time through a server-side cursor, which PostgreSQL only uses inside a
+     * transaction, so call this from one.
+     */
+    public void stream(ActivityLogFilter filter, int fetchSize, Consumer<ActivityLog> consumer) {
+        List<Object> args = new ArrayList<>();
+        String sql = SELECT + where(filter, args) + NEWEST_FIRST;
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setFetchSize(fetchSize);
+            for (int i = 0; i < args.size(); i++) {
+                statement.setObject(i + 1, args.get(i));
+            }
+            return statement;
+        }, (RowCallbackHandler) rs -> consumer.accept(ROW_MAPPER.mapRow(rs, rs.getRow())));
+    }
+
+    private static String where(ActivityLogFilter filter, List<Object> args) {
+        StringBuilder sql = new StringBuilder(" WHERE TRUE");
+        if (filter.action() != null) {
+            sql.append(" AND action = ?");
+            args.add(filter.action());
+        }
+        if (filter.email() != null) {
+            sql.append(" AND user_email = ?");
+            args.add(filter.email());
+        }
+        if (filter.from() != null) {
+            sql.append(" AND \"timestamp\" >= ?");
+            args.add(Timestamp.from(filter.from()));
+        }
+        if (filter.to() != null) {
+            sql.append(" AND \"timestamp\" < ?");
+            args.add(Timestamp.from(filter.to()));
+        }
+        return sql.toString();
+    }
+}
@@ -1,10 +1,14 @@
 package citu.stde.repository;
 
 import citu.stde.entity.Classroom;
+import citu.stde.entity.ProvisioningStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -20,13 +24,65 @@ public interface ClassroomRepository extends JpaRepository<Classroom, UUID> {
     // Finds a classroom only if the ID and the Teacher ID match.
     Optional<Classroom> findByIdAndTeacherId(UUID id, UUID teacherId);
 
+    // Teacher of a classroom, without loading it
+    @Query("SELECT c.teacherId FROM Classroom c WHERE c.id = :id")
+    Optional<UUID> findTeacherIdById(@Param("id") UUID id);
+
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM student_enrollments WHERE classroom_id = :classroomId AND student_id = :studentId)", nativeQuery = true)
+    boolean isEnrolled(@Param("classroomId") UUID classroomId, @Param("studentId") UUID studentId);
+
+    // Whether the student is already in any classroom of this teacher
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM student_enrollments se JOIN classrooms c ON c.id = se.classroom_id " +
+                   "WHERE c.teacher_id = :teacherId AND se.student_id = :studentId)", nativeQuery = true)
+    boolean hasStudentWithTeacher(@Param("teacherId") UUID teacherId, @Param("studentId") UUID studentId);
+
+    // Enrols a student without loading the classroom's student set
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO student_enrollments (classroom_id, student_id) VALUES (:classroomId, :studentId)", nativeQuery = true)
+    void enroll(@Param("classroomId") UUID classroomId, @Param("studentId") UUID studentId);
+
+    // Bulk delete, after its documents; Hibernate clears the student_enrollments rows first.
+    // Clears the persistence context
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM Classroom c WHERE c.id = :id")
+    int deleteClassroomById(@Param("id") UUID id);
+
     // Find all classes a student is enrolled in
     List<Classroom> findByStudents_Id(UUID studentId);
 
+    // Enrolled students per classroom, in one grouped query; classrooms without students are absent
+    @Query("SELECT c.id AS classroomId, COUNT(s) AS studentCount FROM Classroom c JOIN c.students s " +
+           "WHERE c.id IN :classroomIds GROUP BY c.id")
+    List<StudentCount> countStudentsByClassroomIds(@Param("classroomIds") Collection<UUID> classroomIds);
+
+    interface StudentCount {
+        UUID getClassroomId();
+        long getStudentCount();
+    }
+
     // Count classes for dashboard
     long countByTeacherId(UUID teacherId);
     
     // ADD THIS METHOD - Count unique students across all of a teacher's classrooms
     @Query(value = "SELECT COUNT(DISTINCT student_id) FROM student_enrollments WHERE classroom_id IN (SELECT id FROM classrooms WHERE teacher_id = :teacherId)", nativeQuery = true)
     long countUniqueStudentsByTeacherId(@Param("teacherId") UUID teacherId);
+
+    // Classrooms whose Drive folder is still being created (resumed on startup)
+    List<Classroom> findByProvisioningStatus(ProvisioningStatus status);
+
+    // PROVISIONING -> READY once the folder exists; 0 if the classroom was deleted meanwhile
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE Classroom c SET c.driveFolderId = :folderId, c.provisioningStatus = citu.stde.entity.ProvisioningStatus.READY " +
+           "WHERE c.id = :id AND c.provisioningStatus = citu.stde.entity.ProvisioningStatus.PROVISIONING")
+    int completeProvisioning(@Param("id") UUID id, @Param("folderId") String folderId);
+
+    // Compare-and-set provisioning status change
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE Classroom c SET c.provisioningStatus = :to WHERE c.id = :id AND c.provisioningStatus = :from")
+    int transitionProvisioning(@Param("id") UUID id, @Param("from") ProvisioningStatus from, @Param("to") ProvisioningStatus to);
+
+    // Classrooms linked to a Drive folder (for the folder sync)
+    List<Classroom> findByDriveFolderIdIsNotNull();
 }
\ No newline at end of file
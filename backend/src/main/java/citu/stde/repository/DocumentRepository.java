@@ -1,12 +1,19 @@
 package citu.stde.repository;
 
+import citu.stde.dto.DocumentDTO;
 import citu.stde.entity.Document;
 import citu.stde.entity.DocumentStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
@@ -41,4 +48,94 @@ public interface DocumentRepository extends JpaRepository<Document, UUID> {
 
     // Get recent submissions for teacher (Pageable allows us to set the limit to 10 or whatever)
     List<Document> findByClassroom_TeacherIdAndIsSubmittedTrueOrderByUploadDateDesc(UUID teacherId, Pageable pageable);
-}
\ No newline at end of file
+
+    // Listing rows as DocumentDTOs in one query: owner name and score come from joins, not per-row lookups
+    String DOCUMENT_DTO_SELECT = "SELECT new citu.stde.dto.DocumentDTO(d.id, d.filename, d.fileType, d.fileSize, d.uploadDate, d.status, " +
+            "CONCAT(u.firstname, ' ', u.lastname), e.overallScore, c.id, d.driveFileId, d.isSubmitted) " +
+            "FROM Document d JOIN d.user u LEFT JOIN d.classroom c " +
+            "LEFT JOIN Evaluation e ON e.document = d AND d.status = citu.stde.entity.DocumentStatus.COMPLETED ";
+
+    // Keyset condition: rows strictly after the cursor in (uploadDate DESC, id DESC) order
+    String AFTER_CURSOR = "AND (d.uploadDate < :cursorAt OR (d.uploadDate = :cursorAt AND d.id < :cursorId)) " +
+            "ORDER BY d.uploadDate DESC, d.id DESC";
+
+    @Query(DOCUMENT_DTO_SELECT + "WHERE u.id = :userId " + AFTER_CURSOR)
+    List<DocumentDTO> findDtosByUserId(@Param("userId") UUID userId,
+                                       @Param("cursorAt") Instant cursorAt, @Param("cursorId") UUID cursorId,
+                                       Pageable limit);
+
+    @Query(DOCUMENT_DTO_SELECT + "WHERE c.id = :classroomId AND d.isSubmitted = true " + AFTER_CURSOR)
+    List<DocumentDTO> findSubmittedDtosByClassroomId(@Param("classroomId") UUID classroomId,
+                                                     @Param("cursorAt") Instant cursorAt, @Param("cursorId") UUID cursorId,
+                                                     Pageable limit);
+
+    @Query(DOCUMENT_DTO_SELECT + "WHERE c.id = :classroomId AND u.id = :userId " + AFTER_CURSOR)
+    List<DocumentDTO> findDtosByClassroomIdAndUserId(@Param("classroomId") UUID classroomId, @Param("userId") UUID userId,
+                                                     @Param("cursorAt") Instant cursorAt, @Param("cursorId") UUID cursorId,
+                                                     Pageable limit);
+
+    // Latest submissions across a teacher's classrooms, with scores, for the dashboard feed
+    @Query(DOCUMENT_DTO_SELECT + "WHERE c.teacherId = :teacherId AND d.isSubmitted = true ORDER BY d.uploadDate DESC, d.id DESC")
+    List<DocumentDTO> findRecentSubmittedDtosByTeacherId(@Param("teacherId") UUID teacherId, Pageable limit);
+
+    // Bulk delete of every document in a classroom (evaluations and texts first)
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM Document d WHERE d.classroom.id = :classroomId")
+    int deleteByClassroomId(@Param("classroomId") UUID classroomId);
+
+    long countByClassroomIdAndIsSubmittedTrue(UUID classroomId);
+
+    // Whether a Drive file is already tracked as a document
+    boolean existsByDriveFileId(String driveFileId);
+
+    // Current status straight from the database (bypasses the persistence context)
+    @Query("SELECT d.status FROM Document d WHERE d.id = :id")
+    Optional<DocumentStatus> findStatusById(@Param("id") UUID id);
+
+    // Compare-and-set status change: only applies if status and version are unchanged since the document was read
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE Document d SET d.status = :to, d.processingClaimedAt = :claimedAt, d.processingOwner = :owner, d.version = d.version + 1 " +
+           "WHERE d.id = :id AND d.status = :from AND d.version = :version")
+    int transitionStatus(@Param("id") UUID id, @Param("from") DocumentStatus from, @Param("version") Long version,
+                         @Param("to") DocumentStatus to, @Param("claimedAt") Instant claimedAt, @Param("owner") String owner);
+
+    // Content hash is written by the lease holder while PROCESSING; does not bump the version
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE Document d SET d.contentHash = :hash WHERE d.id = :id AND d.processingOwner = :owner")
+    int updateContentHash(@Param("id") UUID id, @Param("hash") String hash, @Param("owner") String owner);
+
+    // Document with its owner and classroom loaded, for background workers (no open session there)
+    @Query("SELECT d FROM Document d JOIN FETCH d.user LEFT JOIN FETCH d.classroom WHERE d.id = :id")
+    Optional<Document> findWithOwnerById(@Param("id") UUID id);
+
+    // PENDING_STORAGE -> UPLOADED once the upload worker has stored the file
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE Document d SET d.status = citu.stde.entity.DocumentStatus.UPLOADED, d.storagePath = :storagePath, " +
+           "d.isCloudFile = :isCloudFile, d.driveFileId = :driveFileId, d.driveWebViewLink = :driveWebViewLink, d.version = d.version + 1 " +
+           "WHERE d.id = :id AND d.status = citu.stde.entity.DocumentStatus.PENDING_STORAGE")
+    int completeStorage(@Param("id") UUID id, @Param("storagePath") String storagePath, @Param("isCloudFile") Boolean isCloudFile,
+                        @Param("driveFileId") String driveFileId, @Param("driveWebViewLink") String driveWebViewLink);
+
+    // Records which cached blob holds the file bytes; does not bump the version
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE Document d SET d.blobHash = :hash WHERE d.id = :id")
+    int updateBlobHash(@Param("id") UUID id, @Param("hash") String hash);
+
+    // Fail every PROCESSING document whose lease is older than the cutoff
+    @Modifying
+    @Transactional
+    @Query("UPDATE Document d SET d.status = citu.stde.entity.DocumentStatus.FAILED, d.processingClaimedAt = NULL, d.processingOwner = NULL, d.version = d.version + 1 " +
+           "WHERE d.status = citu.stde.entity.DocumentStatus.PROCESSING AND (d.processingClaimedAt IS NULL OR d.processingClaimedAt < :expiredBefore)")
+    int failExpiredLeases(@Param("expiredBefore") Instant expiredBefore);
+
+    // Fail every PROCESSING document leased by the given node (startup recovery / shutdown)
+    @Modifying
+    @Transactional
+    @Query("UPDATE Document d SET d.status = citu.stde.entity.DocumentStatus.FAILED, d.processingClaimedAt = NULL, d.processingOwner = NULL, d.version = d.version + 1 " +
+           "WHERE d.status = citu.stde.entity.DocumentStatus.PROCESSING AND d.processingOwner = :owner")
+    int failLeasesOwnedBy(@Param("owner") String owner);
+}
@@ -0,0 +1,19 @@
+package citu.stde.repository;
+
+import citu.stde.entity.DocumentText;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.UUID;
+
+@Repository
+public interface DocumentTextRepository extends JpaRepository<DocumentText, UUID> {
+
+    // Bulk delete of the texts of every document in a classroom
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM DocumentText t WHERE t.documentId IN (SELECT d.id FROM Document d WHERE d.classroom.id = :classroomId)")
+    int deleteByClassroomId(@Param("classroomId") UUID classroomId);
+}
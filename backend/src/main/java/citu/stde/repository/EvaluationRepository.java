@@ -1,8 +1,13 @@
 package citu.stde.repository;
 
 import citu.stde.entity.Evaluation;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -10,10 +15,23 @@ import java.util.UUID;
 @Repository
 public interface EvaluationRepository extends JpaRepository<Evaluation, UUID> {
     List<Evaluation> findByUserId(UUID userId);
+
+    // One page of a user's evaluations after the cursor, newest first, with their documents
+    @Query("SELECT e FROM Evaluation e JOIN FETCH e.document WHERE e.userId = :userId " +
+           "AND (e.createdAt < :cursorAt OR (e.createdAt = :cursorAt AND e.id < :cursorId)) " +
+           "ORDER BY e.createdAt DESC, e.id DESC")
+    List<Evaluation> findPageByUserId(@Param("userId") UUID userId,
+                                      @Param("cursorAt") Instant cursorAt, @Param("cursorId") UUID cursorId,
+                                      Pageable limit);
     
     Optional<Evaluation> findByDocumentId(UUID documentId);
 
     void deleteByDocumentId(UUID documentId);
 
+    // Bulk delete of every evaluation in a classroom
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM Evaluation e WHERE e.document.id IN (SELECT d.id FROM Document d WHERE d.classroom.id = :classroomId)")
+    int deleteByClassroomId(@Param("classroomId") UUID classroomId);
+
     Optional<Evaluation> findTopByUserIdAndDocument_ContentHashOrderByCreatedAtDesc(UUID userId, String contentHash);
 }
\ No newline at end of file
@@ -0,0 +1,34 @@
+package citu.stde.repository;
+
+import citu.stde.entity.StorageCleanup;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+public interface StorageCleanupRepository extends JpaRepository<StorageCleanup, Long> {
+
+    // Queues the stored files of every document in a classroom, in one statement
+    @Modifying(flushAutomatically = true)
+    @Transactional
+    @Query(value = "INSERT INTO storage_cleanup (storage_path, drive_file_id, owner_principal, enqueued_at, attempts) " +
+                   "SELECT d.storage_path, d.drive_file_id, :owner, CURRENT_TIMESTAMP, 0 FROM documents d " +
+                   "WHERE d.classroom_id = :classroomId AND (d.storage_path IS NOT NULL OR d.drive_file_id IS NOT NULL)",
+           nativeQuery = true)
+    int enqueueClassroomDocuments(@Param("classroomId") UUID classroomId, @Param("owner") String ownerPrincipal);
+
+    // Next entries after the given id, in queue order
+    @Query("SELECT s FROM StorageCleanup s WHERE s.id > :afterId ORDER BY s.id")
+    List<StorageCleanup> findBatchAfter(@Param("afterId") long afterId, Pageable limit);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM StorageCleanup s WHERE s.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,37 @@
+package citu.stde.repository;
+
+import citu.stde.entity.TeacherStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.UUID;
+
+public interface TeacherStatsRepository extends JpaRepository<TeacherStats, UUID> {
+
+    // Atomic counter updates; 0 if the teacher has no stats row yet (it is seeded on first read)
+    @Modifying(flushAutomatically = true)
+    @Transactional
+    @Query("UPDATE TeacherStats t SET t.totalClasses = t.totalClasses + :delta WHERE t.teacherId = :teacherId")
+    int addClasses(@Param("teacherId") UUID teacherId, @Param("delta") long delta);
+
+    @Modifying(flushAutomatically = true)
+    @Transactional
+    @Query("UPDATE TeacherStats t SET t.totalStudents = t.totalStudents + :delta WHERE t.teacherId = :teacherId")
+    int addStudents(@Param("teacherId") UUID teacherId, @Param("delta") long delta);
+
+    @Modifying(flushAutomatically = true)
+    @Transactional
+    @Query("UPDATE TeacherStats t SET t.totalSubmissions = t.totalSubmissions + :delta WHERE t.teacherId = :teacherId")
+    int addSubmissions(@Param("teacherId") UUID teacherId, @Param("delta") long delta);
+
+    // Distinct students can only be recounted; used when a classroom and its enrolments go away
+    @Modifying(flushAutomatically = true)
+    @Transactional
+    @Query(value = "UPDATE teacher_stats SET total_students = (SELECT COUNT(DISTINCT se.student_id) FROM student_enrollments se " +
+                   "JOIN classrooms c ON c.id = se.classroom_id WHERE c.teacher_id = :teacherId) WHERE teacher_id = :teacherId",
+           nativeQuery = true)
+    int recountStudents(@Param("teacherId") UUID teacherId);
+}
@@ -2,8 +2,11 @@ package citu.stde.repository;
 
 import citu.stde.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 import java.util.UUID;
@@ -14,4 +17,16 @@ public interface UserRepository extends JpaRepository<User, UUID> {
 
     @Query("SELECT u.id FROM User u WHERE u.email = :email")
     Optional<UUID> getIdByEmail(String email);
+
+    // Sets the teacher's first Drive changes cursor, unless another node already did
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE User u SET u.driveChangesPageToken = :token WHERE u.id = :id AND u.driveChangesPageToken IS NULL")
+    int initDriveChangesPageToken(@Param("id") UUID id, @Param("token") String token);
+
+    // Compare-and-set move of the Drive changes cursor: 0 if another node advanced it first
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query("UPDATE User u SET u.driveChangesPageToken = :next WHERE u.id = :id AND u.driveChangesPageToken = :current")
+    int advanceDriveChangesPageToken(@Param("id") UUID id, @Param("current") String current, @Param("next") String next);
 }
@@ -0,0 +1,78 @@
+package citu.stde.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.crypto.encrypt.Encryptors;
+import org.springframework.security.crypto.encrypt.TextEncryptor;
+import org.springframework.security.oauth2.client.JdbcOAuth2AuthorizedClientService;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.stereotype.Component;
+
+/**
+ * Google tokens in oauth2_authorized_client (V6 migration), so they survive restarts and
+ * every node sees them.
+ *
+ * The refresh token never expires, so it is stored AES-256-GCM encrypted
+ * (app.oauth2.token-encryption.password). The access token stays plain: it is only valid for an hour.
+ * Google sends a refresh token only on the consent screen; a later login without one keeps the stored token.
+ */
+@Component
+public class EncryptedOAuth2AuthorizedClientService extends JdbcOAuth2AuthorizedClientService {
+
+    private final TextEncryptor encryptor;
+
+    public EncryptedOAuth2AuthorizedClientService(JdbcOperations jdbcOperations,
+                                                  ClientRegistrationRepository clientRegistrationRepository,
+                                                  @Value("${app.oauth2.token-encryption.password}") String password,
+                                                  @Value("${app.oauth2.token-encryption.salt}") String salt) {
+        super(jdbcOperations, clientRegistrationRepository);
+        this.encryptor = Encryptors.delux(password, salt);
+    }
+
+    @Override
+    public void saveAuthorizedClient(OAuth2AuthorizedClient authorizedClient, Authentication principal) {
+        OAuth2RefreshToken refreshToken = authorizedClient.getRefreshToken();
+        if (refreshToken == null) {
+            OAuth2AuthorizedClient stored = loadAuthorizedClient(
+                    authorizedClient.getClientRegistration().getRegistrationId(), authorizedClient.getPrincipalName());
+            refreshToken = stored != null ? stored.getRefreshToken() : null;
+        }
+        if (refreshToken != null) {
+            refreshToken = new OAuth2RefreshToken(encryptor.encrypt(refreshToken.getTokenValue()), refreshToken.getIssuedAt());
+        }
+        super.saveAuthorizedClient(new OAuth2AuthorizedClient(authorizedClient.getClientRegistration(),
+                authorizedClient.getPrincipalName(), authorizedClient.getAccessToken(), refreshToken), principal);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T extends OAuth2AuthorizedClient> T loadAuthorizedClient(String clientRegistrationId, String principalName) {
+        OAuth2AuthorizedClient stored = super.loadAuthorizedClient(clientRegistrationId, principalName);
+        if (stored == null || stored.getRefreshToken() == null) {
+            return (T) stored;
+        }
+        String token = decrypt(stored.getRefreshToken(), principalName);
+        OAuth2RefreshToken refreshToken = token != null ? new OAuth2RefreshToken(token, stored.getRefreshToken().getIssuedAt()) : null;
+        return (T) new OAuth2AuthorizedClient(stored.getClientRegistration(), stored.getPrincipalName(),
+                stored.getAccessToken(), refreshToken);
+    }
+
+    // Null when the token cannot be decrypted (password changed): the next login asks for consent again
+    private String decrypt(OAuth2RefreshToken refreshToken, String principalName) {
+        String stored = refreshToken.getTokenValue();
+        try {
+            return encryptor.decrypt(stored);
+        } catch (RuntimeException e) {
+            if (stored.matches("[0-9a-f]+")) {
+                System.err.println("Warning: Cannot decrypt the refresh token of " + principalName + ": " + e.getMessage());
+                return null;
+            }
+            // Stored before encryption was added (Google tokens are not hex): used as is, encrypted on the next save
+            System.err.println("Warning: Unencrypted refresh token for " + principalName + "; it is encrypted on the next save");
+            return stored;
+        }
+    }
+}
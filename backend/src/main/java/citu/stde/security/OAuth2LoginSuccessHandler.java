@@ -8,6 +8,9 @@ import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientService;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
 import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.security.web.authentication.SimpleUrlAuthenticationSuccessHandler;
 import org.springframework.stereotype.Component;
@@ -20,18 +23,40 @@ import java.util.Optional;
 @Component
 public class OAuth2LoginSuccessHandler extends SimpleUrlAuthenticationSuccessHandler {
 
+    // Sent back to /oauth2/authorization/{id} to show Google's consent screen (see SecurityConfig)
+    static final String CONSENT_PARAMETER = "consent";
+    private static final String CONSENT_SHOWN_ATTRIBUTE = OAuth2LoginSuccessHandler.class.getName() + ".CONSENT_SHOWN";
+
     private final UserRepository userRepository;
     private final JwtUtil jwtUtil;
+    private final OAuth2AuthorizedClientService authorizedClientService;
 
-    public OAuth2LoginSuccessHandler(UserRepository userRepository, JwtUtil jwtUtil) {
+    public OAuth2LoginSuccessHandler(UserRepository userRepository, JwtUtil jwtUtil,
+                                     OAuth2AuthorizedClientService authorizedClientService) {
         this.userRepository = userRepository;
         this.jwtUtil = jwtUtil;
+        this.authorizedClientService = authorizedClientService;
     }
 
     @Override
     public void onAuthenticationSuccess(HttpServletRequest request, HttpServletResponse response,
                                         Authentication authentication) throws IOException, ServletException {
         
+        // Google returns a refresh token only on the consent screen. Without one stored (first
+        // login, or the stored one was lost), log in once more with the consent screen - only once.
+        boolean consentShown = request.getSession().getAttribute(CONSENT_SHOWN_ATTRIBUTE) != null;
+        request.getSession().removeAttribute(CONSENT_SHOWN_ATTRIBUTE);
+        if (authentication instanceof OAuth2AuthenticationToken oauthToken && !consentShown) {
+            String registrationId = oauthToken.getAuthorizedClientRegistrationId();
+            OAuth2AuthorizedClient client = authorizedClientService.loadAuthorizedClient(registrationId, oauthToken.getName());
+            if (client == null || client.getRefreshToken() == null) {
+                request.getSession().setAttribute(CONSENT_SHOWN_ATTRIBUTE, true);
+                response.sendRedirect(request.getContextPath() + "/oauth2/authorization/" + registrationId
+                        + "?" + CONSENT_PARAMETER + "=true");
+                return;
+            }
+        }
+
         OAuth2User oAuth2User = (OAuth2User) authentication.getPrincipal();
         
         // Extract user information from Google
@@ -0,0 +1,240 @@
+package citu.stde.service;
+
+import citu.stde.dto.ActivityLogFilter;
+import citu.stde.entity.ActivityLog;
+import citu.stde.repository.ActivityLogSearch;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streams the activity log as CSV or NDJSON.
+ *
+ * Rows come from a forward-only JDBC cursor (app.activity-log.export-fetch-size rows per
+ * round-trip) and are written to the output as they arrive, so an export of any size
+ * holds one fetch of rows in memory.
+ *
+ * Exports over HTTP run on the exporter's own threads, at most
+ * app.activity-log.export-max-concurrent at a time, and stop after
+ * app.activity-log.export-timeout-minutes; other async requests keep their own executor
+ * and timeouts.
+ */
+@Service
+@RequiredArgsConstructor
+public class ActivityLogExporter {
+
+    private static final String CSV_HEADER = "timestamp,action,user_email,details,id";
+
+    private final ActivityLogSearch activityLogSearch;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.activity-log.export-fetch-size:1000}")
+    private int fetchSize;
+
+    @Value("${app.activity-log.export-max-concurrent:2}")
+    private int maxConcurrent;
+
+    @Value("${app.activity-log.export-timeout-minutes:30}")
+    private long timeoutMinutes;
+
+    private Semaphore slots;
+    private ThreadPoolExecutor pool;
+
+    @PostConstruct
+    void init() {
+        slots = new Semaphore(maxConcurrent);
+        AtomicInteger threadCount = new AtomicInteger();
+        // Unbounded queue, but never more tasks than slots: a started export never waits for a thread
+        pool = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "log-export-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    public enum Format {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        public final String contentType;
+        public final String extension;
+
+        MediaType mediaType() {
+            return MediaType.parseMediaType(contentType);
+        }
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        /**
+         * @throws IllegalArgumentException for anything but csv or ndjson
+         */
+        public static Format of(String name) {
+            if (name == null || name.isBlank()) return CSV;
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported export format '" + name + "'; use csv or ndjson");
+            }
+        }
+    }
+
+    /**
+     * Starts an export on the exporter's threads, streaming into the returned emitter.
+     * @return empty if app.activity-log.export-max-concurrent exports are already running
+     */
+    public Optional<ResponseBodyEmitter> start(ActivityLogFilter filter, Format format) {
+        return start(filter, format, new ResponseBodyEmitter(TimeUnit.MINUTES.toMillis(timeoutMinutes)));
+    }
+
+    Optional<ResponseBodyEmitter> start(ActivityLogFilter filter, Format format, ResponseBodyEmitter emitter) {
+        if (!slots.tryAcquire()) {
+            meterRegistry.counter("stde.activity-log.exports", "result", "rejected").increment();
+            return Optional.empty();
+        }
+        try {
+            pool.execute(() -> {
+                try {
+                    OutputStream out = new BufferedOutputStream(new EmitterOutputStream(emitter, format.mediaType()), 64 * 1024);
+                    export(filter, format, out);
+                    out.close();
+                    emitter.complete();
+                    meterRegistry.counter("stde.activity-log.exports", "result", "ok").increment();
+                } catch (IOException | RuntimeException e) {
+                    // Timed out, client went away, or the query failed
+                    emitter.completeWithError(e);
+                    meterRegistry.counter("stde.activity-log.exports", "result", "failed").increment();
+                } finally {
+                    slots.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            slots.release(); // Shutting down
+            throw e;
+        }
+        return Optional.of(emitter);
+    }
+
+    /**
+     * Writes every log matching the filter, latest first. Does not close the stream.
+     * @return number of rows written
+     */
+    public long export(ActivityLogFilter filter, Format format, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        long[] rows = {0};
+        try {
+            if (format == Format.CSV) {
+                writer.write(CSV_HEADER);
+                writer.write('\n');
+            }
+            // Read-only transaction: PostgreSQL only honours the fetch size inside one
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            transaction.setReadOnly(true);
+            transaction.executeWithoutResult(status -> activityLogSearch.stream(filter, fetchSize, log -> {
+                try {
+                    writer.write(format == Format.CSV ? csvLine(log) : jsonLine(log));
+                    rows[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e); // Client went away; stops the query
+                }
+            }));
+            writer.flush();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            meterRegistry.counter("stde.activity-log.exported", "format", format.extension).increment(rows[0]);
+        }
+        return rows[0];
+    }
+
+    String csvLine(ActivityLog log) {
+        return String.join(",",
+                String.valueOf(log.getTimestamp()),
+                csv(log.getAction()),
+                csv(log.getUserEmail()),
+                csv(log.getDetails()),
+                String.valueOf(log.getId())) + "\n";
+    }
+
+    private String jsonLine(ActivityLog log) throws JsonProcessingException {
+        return objectMapper.writeValueAsString(log) + "\n";
+    }
+
+    // RFC 4180 quoting; cells that a spreadsheet would run as a formula get a leading quote
+    static String csv(String value) {
+        if (value == null || value.isEmpty()) return "";
+        if ("=+-@\t\r".indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+        return value;
+    }
+
+    // Sends each buffered chunk as it is written; fails once the emitter has timed out or completed
+    private static class EmitterOutputStream extends OutputStream {
+
+        private final ResponseBodyEmitter emitter;
+        private final MediaType mediaType;
+
+        EmitterOutputStream(ResponseBodyEmitter emitter, MediaType mediaType) {
+            this.emitter = emitter;
+            this.mediaType = mediaType;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return;
+            try {
+                emitter.send(Arrays.copyOfRange(b, off, off + len), mediaType);
+            } catch (IllegalStateException e) {
+                throw new IOException("Export stopped: " + e.getMessage(), e);
+            }
+        }
+    }
+}
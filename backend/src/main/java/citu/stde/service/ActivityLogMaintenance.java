@@ -0,0 +1,171 @@
+package citu.stde.service;
+
+import citu.stde.repository.ActivityLogRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the monthly partitions of activity_logs (see V4 migration) in shape.
+ *
+ * Daily, and at start-up: creates the partitions of the coming months, moves rows that
+ * landed in the default partition into their month, rolls up the days finished since the
+ * last rolled-up day (so days missed while no node ran are caught up), and drops the
+ * partitions older than app.activity-log.retention-months after rolling them up one last time. Dropping a partition is instant, unlike a DELETE.
+ * Each step is its own transaction under an advisory lock, so one node does it at a time.
+ */
+@Service
+@RequiredArgsConstructor
+public class ActivityLogMaintenance {
+
+    static final String PARTITION_PREFIX = "activity_logs_p";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final long LOCK_KEY = 0x5354444541435449L; // Any constant shared by all nodes
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final ActivityLogRepository activityLogRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.activity-log.partitions-ahead:2}")
+    private int partitionsAhead;
+
+    @Value("${app.activity-log.retention-months:24}")
+    private int retentionMonths;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void maintainOnStartup() {
+        maintain();
+    }
+
+    @Scheduled(cron = "${app.activity-log.maintenance-cron:0 10 0 * * *}", zone = "UTC")
+    public void maintain() {
+        if (!partitioned()) return;
+        try {
+            YearMonth current = YearMonth.now(ZoneOffset.UTC);
+            for (int i = 0; i <= partitionsAhead; i++) {
+                YearMonth month = current.plusMonths(i);
+                locked(() -> createPartition(month));
+            }
+            adoptDefaultRows();
+
+            LocalDate today = LocalDate.now(ZoneOffset.UTC);
+            locked(() -> activityLogRepository.rollUp(rollupStart(), startOf(today)));
+
+            YearMonth oldestKept = current.minusMonths(retentionMonths);
+            for (YearMonth month : partitionMonths()) {
+                if (month.isBefore(oldestKept)) locked(() -> dropPartition(month));
+            }
+        } catch (Exception e) {
+            System.err.println("Warning: Activity log maintenance failed: " + e.getMessage());
+        }
+    }
+
+    // Day after the last rolled-up one; the oldest log's day if nothing is rolled up yet
+    private Instant rollupStart() {
+        LocalDate last = activityLogRepository.findLastRolledUpDay();
+        if (last != null) return startOf(last.plusDays(1));
+        Instant oldest = activityLogRepository.findOldestTimestamp();
+        return oldest != null ? oldest : Instant.now();
+    }
+
+    // Months that got rows in the default partition (no partition yet, e.g. after downtime)
+    private void adoptDefaultRows() {
+        List<Timestamp> months = jdbcTemplate.queryForList(
+                "SELECT DISTINCT date_trunc('month', \"timestamp\" AT TIME ZONE 'UTC') FROM activity_logs_default",
+                Timestamp.class);
+        for (Timestamp month : months) {
+            YearMonth yearMonth = YearMonth.from(month.toLocalDateTime());
+            locked(() -> createPartition(yearMonth));
+        }
+    }
+
+    /**
+     * Creates and attaches the month's partition, moving in any rows the default partition
+     * holds for it. Returns false if it already exists.
+     */
+    boolean createPartition(YearMonth month) {
+        String name = partitionName(month);
+        if (exists(name)) return false;
+        Instant from = startOf(month.atDay(1));
+        Instant to = startOf(month.plusMonths(1).atDay(1));
+
+        jdbcTemplate.execute("CREATE TABLE " + name + " (LIKE activity_logs INCLUDING DEFAULTS)");
+        jdbcTemplate.update("WITH moved AS (DELETE FROM activity_logs_default WHERE \"timestamp\" >= ? AND \"timestamp\" < ? RETURNING *) " +
+                "INSERT INTO " + name + " SELECT * FROM moved", Timestamp.from(from), Timestamp.from(to));
+        jdbcTemplate.execute("ALTER TABLE activity_logs ATTACH PARTITION " + name +
+                " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+        meterRegistry.counter("stde.activity-log.partitions", "result", "created").increment();
+        return true;
+    }
+
+    /**
+     * Rolls the month up one last time, then drops its partition.
+     */
+    boolean dropPartition(YearMonth month) {
+        String name = partitionName(month);
+        if (!exists(name)) return false;
+        activityLogRepository.rollUp(startOf(month.atDay(1)), startOf(month.plusMonths(1).atDay(1)));
+        jdbcTemplate.execute("DROP TABLE " + name);
+        meterRegistry.counter("stde.activity-log.partitions", "result", "dropped").increment();
+        System.out.println("Dropped activity log partition " + name + " (older than " + retentionMonths + " months).");
+        return true;
+    }
+
+    public List<YearMonth> partitionMonths() {
+        return jdbcTemplate.queryForList(
+                        "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                        "WHERE i.inhparent = 'activity_logs'::regclass AND c.relname LIKE '" + PARTITION_PREFIX + "%' ORDER BY 1",
+                        String.class).stream()
+                .map(name -> YearMonth.parse(name.substring(PARTITION_PREFIX.length()), PARTITION_SUFFIX))
+                .toList();
+    }
+
+    // False on databases without the partitioned table (H2 in tests, or before the V4 migration)
+    private boolean partitioned() {
+        try {
+            return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = to_regclass('activity_logs'))",
+                    Boolean.class));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private boolean exists(String table) {
+        return jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, table);
+    }
+
+    // Runs the step in its own transaction unless another node holds the maintenance lock
+    private <T> void locked(Supplier<T> step) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            if (Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?)", Boolean.class, LOCK_KEY))) {
+                step.get();
+            }
+        });
+    }
+
+    public static String partitionName(YearMonth month) {
+        return PARTITION_PREFIX + month.format(PARTITION_SUFFIX);
+    }
+
+    private static Instant startOf(LocalDate day) {
+        return day.atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+}
@@ -0,0 +1,122 @@
+package citu.stde.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Activity log pipeline: callers only add an entry to a bounded in-memory queue, and a
+ * single writer thread inserts the queued entries with JDBC batch inserts, every
+ * app.activity-log.flush-interval-ms or as soon as a full batch is waiting.
+ *
+ * Logging never blocks a request: when the queue is full the new entry is dropped and
+ * counted. Entries still queued at shutdown are written before the application stops;
+ * entries of a batch the database rejects are counted as failed and not retried.
+ */
+@Service
+@RequiredArgsConstructor
+public class ActivityLogWriter {
+
+    static final String INSERT_SQL =
+            "INSERT INTO activity_logs (id, action, details, user_email, \"timestamp\") VALUES (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.activity-log.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${app.activity-log.batch-size:200}")
+    private int batchSize;
+
+    @Value("${app.activity-log.flush-interval-ms:1000}")
+    private long flushIntervalMillis;
+
+    private BlockingQueue<Entry> queue;
+    private ScheduledThreadPoolExecutor writer;
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+
+    @PostConstruct
+    void init() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        writer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "activity-log");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+
+        Gauge.builder("stde.activity-log.queue", queue, BlockingQueue::size)
+                .description("Activity log entries waiting to be written")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        writer.shutdown();
+        writer.awaitTermination(10, TimeUnit.SECONDS);
+        flush(); // Whatever arrived while the writer was stopping
+    }
+
+    /**
+     * Queues an entry; returns false if the queue is full and the entry was dropped.
+     */
+    public boolean append(String action, String email, String details) {
+        if (!queue.offer(new Entry(UUID.randomUUID(), action, email, details, Instant.now()))) {
+            meterRegistry.counter("stde.activity-log.events", "result", "dropped").increment();
+            return false;
+        }
+        if (queue.size() >= batchSize && flushQueued.compareAndSet(false, true)) {
+            try {
+                writer.execute(this::flush);
+            } catch (RuntimeException e) {
+                flushQueued.set(false); // Shutting down; the final flush picks it up
+            }
+        }
+        return true;
+    }
+
+    synchronized void flush() {
+        flushQueued.set(false);
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(List<Entry> batch) {
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (statement, entry) -> {
+                statement.setObject(1, entry.id());
+                statement.setString(2, entry.action());
+                statement.setString(3, entry.details());
+                statement.setString(4, entry.email());
+                statement.setTimestamp(5, Timestamp.from(entry.timestamp()));
+            });
+            meterRegistry.counter("stde.activity-log.events", "result", "written").increment(batch.size());
+        } catch (Exception e) {
+            System.err.println("Warning: Writing " + batch.size() + " activity log entries failed: " + e.getMessage());
+            meterRegistry.counter("stde.activity-log.events", "result", "failed").increment(batch.size());
+        }
+    }
+
+    record Entry(UUID id, String action, String email, String details, Instant timestamp) {
+    }
+}
@@ -1,15 +1,21 @@
 package citu.stde.service;
 
+import citu.stde.dto.ActivityCountDTO;
+import citu.stde.dto.ActivityLogFilter;
+import citu.stde.dto.CursorPage;
+import citu.stde.dto.PageCursor;
 import citu.stde.entity.ActivityLog;
 import citu.stde.repository.ActivityLogRepository;
+import citu.stde.repository.ActivityLogSearch;
 import lombok.RequiredArgsConstructor;
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
-import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -21,22 +27,49 @@ public class AdminService {
     private final ActivityLogRepository logRepository;
     private final DataSource dataSource;
     private final ChatClient.Builder chatClientBuilder;
+    private final KeysetPaging keysetPaging;
+    private final ActivityLogWriter activityLogWriter;
+    private final ActivityLogSearch activityLogSearch;
 
     // --- ACTIVITY LOGS ---
 
-    @Async // Run in background to not block main thread
+    // Queued and written in batches by ActivityLogWriter; never blocks the caller.
+    // Inside a transaction the entry is queued once it commits, so rolled-back actions are not logged.
     public void logActivity(String action, String email, String details) {
-        ActivityLog log = ActivityLog.builder()
-                .action(action)
-                .userEmail(email)
-                .details(details)
-                .timestamp(Instant.now())
-                .build();
-        logRepository.save(log);
+        AfterCommit.run(() -> activityLogWriter.append(action, email, details));
     }
 
-    public List<ActivityLog> getAllLogs() {
-        return logRepository.findAllByOrderByTimestampDesc();
+    public CursorPage<ActivityLog> getLogs(ActivityLogFilter filter, String cursor, Integer limit) {
+        PageCursor after = PageCursor.decode(cursor);
+        // The activity log only grows, so even a request without a cursor or limit gets one page
+        int size = keysetPaging.boundedPageSize(limit);
+        return keysetPaging.page(activityLogSearch.findPage(filter, after.at(), after.id(), size + 1), size,
+                log -> new PageCursor(log.getTimestamp(), log.getId()));
+    }
+
+    /**
+     * Events per day and action over the last {@code days} days (UTC), today included.
+     * Finished days come from the activity_log_daily rollups; yesterday and today are
+     * counted live, so the overview is current even before the nightly rollup has run.
+     */
+    public List<ActivityCountDTO> getDailyActivity(Integer days) {
+        int span = days != null ? days : 30;
+        if (span < 1 || span > 366) {
+            throw new IllegalArgumentException("days must be between 1 and 366");
+        }
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        LocalDate liveFrom = today.minusDays(1);
+
+        List<ActivityCountDTO> counts = new ArrayList<>();
+        logRepository.findDailyCounts(today.minusDays(span - 1), liveFrom).forEach(row -> counts.add(toDto(row)));
+        logRepository.countDailySince(liveFrom.atStartOfDay(ZoneOffset.UTC).toInstant()).stream()
+                .filter(row -> !row.getDay().isBefore(today.minusDays(span - 1)))
+                .forEach(row -> counts.add(toDto(row)));
+        return counts;
+    }
+
+    private static ActivityCountDTO toDto(ActivityLogRepository.DailyCount row) {
+        return new ActivityCountDTO(row.getDay(), row.getAction(), row.getEventCount());
     }
 
     // --- SYSTEM HEALTH ---
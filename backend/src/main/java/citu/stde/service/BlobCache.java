@@ -0,0 +1,292 @@
+package citu.stde.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * On-disk, content-addressed store for uploaded files, used as a cache in front of Drive.
+ *
+ * Blobs are named by the SHA-256 of their bytes and sharded as ab/cd/abcd....
+ * Uploads are written through, evaluations read through a memory mapping. Every read
+ * re-hashes the bytes and drops the blob if it no longer matches. The total size is kept under
+ * app.blob-cache.max-bytes by evicting the least recently used blobs.
+ */
+@Service
+@RequiredArgsConstructor
+public class BlobCache {
+
+    private static final Pattern SHA256_HEX = Pattern.compile("[0-9a-f]{64}");
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.blob-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.blob-cache.dir:${java.io.tmpdir}/stde-blobs}")
+    private String directory;
+
+    @Value("${app.blob-cache.max-bytes:2147483648}")
+    private long maxBytes;
+
+    private Path root;
+
+    // Blob hash -> size, in access order (least recently used first); guarded by "this"
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes = 0;
+
+    @PostConstruct
+    void init() throws IOException {
+        if (!enabled) return;
+        root = Paths.get(directory).toAbsolutePath();
+        Files.createDirectories(root);
+
+        // Rebuild the LRU order from the last access times left on disk
+        List<Path> blobs = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(root)) {
+            files.filter(Files::isRegularFile).forEach(file -> {
+                String name = file.getFileName().toString();
+                if (SHA256_HEX.matcher(name).matches()) {
+                    blobs.add(file);
+                } else {
+                    deleteQuietly(file); // Leftover temp file from an interrupted write
+                }
+            });
+        }
+        blobs.sort(Comparator.comparing(BlobCache::lastModified));
+        synchronized (this) {
+            for (Path blob : blobs) {
+                long size = Files.size(blob);
+                index.put(blob.getFileName().toString(), size);
+                totalBytes += size;
+            }
+            evictIfNeeded();
+        }
+
+        Gauge.builder("stde.blob-cache.bytes", this, BlobCache::currentBytes)
+                .description("Bytes held in the local blob cache")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Stores the stream's bytes and returns their SHA-256 (hex), which is the blob key.
+     */
+    public String put(InputStream in) throws IOException {
+        if (!enabled) {
+            throw new IllegalStateException("Blob cache is disabled");
+        }
+        MessageDigest digest = sha256();
+        Path temp = Files.createTempFile(root, "put-", ".tmp");
+        long size = 0;
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                    ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                    while (chunk.hasRemaining()) {
+                        channel.write(chunk);
+                    }
+                    size += read;
+                }
+                channel.force(false);
+            }
+
+            String hash = HexFormat.of().formatHex(digest.digest());
+            Path target = pathOf(hash);
+            Files.createDirectories(target.getParent());
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // Same content is already cached
+            }
+            synchronized (this) {
+                Long previous = index.put(hash, size);
+                if (previous == null) {
+                    totalBytes += size;
+                }
+                evictIfNeeded();
+            }
+            return hash;
+        } finally {
+            deleteQuietly(temp);
+        }
+    }
+
+    public String put(byte[] bytes) throws IOException {
+        return put(new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * Adds a file whose SHA-256 the caller already has (e.g. computed while spooling an upload).
+     * The file is hard-linked into the cache, so nothing is read or hashed here; it is only
+     * copied when the cache lives on another file system. A wrong hash is caught by open().
+     */
+    public void put(String hash, Path file) throws IOException {
+        if (!enabled) {
+            throw new IllegalStateException("Blob cache is disabled");
+        }
+        if (!SHA256_HEX.matcher(hash).matches()) {
+            throw new IllegalArgumentException("Not a SHA-256 hash: " + hash);
+        }
+        Path target = pathOf(hash);
+        Files.createDirectories(target.getParent());
+        try {
+            Files.createLink(target, file);
+        } catch (FileAlreadyExistsException e) {
+            // Same content is already cached
+        } catch (IOException | UnsupportedOperationException e) {
+            Path temp = Files.createTempFile(root, "put-", ".tmp");
+            try {
+                Files.copy(file, temp, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException alreadyCached) {
+                // Same content is already cached
+            } finally {
+                deleteQuietly(temp);
+            }
+        }
+        long size = Files.size(target);
+        synchronized (this) {
+            Long previous = index.put(hash, size);
+            if (previous == null) {
+                totalBytes += size;
+            }
+            evictIfNeeded();
+        }
+    }
+
+    /**
+     * Opens a blob as a stream over its memory-mapped file, after checking it against its
+     * hash. The bytes stay in the page cache; nothing is copied onto the heap here.
+     * @return empty if the blob is not cached (or was corrupt and has been dropped)
+     */
+    public Optional<InputStream> open(String hash) {
+        if (!enabled || hash == null || !SHA256_HEX.matcher(hash).matches()) {
+            return Optional.empty();
+        }
+        synchronized (this) {
+            if (index.get(hash) == null) { // get() also marks it as recently used
+                meterRegistry.counter("stde.blob-cache.requests", "result", "miss").increment();
+                return Optional.empty();
+            }
+        }
+
+        Path path = pathOf(hash);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Blob too large to map: " + size);
+            }
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            MessageDigest digest = sha256();
+            digest.update(mapped.duplicate());
+
+            if (!hash.equals(HexFormat.of().formatHex(digest.digest()))) {
+                System.err.println("Warning: Blob " + hash + " failed its checksum and was removed from the cache.");
+                meterRegistry.counter("stde.blob-cache.requests", "result", "corrupt").increment();
+                remove(hash);
+                return Optional.empty();
+            }
+
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+            meterRegistry.counter("stde.blob-cache.requests", "result", "hit").increment();
+            return Optional.of(new ByteBufferInputStream(mapped));
+        } catch (IOException e) {
+            System.err.println("Warning: Could not read cached blob " + hash + ": " + e.getMessage());
+            meterRegistry.counter("stde.blob-cache.requests", "result", "miss").increment();
+            remove(hash);
+            return Optional.empty();
+        }
+    }
+
+    public void remove(String hash) {
+        synchronized (this) {
+            Long size = index.remove(hash);
+            if (size != null) {
+                totalBytes -= size;
+            }
+        }
+        deleteQuietly(pathOf(hash));
+    }
+
+    // Caller holds the lock
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<String, Long>> eldest = index.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            eldest.remove();
+            totalBytes -= entry.getValue();
+            deleteQuietly(pathOf(entry.getKey()));
+            meterRegistry.counter("stde.blob-cache.evictions").increment();
+        }
+    }
+
+    private synchronized long currentBytes() {
+        return totalBytes;
+    }
+
+    private Path pathOf(String hash) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // Will be cleaned up on the next start
+        }
+    }
+}
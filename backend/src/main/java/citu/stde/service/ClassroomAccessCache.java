@@ -0,0 +1,176 @@
+package citu.stde.service;
+
+import citu.stde.repository.ClassroomRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Per-node cache of who may act on a classroom: its teacher and its enrolled students.
+ *
+ * Each classroom keeps its teacher id and an open-addressing set of student ids stored as
+ * raw long pairs, so a check is a hash lookup with no objects per member. Misses fall back to
+ * an EXISTS query and only positive answers are cached, so a student who joins on another
+ * node is never refused here. Enrolments are added after the joining transaction commits;
+ * a deleted classroom is dropped after its transaction commits.
+ */
+@Service
+@RequiredArgsConstructor
+public class ClassroomAccessCache {
+
+    private final ClassroomRepository classroomRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.acl-cache.max-classrooms:10000}")
+    private int maxClassrooms;
+
+    // Classroom id -> access entry, LRU-bounded; guarded by "entries"
+    private final Map<UUID, Access> entries = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, Access> eldest) {
+            return size() > maxClassrooms;
+        }
+    };
+
+    /**
+     * Whether the user is the classroom's teacher; false if the classroom does not exist.
+     */
+    public boolean isOwner(UUID classroomId, UUID userId) {
+        Access access;
+        synchronized (entries) {
+            access = entries.get(classroomId);
+        }
+        if (access == null) {
+            meterRegistry.counter("stde.acl-cache.requests", "result", "miss").increment();
+            UUID teacherId = classroomRepository.findTeacherIdById(classroomId).orElse(null);
+            if (teacherId == null) return false;
+            access = entry(classroomId, teacherId);
+        } else {
+            meterRegistry.counter("stde.acl-cache.requests", "result", "hit").increment();
+        }
+        return access.teacherId.equals(userId);
+    }
+
+    /**
+     * Whether the student is enrolled in the classroom; false if the classroom does not exist.
+     */
+    public boolean isEnrolled(UUID classroomId, UUID studentId) {
+        Access access;
+        synchronized (entries) {
+            access = entries.get(classroomId);
+            if (access != null && access.students.contains(studentId)) {
+                meterRegistry.counter("stde.acl-cache.requests", "result", "hit").increment();
+                return true;
+            }
+        }
+        meterRegistry.counter("stde.acl-cache.requests", "result", "miss").increment();
+        if (!classroomRepository.isEnrolled(classroomId, studentId)) {
+            return false;
+        }
+        if (access == null) {
+            UUID teacherId = classroomRepository.findTeacherIdById(classroomId).orElse(null);
+            if (teacherId == null) return true; // Deleted just now; don't cache
+            access = entry(classroomId, teacherId);
+        }
+        synchronized (entries) {
+            access.students.add(studentId);
+        }
+        return true;
+    }
+
+    /**
+     * Records a new enrolment once the current transaction commits.
+     */
+    public void enrolled(UUID classroomId, UUID studentId) {
+        AfterCommit.run(() -> {
+            synchronized (entries) {
+                Access access = entries.get(classroomId);
+                if (access != null) access.students.add(studentId);
+            }
+        });
+    }
+
+    /**
+     * Forgets a classroom (deleted, or its teacher or enrolments changed) once the current
+     * transaction commits.
+     */
+    public void invalidate(UUID classroomId) {
+        AfterCommit.run(() -> {
+            synchronized (entries) {
+                entries.remove(classroomId);
+            }
+        });
+    }
+
+    private Access entry(UUID classroomId, UUID teacherId) {
+        synchronized (entries) {
+            return entries.computeIfAbsent(classroomId, id -> new Access(teacherId));
+        }
+    }
+
+    private static final class Access {
+        final UUID teacherId;
+        final UuidSet students = new UuidSet();
+
+        Access(UUID teacherId) {
+            this.teacherId = teacherId;
+        }
+    }
+
+    /**
+     * Open-addressing hash set of UUIDs kept as (most, least) significant long pairs.
+     * The nil UUID marks empty slots and is never stored. Not thread-safe.
+     */
+    static final class UuidSet {
+        private long[] slots = new long[2 * 8];
+        private int size;
+
+        boolean contains(UUID id) {
+            long most = id.getMostSignificantBits();
+            long least = id.getLeastSignificantBits();
+            if (most == 0 && least == 0) return false;
+            for (int i = index(most, least, slots.length); ; i = (i + 2) % slots.length) {
+                if (slots[i] == most && slots[i + 1] == least) return true;
+                if (slots[i] == 0 && slots[i + 1] == 0) return false;
+            }
+        }
+
+        void add(UUID id) {
+            long most = id.getMostSignificantBits();
+            long least = id.getLeastSignificantBits();
+            if ((most == 0 && least == 0) || contains(id)) return;
+            if ((size + 1) * 4 > (slots.length / 2) * 3) { // Keep the load factor under 0.75
+                long[] old = slots;
+                slots = new long[old.length * 2];
+                for (int i = 0; i < old.length; i += 2) {
+                    if (old[i] != 0 || old[i + 1] != 0) insert(old[i], old[i + 1]);
+                }
+            }
+            insert(most, least);
+            size++;
+        }
+
+        int size() {
+            return size;
+        }
+
+        private void insert(long most, long least) {
+            int i = index(most, least, slots.length);
+            while (slots[i] != 0 || slots[i + 1] != 0) {
+                i = (i + 2) % slots.length;
+            }
+            slots[i] = most;
+            slots[i + 1] = least;
+        }
+
+        private static int index(long most, long least, int length) {
+            long hash = most * 0x9E3779B97F4A7C15L ^ least;
+            return (int) ((hash ^ (hash >>> 32)) & (length / 2 - 1)) * 2;
+        }
+    }
+}
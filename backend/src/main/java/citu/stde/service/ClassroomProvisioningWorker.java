@@ -0,0 +1,142 @@
+package citu.stde.service;
+
+import citu.stde.entity.Classroom;
+import citu.stde.entity.ProvisioningStatus;
+import citu.stde.entity.User;
+import citu.stde.repository.ClassroomRepository;
+import citu.stde.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the Drive folder of a new classroom in the background.
+ *
+ * The classroom is saved as PROVISIONING and returned to the teacher at once; this worker
+ * creates the folder in the teacher's Drive, retrying with exponential back-off, and moves
+ * the classroom to READY. Uploads to the classroom wait in the upload spool until then.
+ * Folders are tagged with the classroom id, so a retry after a lost response reuses the
+ * folder instead of creating a second one.
+ */
+@Service
+@RequiredArgsConstructor
+public class ClassroomProvisioningWorker {
+
+    private final ClassroomRepository classroomRepository;
+    private final UserRepository userRepository;
+    private final GoogleDriveService googleDriveService;
+    private final DocumentUploadWorker documentUploadWorker;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.classroom.provisioning.worker-threads:2}")
+    private int workerThreads;
+
+    @Value("${app.classroom.provisioning.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${app.classroom.provisioning.initial-backoff-ms:2000}")
+    private long initialBackoffMillis;
+
+    @Value("${app.classroom.provisioning.max-backoff-ms:300000}")
+    private long maxBackoffMillis;
+
+    private ScheduledThreadPoolExecutor workers;
+
+    @PostConstruct
+    void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        workers = new ScheduledThreadPoolExecutor(workerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "provision-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        workers.setRemoveOnCancelPolicy(true);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Unfinished classrooms stay PROVISIONING and are resumed on the next start
+        workers.shutdownNow();
+    }
+
+    /**
+     * Schedules folder creation for a classroom saved as PROVISIONING.
+     */
+    public void enqueue(UUID classroomId) {
+        workers.execute(() -> provision(classroomId, 1));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeProvisioning() {
+        List<Classroom> pending = classroomRepository.findByProvisioningStatus(ProvisioningStatus.PROVISIONING);
+        pending.forEach(classroom -> enqueue(classroom.getId()));
+        if (!pending.isEmpty()) {
+            System.out.println("Resuming provisioning of " + pending.size() + " classroom(s).");
+        }
+    }
+
+    private void provision(UUID classroomId, int attempt) {
+        Classroom classroom = classroomRepository.findById(classroomId).orElse(null);
+        if (classroom == null || classroom.getProvisioningStatus() != ProvisioningStatus.PROVISIONING) {
+            // Deleted, or another node finished it; either way nothing should keep waiting
+            documentUploadWorker.classroomReady(classroomId);
+            return;
+        }
+        User teacher = userRepository.findById(classroom.getTeacherId()).orElse(null);
+        if (teacher == null) {
+            giveUp(classroomId, "teacher not found");
+            return;
+        }
+
+        String owner = teacher.getEmail();
+        try {
+            String folderId = googleDriveService.findClassroomFolder(classroomId, owner).orElse(null);
+            if (folderId == null) {
+                folderId = googleDriveService.createFolder(classroom.getName() + " - " + classroom.getSection(), null, owner, classroomId);
+            }
+
+            if (classroomRepository.completeProvisioning(classroomId, folderId) == 0) {
+                // Deleted while we were creating the folder
+                googleDriveService.deleteFile(folderId, owner);
+                documentUploadWorker.classroomReady(classroomId);
+                return;
+            }
+            meterRegistry.counter("stde.classroom.provisioning", "result", "ready").increment();
+            documentUploadWorker.classroomReady(classroomId);
+        } catch (Exception e) {
+            if (attempt >= maxAttempts) {
+                giveUp(classroomId, e.getMessage());
+                return;
+            }
+            long delay = backoff(attempt);
+            System.err.println("Warning: Creating the Drive folder for classroom " + classroomId + " failed (attempt " + attempt + "), retrying in " + delay + " ms: " + e.getMessage());
+            meterRegistry.counter("stde.classroom.provisioning", "result", "retried").increment();
+            workers.schedule(() -> provision(classroomId, attempt + 1), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void giveUp(UUID classroomId, String reason) {
+        System.err.println("Error: Giving up creating the Drive folder for classroom " + classroomId + ": " + reason);
+        meterRegistry.counter("stde.classroom.provisioning", "result", "failed").increment();
+        // Waiting uploads keep waiting: they go ahead once retryProvisioning makes the classroom READY
+        classroomRepository.transitionProvisioning(classroomId, ProvisioningStatus.PROVISIONING, ProvisioningStatus.FAILED);
+    }
+
+    // Exponential back-off with jitter, capped at app.classroom.provisioning.max-backoff-ms
+    private long backoff(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 20));
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+    }
+}
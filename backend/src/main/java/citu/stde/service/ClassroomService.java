@@ -1,77 +1,92 @@
 package citu.stde.service;
 
+import citu.stde.dto.ClassroomDTO;
 import citu.stde.entity.Classroom;
-import citu.stde.entity.Document;
+import citu.stde.entity.ProvisioningStatus;
+import citu.stde.entity.StorageCleanup;
 import citu.stde.entity.User;
 import citu.stde.repository.ClassroomRepository;
 import citu.stde.repository.DocumentRepository;
+import citu.stde.repository.DocumentTextRepository;
 import citu.stde.repository.EvaluationRepository;
+import citu.stde.repository.StorageCleanupRepository;
 import citu.stde.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.io.IOException;
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class ClassroomService {
 
     private final ClassroomRepository classroomRepository;
-    private final GoogleDriveService googleDriveService;
     private final UserRepository userRepository;
     
     private final DocumentRepository documentRepository;
     private final EvaluationRepository evaluationRepository;
+    private final ClassroomProvisioningWorker classroomProvisioningWorker;
+    private final ClassroomAccessCache classroomAccessCache;
+    private final TeacherStatsService teacherStatsService;
+    private final StorageCleanupRepository storageCleanupRepository;
+    private final DocumentTextRepository documentTextRepository;
+    private final StorageCleanupWorker storageCleanupWorker;
 
     public void verifyClassroomOwnership(UUID classId, UUID teacherId) {
-        classroomRepository.findByIdAndTeacherId(classId, teacherId)
-            .orElseThrow(() -> new SecurityException("Unauthorized: User does not own this classroom or it does not exist."));
+        if (!classroomAccessCache.isOwner(classId, teacherId)) {
+            throw new SecurityException("Unauthorized: User does not own this classroom or it does not exist.");
+        }
     }
 
     public boolean isStudentEnrolled(UUID classId, UUID studentId) {
-        Classroom classroom = classroomRepository.findById(classId)
-                .orElseThrow(() -> new IllegalArgumentException("Classroom not found"));
-        
-        return classroom.getStudents().stream()
-                .anyMatch(student -> student.getId().equals(studentId));
+        return classroomAccessCache.isEnrolled(classId, studentId);
     }
 
-    // Accept existingFolderId (Optional)
-    @Transactional
+    // Accept existingFolderId (Optional). Not transactional: a new Drive folder is created
+    // by ClassroomProvisioningWorker after the classroom is saved, not while holding a transaction.
     public Classroom createClassroom(String name, String section, String classCode, String existingFolderId, UUID teacherId) {
         if (classroomRepository.findByClassCode(classCode).isPresent()) {
             throw new IllegalArgumentException("Class code '" + classCode + "' is already taken.");
         }
 
-        try {
-            String folderId;
-            
-            // Logic: Use existing ID if provided, otherwise create new folder
-            if (existingFolderId != null && !existingFolderId.trim().isEmpty()) {
-                folderId = existingFolderId.trim();
-                // (Optional: You could add a check here to verify the folder exists using googleDriveService)
-            } else {
-                String folderName = name + " - " + section;
-                folderId = googleDriveService.createFolder(folderName, null);
-            }
-
-            Classroom classroom = Classroom.builder()
-                    .name(name)
-                    .section(section)
-                    .teacherId(teacherId)
-                    .classCode(classCode)
-                    .driveFolderId(folderId)
-                    .build();
-
-            return classroomRepository.save(classroom);
-
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to create/link Google Drive folder: " + e.getMessage());
+        // Logic: Use existing ID if provided, otherwise provision a new folder in the background
+        boolean linkExisting = existingFolderId != null && !existingFolderId.trim().isEmpty();
+
+        Classroom classroom = Classroom.builder()
+                .name(name)
+                .section(section)
+                .teacherId(teacherId)
+                .classCode(classCode)
+                .driveFolderId(linkExisting ? existingFolderId.trim() : null)
+                .provisioningStatus(linkExisting ? ProvisioningStatus.READY : ProvisioningStatus.PROVISIONING)
+                .build();
+
+        Classroom saved = classroomRepository.save(classroom);
+        teacherStatsService.classroomCreated(teacherId);
+        if (!linkExisting) {
+            classroomProvisioningWorker.enqueue(saved.getId());
         }
+        return saved;
+    }
+
+    /**
+     * Tries again to create the Drive folder of a classroom whose provisioning failed.
+     */
+    public Classroom retryProvisioning(UUID classId, UUID teacherId) {
+        Classroom classroom = classroomRepository.findByIdAndTeacherId(classId, teacherId)
+                .orElseThrow(() -> new SecurityException("Unauthorized: User does not own this classroom."));
+        if (classroomRepository.transitionProvisioning(classId, ProvisioningStatus.FAILED, ProvisioningStatus.PROVISIONING) == 0) {
+            throw new IllegalArgumentException("Classroom folder is not in a failed state.");
+        }
+        classroomProvisioningWorker.enqueue(classId);
+        classroom.setProvisioningStatus(ProvisioningStatus.PROVISIONING);
+        return classroom;
     }
 
     @Transactional
@@ -95,27 +110,30 @@ public class ClassroomService {
         Classroom classroom = classroomRepository.findByIdAndTeacherId(classId, teacherId)
                 .orElseThrow(() -> new SecurityException("Unauthorized: User does not own this classroom."));
 
-        // 1. Delete Folder from Google Drive
+        String owner = userRepository.findById(teacherId).map(User::getEmail)
+                .orElseThrow(() -> new IllegalArgumentException("Teacher not found."));
+        long submitted = documentRepository.countByClassroomIdAndIsSubmittedTrue(classId);
+
+        // 1. Queue the stored files and the Drive folder; StorageCleanupWorker deletes them after commit
+        storageCleanupRepository.enqueueClassroomDocuments(classId, owner);
         if (classroom.getDriveFolderId() != null) {
-            try {
-                googleDriveService.deleteFile(classroom.getDriveFolderId());
-            } catch (IOException e) {
-                System.err.println("Warning: Failed to delete Drive folder: " + e.getMessage());
-            }
+            storageCleanupRepository.save(StorageCleanup.builder()
+                    .driveFileId(classroom.getDriveFolderId())
+                    .ownerPrincipal(owner)
+                    .enqueuedAt(Instant.now())
+                    .build());
         }
 
-        // 2. Cascade Delete: Documents & Evaluations
-        List<Document> documents = documentRepository.findByClassroomIdOrderByUploadDateDesc(classId);
-        
-        for (Document doc : documents) {
-            if (evaluationRepository.findByDocumentId(doc.getId()).isPresent()) {
-                evaluationRepository.deleteByDocumentId(doc.getId());
-            }
-            documentRepository.delete(doc);
-        }
+        // 2. Cascade Delete: one statement per table, whatever the number of documents
+        evaluationRepository.deleteByClassroomId(classId);
+        documentTextRepository.deleteByClassroomId(classId);
+        documentRepository.deleteByClassroomId(classId);
 
-        // 3. Delete Classroom
-        classroomRepository.delete(classroom);
+        // 3. Delete Classroom (and its enrolments)
+        classroomRepository.deleteClassroomById(classId);
+        classroomAccessCache.invalidate(classId);
+        teacherStatsService.classroomDeleted(teacherId, submitted);
+        storageCleanupWorker.trigger();
     }
 
     @Transactional
@@ -123,20 +141,57 @@ public class ClassroomService {
         Classroom classroom = classroomRepository.findByClassCode(classCode)
                 .orElseThrow(() -> new IllegalArgumentException("Invalid class code."));
 
-        User student = userRepository.findById(studentId)
-                .orElseThrow(() -> new IllegalArgumentException("Student not found."));
+        if (!userRepository.existsById(studentId)) {
+            throw new IllegalArgumentException("Student not found.");
+        }
 
-        if (classroom.getStudents().contains(student)) {
+        if (classroomAccessCache.isEnrolled(classroom.getId(), studentId)) {
             throw new IllegalArgumentException("You are already enrolled in this class.");
         }
 
-        classroom.getStudents().add(student);
-        return classroomRepository.save(classroom);
+        boolean firstClassWithTeacher = !classroomRepository.hasStudentWithTeacher(classroom.getTeacherId(), studentId);
+        classroomRepository.enroll(classroom.getId(), studentId);
+        classroomAccessCache.enrolled(classroom.getId(), studentId);
+        teacherStatsService.studentJoined(classroom.getTeacherId(), firstClassWithTeacher);
+        return classroom;
+    }
+
+    @Transactional(readOnly = true)
+    public List<ClassroomDTO> getStudentClassrooms(UUID studentId) {
+        return summarize(classroomRepository.findByStudents_Id(studentId));
     }
 
     @Transactional(readOnly = true)
-    public List<Classroom> getStudentClassrooms(UUID studentId) {
-        return classroomRepository.findByStudents_Id(studentId);
+    public List<ClassroomDTO> getTeacherClassrooms(UUID teacherId) {
+        return summarize(classroomRepository.findByTeacherId(teacherId));
+    }
+
+    @Transactional(readOnly = true)
+    public List<ClassroomDTO> getAllClassrooms() {
+        return summarize(classroomRepository.findAll());
+    }
+
+    // Maps classrooms to DTOs with student counts from one grouped query, without loading any student
+    private List<ClassroomDTO> summarize(List<Classroom> classrooms) {
+        if (classrooms.isEmpty()) return List.of();
+        Map<UUID, Long> counts = classroomRepository.countStudentsByClassroomIds(
+                        classrooms.stream().map(Classroom::getId).toList()).stream()
+                .collect(Collectors.toMap(ClassroomRepository.StudentCount::getClassroomId,
+                        ClassroomRepository.StudentCount::getStudentCount));
+
+        return classrooms.stream()
+                .map(c -> ClassroomDTO.builder()
+                        .id(c.getId())
+                        .name(c.getName())
+                        .section(c.getSection())
+                        .classCode(c.getClassCode())
+                        .teacherId(c.getTeacherId())
+                        .driveFolderId(c.getDriveFolderId())
+                        .provisioningStatus(c.getProvisioningStatus())
+                        .createdAt(c.getCreatedAt())
+                        .studentCount(counts.getOrDefault(c.getId(), 0L).intValue())
+                        .build())
+                .collect(Collectors.toList());
     }
 
     @Transactional(readOnly = true)
@@ -1,6 +1,8 @@
 package citu.stde.service;
 
+import citu.stde.dto.CursorPage;
 import citu.stde.dto.DocumentDTO;
+import citu.stde.dto.PageCursor;
 import citu.stde.entity.Classroom;
 import citu.stde.entity.Document;
 import citu.stde.entity.DocumentStatus;
@@ -11,61 +13,57 @@ import citu.stde.repository.DocumentRepository;
 import citu.stde.repository.EvaluationRepository; 
 import citu.stde.repository.UserRepository;
 
-import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
-import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
-import com.google.api.client.json.gson.GsonFactory;
-import com.google.api.services.drive.Drive;
 import com.google.api.services.drive.model.File;
 
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
-import org.springframework.security.oauth2.client.OAuth2AuthorizedClientService;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.io.IOException;
-import java.security.GeneralSecurityException;
+import java.nio.file.Path;
 import java.time.Instant;
-import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class DocumentService {
 
     private final DocumentRepository documentRepository;
-    private final GoogleDriveService googleDriveService;
     private final ClassroomRepository classroomRepository;
     private final UserRepository userRepository;
     private final EvaluationRepository evaluationRepository; 
-    private final OAuth2AuthorizedClientService clientService;
+    private final GoogleDriveService googleDriveService;
+    private final BlobCache blobCache;
+    private final DocumentStorageRouter documentStorageRouter;
+    private final DocumentUploadWorker documentUploadWorker;
+    private final DocumentTextService documentTextService;
+    private final DriveDocumentStorage driveDocumentStorage;
     private final AdminService adminService; 
+    private final KeysetPaging keysetPaging;
+    private final TeacherStatsService teacherStatsService;
 
     private static final long MAX_FILE_SIZE = 10 * 1024 * 1024;
 
     // Get documents for a specific class (Teacher view)
     // Only return SUBMITTED documents
     @Transactional(readOnly = true)
-    public List<DocumentDTO> getDocumentsByClass(UUID classroomId) {
-        return documentRepository.findByClassroomIdAndIsSubmittedTrueOrderByUploadDateDesc(classroomId)
-                .stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public CursorPage<DocumentDTO> getDocumentsByClass(UUID classroomId, String cursor, Integer limit) {
+        PageCursor after = PageCursor.decode(cursor);
+        int size = keysetPaging.pageSize(cursor, limit);
+        return keysetPaging.page(documentRepository.findSubmittedDtosByClassroomId(classroomId, after.at(), after.id(),
+                keysetPaging.probe(size)), size, DocumentService::cursorOf);
     }
 
     // Get documents for a specific student in a class (Student view)
     @Transactional(readOnly = true)
-    public List<DocumentDTO> getDocumentsByClassAndStudent(UUID classroomId, UUID studentId) {
-        return documentRepository.findByClassroomIdAndUserIdOrderByUploadDateDesc(classroomId, studentId)
-                .stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public CursorPage<DocumentDTO> getDocumentsByClassAndStudent(UUID classroomId, UUID studentId, String cursor, Integer limit) {
+        PageCursor after = PageCursor.decode(cursor);
+        int size = keysetPaging.pageSize(cursor, limit);
+        return keysetPaging.page(documentRepository.findDtosByClassroomIdAndUserId(classroomId, studentId, after.at(), after.id(),
+                keysetPaging.probe(size)), size, DocumentService::cursorOf);
     }
 
     // Submit Document Action
@@ -84,6 +82,9 @@ public class DocumentService {
 
         doc.setIsSubmitted(true);
         Document saved = documentRepository.save(doc);
+        if (doc.getClassroom() != null) {
+            teacherStatsService.documentSubmitted(doc.getClassroom().getTeacherId());
+        }
 
         // Record submission
         adminService.logActivity("SUBMIT", doc.getUser().getEmail(), "Submitted document: " + doc.getFilename());
@@ -91,48 +92,86 @@ public class DocumentService {
         return convertToDTO(saved);
     }
 
+    /**
+     * Accepts an upload: the file is spooled to local disk and the document is saved as
+     * PENDING_STORAGE. DocumentUploadWorker pushes it to the storage backend in the background.
+     */
     public DocumentDTO uploadDocument(MultipartFile file, UUID userId, UUID classId) throws IOException {
         if (file.isEmpty()) throw new IllegalArgumentException("File is empty");
         
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new IllegalArgumentException("User not found"));
 
-        String destinationFolderId = null;
         Classroom classroom = null;
 
         if (classId != null) {
             classroom = classroomRepository.findById(classId)
                     .orElseThrow(() -> new IllegalArgumentException("Classroom not found"));
-            destinationFolderId = classroom.getDriveFolderId(); 
         }
 
-        File driveFile = googleDriveService.uploadFile(file, destinationFolderId);
-
-        Document document = Document.builder()
-                .user(user)
-                .classroom(classroom) 
-                .filename(file.getOriginalFilename())
-                .fileType(file.getContentType())
-                .fileSize(file.getSize())
-                .driveFileId(driveFile.getId())
-                .driveWebViewLink(driveFile.getWebViewLink())
-                .uploadDate(Instant.now())
-                .status(DocumentStatus.UPLOADED)
-                .isCloudFile(false)
-                .isSubmitted(false) // Default to Draft
-                .build();
+        String filename = file.getOriginalFilename();
+        long size = file.getSize();
+        DocumentUploadWorker.SpooledUpload upload = documentUploadWorker.spool(file);
+        Path spooled = upload.path();
+
+        Document savedDocument;
+        String blobHash = upload.sha256();
+        try {
+            cacheUpload(blobHash, spooled);
+
+            Document document = Document.builder()
+                    .user(user)
+                    .classroom(classroom) 
+                    .filename(filename)
+                    .fileType(file.getContentType())
+                    .fileSize(size)
+                    .isCloudFile(false)
+                    .blobHash(blobHash)
+                    .uploadDate(Instant.now())
+                    .status(DocumentStatus.PENDING_STORAGE)
+                    .isSubmitted(false) // Default to Draft
+                    .build();
 
-        Document savedDocument = documentRepository.save(document);
+            savedDocument = documentRepository.save(document);
+        } catch (RuntimeException e) {
+            documentUploadWorker.discard(spooled);
+            throw e;
+        }
+        // Parse from the spooled file (mapped now, so the upload worker may move and delete it),
+        // so the evaluation can skip download and parse
+        documentTextService.extractAfterUpload(savedDocument.getId(), blobHash, spooled, file.getContentType());
+        documentUploadWorker.enqueue(savedDocument.getId(), spooled);
 
         // Record upload
-        adminService.logActivity("UPLOAD", user.getEmail(), "Uploaded file: " + file.getOriginalFilename());
+        adminService.logActivity("UPLOAD", user.getEmail(), "Uploaded file: " + filename);
 
         return convertToDTO(savedDocument);
     }
 
-    public List<DocumentDTO> getUserDocuments(UUID userId) {
-        return documentRepository.findByUserIdOrderByUploadDateDesc(userId)
-                .stream().map(this::convertToDTO).collect(Collectors.toList());
+    // Write-through copy for the evaluation read path, under the hash taken while spooling;
+    // a cache failure never fails the upload
+    private void cacheUpload(String blobHash, Path spooled) {
+        if (!blobCache.isEnabled()) return;
+        try {
+            blobCache.put(blobHash, spooled);
+        } catch (IOException e) {
+            System.err.println("Warning: Failed to cache uploaded file: " + e.getMessage());
+        }
+    }
+
+    public CursorPage<DocumentDTO> getUserDocuments(UUID userId, String cursor, Integer limit) {
+        PageCursor after = PageCursor.decode(cursor);
+        int size = keysetPaging.pageSize(cursor, limit);
+        return keysetPaging.page(documentRepository.findDtosByUserId(userId, after.at(), after.id(),
+                keysetPaging.probe(size)), size, DocumentService::cursorOf);
+    }
+
+    public long countUserDocuments(UUID userId) {
+        return documentRepository.countByUserId(userId);
+    }
+
+    private static PageCursor cursorOf(DocumentDTO document) {
+        return new PageCursor(document.getUploadDate(), document.getId());
     }
 
     public DocumentDTO getDocumentById(UUID documentId, UUID userId) {
@@ -153,12 +192,11 @@ public class DocumentService {
         }
         
         try {
-            if (document.getDriveFileId() != null) {
-                googleDriveService.deleteFile(document.getDriveFileId());
-            }
+            documentStorageRouter.delete(document);
         } catch (IOException e) {
-            System.err.println("Warning: Failed to delete file from Drive: " + e.getMessage());
+            System.err.println("Warning: Failed to delete file from storage: " + e.getMessage());
         }
+        documentTextService.delete(document.getId());
         documentRepository.delete(document);
 
         // Record deletion
@@ -166,8 +204,6 @@ public class DocumentService {
     }
 
     public Document copyFromGoogleDrive(String originalFileId, String classIdRaw, UUID userId) throws IOException {
-        Drive userDriveService = buildDriveClientForCurrentUser();
-
         String targetFolderId = "root"; 
         Classroom classroom = null;
 
@@ -176,17 +212,15 @@ public class DocumentService {
                 UUID classId = UUID.fromString(classIdRaw);
                 classroom = classroomRepository.findById(classId).orElse(null);
                 if (classroom != null) {
+                    if (classroom.getDriveFolderId() == null) {
+                        throw new IllegalStateException("The class folder is still being set up. Please try again in a moment.");
+                    }
                     targetFolderId = classroom.getDriveFolderId();
                 }
             } catch (IllegalArgumentException e) { }
         }
 
-        File copyMetadata = new File();
-        copyMetadata.setParents(Collections.singletonList(targetFolderId));
-
-        File copiedFile = userDriveService.files().copy(originalFileId, copyMetadata)
-                .setFields("id, name, webViewLink, size, mimeType")
-                .execute();
+        File copiedFile = googleDriveService.copyFile(originalFileId, targetFolderId, "id, name, webViewLink, size, mimeType");
 
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new IllegalArgumentException("User not found"));
@@ -195,7 +229,7 @@ public class DocumentService {
         doc.setFilename(copiedFile.getName());
         doc.setFileType(copiedFile.getMimeType());
         doc.setFileSize(copiedFile.getSize()); 
-        doc.setStoragePath(copiedFile.getId()); 
+        doc.setStoragePath(DocumentStorageRouter.storagePath(driveDocumentStorage, copiedFile.getId()));
         doc.setDriveFileId(copiedFile.getId()); 
         doc.setDriveWebViewLink(copiedFile.getWebViewLink());
         doc.setUploadDate(Instant.now());
@@ -213,28 +247,6 @@ public class DocumentService {
         return saved;
     }
 
-    private Drive buildDriveClientForCurrentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication == null) throw new RuntimeException("No user logged in");
-
-        OAuth2AuthorizedClient client = clientService.loadAuthorizedClient("google", authentication.getName());
-        if (client == null) throw new RuntimeException("User has not authorized Google Drive access");
-
-        String accessToken = client.getAccessToken().getTokenValue();
-        GoogleCredential credential = new GoogleCredential().setAccessToken(accessToken);
-
-        try {
-            return new Drive.Builder(
-                    GoogleNetHttpTransport.newTrustedTransport(), 
-                    GsonFactory.getDefaultInstance(), 
-                    credential)
-                    .setApplicationName("STDE")
-                    .build();
-        } catch (GeneralSecurityException | IOException e) {
-            throw new RuntimeException("Failed to initialize Google Drive client", e);
-        }
-    }
-
     private DocumentDTO convertToDTO(Document document) {
         String studentName = "Unknown";
         if (document.getUser() != null) {
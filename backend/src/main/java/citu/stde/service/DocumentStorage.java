@@ -0,0 +1,51 @@
+package citu.stde.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Where uploaded document bytes live. One implementation is active per deployment
+ * (app.storage.backend); Drive and any backend with app.storage.<name>.enabled=true stay
+ * registered as well, so documents stored before a switch can still be read and deleted.
+ *
+ * A document's storagePath is "backend:key", e.g. "local:documents/3f2a...".
+ */
+public interface DocumentStorage {
+
+    /**
+     * Name used in app.storage.backend and as the storagePath prefix.
+     */
+    String backend();
+
+    /**
+     * Stores the content and returns where it went.
+     */
+    StoredFile store(InputStream content, long length, String contentType, String filename, StoreTarget target) throws IOException;
+
+    /**
+     * Opens the stored bytes. Reads stop when the deadline expires or is cancelled.
+     */
+    InputStream open(String key, RequestDeadline deadline) throws IOException;
+
+    void delete(String key) throws IOException;
+
+    /**
+     * Deletes on behalf of the given owner; for backends where the caller's identity matters (Drive).
+     */
+    default void delete(String key, String ownerPrincipal) throws IOException {
+        delete(key);
+    }
+
+    /**
+     * Who the file belongs to and where it should go.
+     * @param ownerPrincipal Uploader's principal name (email); null means the current request's user
+     * @param driveFolderId Target Drive folder (classroom folder); ignored by non-Drive backends
+     */
+    record StoreTarget(String ownerPrincipal, String driveFolderId) {}
+
+    /**
+     * @param key Backend-specific key (file ID for Drive, object key otherwise)
+     * @param driveWebViewLink Browser link, only set by the Drive backend
+     */
+    record StoredFile(String key, String driveWebViewLink) {}
+}
@@ -0,0 +1,110 @@
+package citu.stde.service;
+
+import citu.stde.entity.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Picks the DocumentStorage for new uploads (app.storage.backend) and finds the
+ * right one for an existing document from its storagePath.
+ */
+@Service
+public class DocumentStorageRouter {
+
+    private final Map<String, DocumentStorage> storages;
+    private final DocumentStorage active;
+
+    public DocumentStorageRouter(List<DocumentStorage> storages,
+                                 @Value("${app.storage.backend:drive}") String backend) {
+        this.storages = storages.stream().collect(Collectors.toMap(DocumentStorage::backend, Function.identity()));
+        this.active = this.storages.get(backend);
+        if (active == null) {
+            throw new IllegalStateException("Unknown app.storage.backend: " + backend + " (expected one of " + this.storages.keySet() + ")");
+        }
+    }
+
+    /**
+     * Backend that new uploads go to.
+     */
+    public DocumentStorage active() {
+        return active;
+    }
+
+    public InputStream open(Document doc, RequestDeadline deadline) throws IOException {
+        Location location = locate(doc);
+        return location.storage().open(location.key(), deadline);
+    }
+
+    public void delete(Document doc) throws IOException {
+        Location location = locate(doc);
+        if (location.key() != null) {
+            location.storage().delete(location.key());
+        }
+    }
+
+    /**
+     * Deletes a file whose Document row may already be gone, on behalf of its owner.
+     */
+    public void delete(String storagePath, String driveFileId, String ownerPrincipal) throws IOException {
+        Location location = locate(storagePath, driveFileId, storagePath);
+        if (location.key() != null) {
+            location.storage().delete(location.key(), ownerPrincipal);
+        }
+    }
+
+    /**
+     * True if the document's bytes live in Google Drive.
+     */
+    public boolean isDrive(Document doc) {
+        return locate(doc).storage().backend().equals(DriveDocumentStorage.BACKEND);
+    }
+
+    public boolean isDrive(String storagePath, String driveFileId) {
+        return locate(storagePath, driveFileId, storagePath).storage().backend().equals(DriveDocumentStorage.BACKEND);
+    }
+
+    /**
+     * Backend key of a stored file (the Drive file id for Drive).
+     */
+    public String key(String storagePath, String driveFileId) {
+        return locate(storagePath, driveFileId, storagePath).key();
+    }
+
+    /**
+     * Value to store in Document.storagePath for a file stored in the given backend.
+     */
+    public static String storagePath(DocumentStorage storage, String key) {
+        return storagePath(storage.backend(), key);
+    }
+
+    public static String storagePath(String backend, String key) {
+        return backend + ":" + key;
+    }
+
+    private Location locate(Document doc) {
+        return locate(doc.getStoragePath(), doc.getDriveFileId(), "Document " + doc.getId());
+    }
+
+    private Location locate(String path, String driveFileId, String what) {
+        int separator = path != null ? path.indexOf(':') : -1;
+        if (separator > 0) {
+            String backend = path.substring(0, separator);
+            DocumentStorage storage = storages.get(backend);
+            if (storage == null) {
+                throw new IllegalStateException(what + " is stored in '" + backend + "', which is not enabled on this server.");
+            }
+            return new Location(storage, path.substring(separator + 1));
+        }
+        // Older rows: the bytes are in Drive under driveFileId
+        return new Location(storages.get(DriveDocumentStorage.BACKEND), driveFileId);
+    }
+
+    private record Location(DocumentStorage storage, String key) {}
+}
@@ -0,0 +1,367 @@
+package citu.stde.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.poi.openxml4j.util.ZipSecureFile;
+import org.apache.poi.xwpf.extractor.XWPFWordExtractor;
+import org.apache.poi.xwpf.usermodel.IBodyElement;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Turns uploaded PDF/DOCX/text files into plain text on a small dedicated pool.
+ *
+ * Parsing never runs on servlet threads. Each job is capped in input bytes, output
+ * characters and CPU time, and DOCX files are checked for zip bombs before POI
+ * opens them. When the pool and its queue are full, new jobs are rejected right
+ * away instead of piling up request threads behind a slow parse.
+ */
+@Service
+@RequiredArgsConstructor
+public class DocumentTextExtractor {
+
+    public static final String PDF = "application/pdf";
+    public static final String DOCX = "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.extraction.pool-size:2}")
+    private int poolSize;
+
+    @Value("${app.extraction.queue-capacity:16}")
+    private int queueCapacity;
+
+    @Value("${app.extraction.max-bytes:26214400}")
+    private long maxBytes;
+
+    @Value("${app.extraction.max-chars:500000}")
+    private int maxChars;
+
+    @Value("${app.extraction.max-cpu-ms:20000}")
+    private long maxCpuMillis;
+
+    @Value("${app.extraction.max-zip-ratio:100}")
+    private int maxZipRatio;
+
+    @Value("${app.extraction.max-zip-entries:5000}")
+    private int maxZipEntries;
+
+    @Value("${app.extraction.max-zip-inflated-bytes:209715200}")
+    private long maxZipInflatedBytes;
+
+    @Value("${app.extraction.pdf-max-heap-bytes:33554432}")
+    private long pdfMaxHeapBytes;
+
+    private static final ThreadMXBean THREAD_MX = ManagementFactory.getThreadMXBean();
+
+    private ThreadPoolExecutor pool;
+    private Timer extractionTimer;
+
+    @PostConstruct
+    void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        pool = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "extract-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        // POI's own guard rails, in case a file slips past our pre-scan
+        ZipSecureFile.setMinInflateRatio(1.0 / maxZipRatio);
+        ZipSecureFile.setMaxEntrySize(maxZipInflatedBytes);
+
+        Gauge.builder("stde.extraction.queue.depth", pool, p -> p.getQueue().size())
+                .description("Extraction jobs waiting for a worker")
+                .register(meterRegistry);
+        Gauge.builder("stde.extraction.active", pool, ThreadPoolExecutor::getActiveCount)
+                .description("Extraction jobs currently running")
+                .register(meterRegistry);
+        extractionTimer = Timer.builder("stde.extraction.duration")
+                .description("Time spent parsing a document on the extraction pool")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Reads the stream (up to app.extraction.max-bytes) and extracts its text on the extraction pool.
+     */
+    public String extract(InputStream inputStream, String contentType, RequestDeadline deadline) throws IOException {
+        byte[] bytes = readBounded(deadline.guard(inputStream, "extract"));
+        return extract(bytes, contentType, deadline);
+    }
+
+    public String extract(byte[] bytes, String contentType, RequestDeadline deadline) throws IOException {
+        deadline.check("extract");
+
+        Future<String> job;
+        try {
+            job = pool.submit(() -> extractionTimer.recordCallable(() -> runJob(ByteBuffer.wrap(bytes), contentType, deadline)));
+        } catch (RejectedExecutionException e) {
+            meterRegistry.counter("stde.extraction.rejected").increment();
+            throw new RuntimeException("TYPE:RATE_LIMIT|Too many documents are being processed right now. Please try again shortly.");
+        }
+        deadline.onCancel(() -> job.cancel(true));
+
+        try {
+            return job.get(deadline.remainingNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            job.cancel(true);
+            throw new RequestDeadline.DeadlineExceededException("extract", "timeout");
+        } catch (CancellationException e) {
+            throw new RequestDeadline.DeadlineExceededException("extract", "cancelled");
+        } catch (InterruptedException e) {
+            job.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RequestDeadline.DeadlineExceededException("extract", "cancelled");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            throw new IOException("Text extraction failed", e.getCause());
+        }
+    }
+
+    /**
+     * Starts a background extraction of a file (e.g. a spooled upload) without waiting for it.
+     * The file is memory-mapped right away, so it may be moved or deleted afterwards.
+     * Only runs while the queue is at most half full, so it never takes the room that
+     * interactive evaluations need; otherwise the future fails with RATE_LIMIT.
+     */
+    public CompletableFuture<String> extractInBackground(Path file, String contentType, RequestDeadline deadline) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        ByteBuffer content;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > maxBytes) reject("bytes");
+            // The mapping stays valid after the channel is closed
+            content = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException | RuntimeException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        if (pool.getQueue().size() > queueCapacity / 2) {
+            meterRegistry.counter("stde.extraction.rejected").increment();
+            result.completeExceptionally(new RuntimeException("TYPE:RATE_LIMIT|Extraction pool is busy."));
+            return result;
+        }
+        try {
+            pool.execute(() -> {
+                try {
+                    result.complete(extractionTimer.recordCallable(() -> runJob(content, contentType, deadline)));
+                } catch (Exception e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            meterRegistry.counter("stde.extraction.rejected").increment();
+            result.completeExceptionally(new RuntimeException("TYPE:RATE_LIMIT|Extraction pool is busy."));
+        }
+        return result;
+    }
+
+    // --- WORKER SIDE ---
+
+    // The content is only read through duplicates, so the caller's buffer position never moves
+    private String runJob(ByteBuffer content, String contentType, RequestDeadline deadline) throws IOException {
+        JobBudget budget = new JobBudget(deadline);
+        if (PDF.equals(contentType)) return extractPdf(content, budget);
+        if (DOCX.equals(contentType)) return extractDocx(content, budget);
+
+        String text = StandardCharsets.UTF_8.decode(content.duplicate()).toString();
+        return text.length() > maxChars ? text.substring(0, maxChars) : text;
+    }
+
+    private static InputStream streamOf(ByteBuffer content) {
+        return new ByteBufferInputStream(content.duplicate());
+    }
+
+    private String extractPdf(ByteBuffer content, JobBudget budget) throws IOException {
+        LimitedWriter out = new LimitedWriter(budget);
+        try (PDDocument document = PDDocument.load(streamOf(content), MemoryUsageSetting.setupMixed(pdfMaxHeapBytes))) {
+            budget.check();
+            PDFTextStripper stripper = new PDFTextStripper() {
+                @Override
+                protected void startPage(PDPage page) throws IOException {
+                    budget.check(); // Stop between pages once a limit is hit
+                    super.startPage(page);
+                }
+            };
+            stripper.writeText(document, out);
+        } catch (LimitedWriter.CharLimitReached e) {
+            // Enough text for an evaluation; keep what we have
+        }
+        return out.toString();
+    }
+
+    private String extractDocx(ByteBuffer content, JobBudget budget) throws IOException {
+        checkZipBomb(content, budget);
+        try (XWPFDocument document = new XWPFDocument(streamOf(content))) {
+            budget.check();
+            // Body element by element instead of getText(), so the CPU and char limits apply
+            // while extracting; headers and footers are left out
+            XWPFWordExtractor extractor = new XWPFWordExtractor(document);
+            StringBuilder text = new StringBuilder();
+            for (IBodyElement element : document.getBodyElements()) {
+                budget.check();
+                extractor.appendBodyElementText(text, element);
+                text.append('\n'); // As getText() does
+                if (text.length() >= maxChars) return text.substring(0, maxChars);
+            }
+            return text.toString();
+        }
+    }
+
+    /**
+     * Inflates every entry once (discarding the output) and rejects archives with
+     * too many entries, too much inflated data, or a suspicious compression ratio.
+     */
+    private void checkZipBomb(ByteBuffer content, JobBudget budget) throws IOException {
+        byte[] buffer = new byte[8192];
+        long totalInflated = 0;
+        int entries = 0;
+
+        try (ZipInputStream zip = new ZipInputStream(streamOf(content))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (++entries > maxZipEntries) reject("zip-entries");
+
+                long entryInflated = 0;
+                int read;
+                while ((read = zip.read(buffer)) != -1) {
+                    entryInflated += read;
+                    totalInflated += read;
+                    if (totalInflated > maxZipInflatedBytes) reject("zip-size");
+                    budget.check();
+                }
+
+                long compressed = entry.getCompressedSize();
+                // Tiny entries compress extremely well without being dangerous
+                if (compressed > 0 && entryInflated > 1024 * 1024 && entryInflated / compressed > maxZipRatio) {
+                    reject("zip-ratio");
+                }
+            }
+        }
+
+        if (content.limit() > 0 && totalInflated / content.limit() > maxZipRatio) reject("zip-ratio");
+    }
+
+    /**
+     * Reads the whole stream, rejecting it once it exceeds app.extraction.max-bytes.
+     */
+    public byte[] readBounded(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        long total = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            total += read;
+            if (total > maxBytes) reject("bytes");
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private void reject(String reason) {
+        meterRegistry.counter("stde.extraction.aborted", "reason", reason).increment();
+        throw new IllegalArgumentException("TYPE:INVALID_DOCUMENT|The document is too large or too complex to analyze.");
+    }
+
+    /**
+     * Per-job limits checked from inside the parser callbacks (pool thread only).
+     */
+    private class JobBudget {
+        private final RequestDeadline deadline;
+        private final long cpuStartNanos = THREAD_MX.getCurrentThreadCpuTime();
+
+        JobBudget(RequestDeadline deadline) {
+            this.deadline = deadline;
+        }
+
+        void check() {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new RequestDeadline.DeadlineExceededException("extract", "cancelled");
+            }
+            deadline.check("extract");
+            if (THREAD_MX.getCurrentThreadCpuTime() - cpuStartNanos > TimeUnit.MILLISECONDS.toNanos(maxCpuMillis)) {
+                reject("cpu-time");
+            }
+        }
+    }
+
+    /**
+     * Collects stripped text and stops the parser once app.extraction.max-chars is reached.
+     */
+    private class LimitedWriter extends Writer {
+        private final StringBuilder text = new StringBuilder();
+        private final JobBudget budget;
+
+        LimitedWriter(JobBudget budget) {
+            this.budget = budget;
+        }
+
+        @Override
+        public void write(char[] chars, int off, int len) {
+            budget.check();
+            int room = maxChars - text.length();
+            text.append(chars, off, Math.min(len, room));
+            if (text.length() >= maxChars) throw new CharLimitReached();
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String toString() {
+            return text.toString();
+        }
+
+        static class CharLimitReached extends RuntimeException {
+            CharLimitReached() {
+                super(null, null, false, false);
+            }
+        }
+    }
+}
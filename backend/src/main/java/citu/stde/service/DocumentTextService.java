@@ -0,0 +1,96 @@
+package citu.stde.service;
+
+import citu.stde.entity.Document;
+import citu.stde.entity.DocumentText;
+import citu.stde.repository.DocumentTextRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Extracted document text, stored once so evaluations can go straight to the AI.
+ *
+ * Text is extracted right after upload from the file spooled on local disk, and otherwise
+ * the first time an evaluation has to parse the file. A stored text is only reused
+ * while it was extracted from the document's current bytes (same blob hash).
+ */
+@Service
+@RequiredArgsConstructor
+public class DocumentTextService {
+
+    private final DocumentTextRepository documentTextRepository;
+    private final DocumentTextExtractor documentTextExtractor;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.extraction.upload-deadline-seconds:120}")
+    private long uploadDeadlineSeconds;
+
+    /**
+     * Extracts and stores the text of a freshly uploaded file on the extraction pool.
+     * Best effort: if the pool is busy or parsing fails, the evaluation extracts it later.
+     */
+    public void extractAfterUpload(UUID documentId, String blobHash, Path file, String contentType) {
+        documentTextExtractor.extractInBackground(file, contentType, RequestDeadline.after(Duration.ofSeconds(uploadDeadlineSeconds)))
+                .whenComplete((text, error) -> {
+                    if (error != null) {
+                        meterRegistry.counter("stde.extraction.upload", "result", "skipped").increment();
+                        return;
+                    }
+                    try {
+                        save(documentId, blobHash, text);
+                        meterRegistry.counter("stde.extraction.upload", "result", "stored").increment();
+                    } catch (RuntimeException e) {
+                        // e.g. the document was deleted in the meantime
+                        System.err.println("Warning: Could not store extracted text for document " + documentId + ": " + e.getMessage());
+                    }
+                });
+    }
+
+    /**
+     * Stored text for the document's current content, if any.
+     */
+    public Optional<DocumentText> findCurrent(Document doc) {
+        return documentTextRepository.findById(doc.getId())
+                .filter(text -> doc.getBlobHash() == null || Objects.equals(doc.getBlobHash(), text.getBlobHash()));
+    }
+
+    public DocumentText save(UUID documentId, String blobHash, String text) {
+        return documentTextRepository.save(DocumentText.builder()
+                .documentId(documentId)
+                .blobHash(blobHash)
+                .contentHash(hash(text))
+                .text(text)
+                .extractedAt(Instant.now())
+                .build());
+    }
+
+    public void delete(UUID documentId) {
+        if (documentTextRepository.existsById(documentId)) {
+            documentTextRepository.deleteById(documentId);
+        }
+    }
+
+    /**
+     * SHA-256 (hex) of the text; this is what Document.contentHash holds.
+     */
+    public static String hash(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package citu.stde.service;
+
+import citu.stde.entity.Classroom;
+import citu.stde.entity.Document;
+import citu.stde.entity.DocumentStatus;
+import citu.stde.entity.ProvisioningStatus;
+import citu.stde.repository.ClassroomRepository;
+import citu.stde.repository.DocumentRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Accept-then-upload pipeline.
+ *
+ * An upload request only writes the file to a local spool directory and creates the
+ * Document in PENDING_STORAGE. This worker then pushes the spooled file to the storage
+ * backend on behalf of the uploader, retrying with exponential back-off, and moves the
+ * document to UPLOADED. Spooled files left over from a restart are picked up again.
+ * Uploads to a classroom without its Drive folder yet (still being created, or failed
+ * until the teacher retries) wait until ClassroomProvisioningWorker reports it ready.
+ */
+@Service
+@RequiredArgsConstructor
+public class DocumentUploadWorker {
+
+    private final DocumentRepository documentRepository;
+    private final ClassroomRepository classroomRepository;
+    private final DocumentStorageRouter documentStorageRouter;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.upload.spool-dir:${java.io.tmpdir}/stde-spool}")
+    private String spoolDirectory;
+
+    @Value("${app.upload.worker-threads:4}")
+    private int workerThreads;
+
+    @Value("${app.upload.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${app.upload.initial-backoff-ms:2000}")
+    private long initialBackoffMillis;
+
+    @Value("${app.upload.max-backoff-ms:300000}")
+    private long maxBackoffMillis;
+
+    @Value("${app.upload.folder-poll-ms:30000}")
+    private long folderPollMillis;
+
+    private Path spoolRoot;
+    private ScheduledThreadPoolExecutor workers;
+    private final AtomicInteger pending = new AtomicInteger();
+
+    // Classroom id -> documents waiting for its Drive folder; guarded by "waiting"
+    private final Map<UUID, Set<UUID>> waiting = new HashMap<>();
+
+    @PostConstruct
+    void init() throws IOException {
+        spoolRoot = Paths.get(spoolDirectory).toAbsolutePath();
+        Files.createDirectories(spoolRoot);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        workers = new ScheduledThreadPoolExecutor(workerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "upload-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        workers.setRemoveOnCancelPolicy(true);
+
+        Gauge.builder("stde.upload.pending", pending, AtomicInteger::get)
+                .description("Spooled uploads not yet stored in the storage backend")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Spooled files stay on disk and are resumed on the next start
+        workers.shutdownNow();
+    }
+
+    /**
+     * Writes the uploaded file into the spool, hashing it (SHA-256) on the way in.
+     * Call before creating the Document row.
+     */
+    public SpooledUpload spool(MultipartFile file) throws IOException {
+        Path spooled = Files.createTempFile(spoolRoot, "incoming-", ".tmp");
+        MessageDigest digest = sha256();
+        long size;
+        try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+            size = Files.copy(in, spooled, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            discard(spooled);
+            throw e;
+        }
+        return new SpooledUpload(spooled, size, HexFormat.of().formatHex(digest.digest()));
+    }
+
+    /**
+     * Names the spooled file after its document and schedules the push to storage.
+     */
+    public void enqueue(UUID documentId, Path spooled) throws IOException {
+        Files.move(spooled, spoolPath(documentId), StandardCopyOption.ATOMIC_MOVE);
+        pending.incrementAndGet();
+        workers.execute(() -> push(documentId, 1));
+    }
+
+    /**
+     * Drops a spooled file whose Document could not be created.
+     */
+    public void discard(Path spooled) {
+        try {
+            Files.deleteIfExists(spooled);
+        } catch (IOException ignored) {
+            // Removed on the next start
+        }
+    }
+
+    /**
+     * Pushes the uploads that were waiting for the classroom's Drive folder.
+     */
+    public void classroomReady(UUID classroomId) {
+        Set<UUID> documentIds;
+        synchronized (waiting) {
+            documentIds = waiting.remove(classroomId);
+        }
+        if (documentIds != null) {
+            documentIds.forEach(documentId -> workers.execute(() -> push(documentId, 1)));
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeSpooledUploads() throws IOException {
+        int resumed = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(spoolRoot)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.startsWith("incoming-")) {
+                    discard(file); // Request died before the Document row existed
+                    continue;
+                }
+                try {
+                    UUID documentId = UUID.fromString(name);
+                    pending.incrementAndGet();
+                    workers.execute(() -> push(documentId, 1));
+                    resumed++;
+                } catch (IllegalArgumentException e) {
+                    // Not one of ours
+                }
+            }
+        }
+        if (resumed > 0) {
+            System.out.println("Resuming " + resumed + " spooled upload(s).");
+        }
+    }
+
+    private void push(UUID documentId, int attempt) {
+        Path spooled = spoolPath(documentId);
+        Document doc = documentRepository.findWithOwnerById(documentId).orElse(null);
+        if (doc == null || doc.getStatus() != DocumentStatus.PENDING_STORAGE || !Files.exists(spooled)) {
+            // Deleted, already stored, or nothing left to push
+            finish(spooled);
+            return;
+        }
+
+        DocumentStorage storage = documentStorageRouter.active();
+        boolean inDrive = DriveDocumentStorage.BACKEND.equals(storage.backend());
+        Classroom classroom = doc.getClassroom();
+        if (inDrive && classroom != null && awaitsFolder(classroom.getProvisioningStatus())) {
+            waitForFolder(classroom.getId(), documentId);
+            return;
+        }
+
+        String owner = doc.getUser().getEmail();
+        String folderId = classroom != null ? classroom.getDriveFolderId() : null;
+        try {
+            DocumentStorage.StoredFile stored;
+            try (InputStream in = Files.newInputStream(spooled)) {
+                stored = storage.store(in, Files.size(spooled), doc.getFileType(), doc.getFilename(),
+                        new DocumentStorage.StoreTarget(owner, folderId));
+            }
+
+            int updated = documentRepository.completeStorage(documentId,
+                    DocumentStorageRouter.storagePath(storage, stored.key()), inDrive,
+                    inDrive ? stored.key() : null, stored.driveWebViewLink());
+            if (updated == 0) {
+                // Deleted while we were uploading; don't leave an orphan behind
+                storage.delete(stored.key(), owner);
+            }
+            meterRegistry.counter("stde.upload.storage", "result", "stored").increment();
+            finish(spooled);
+        } catch (Exception e) {
+            // Without a Drive authorization for the owner no retry can succeed; the file must be uploaded again
+            boolean reconnectRequired = isReconnectRequired(e);
+            if (reconnectRequired || attempt >= maxAttempts) {
+                System.err.println(reconnectRequired
+                        ? "Error: Cannot store document " + documentId + " until " + owner + " logs in with Google again; marked FAILED for re-upload."
+                        : "Error: Giving up storing document " + documentId + " after " + attempt + " attempts: " + e.getMessage());
+                meterRegistry.counter("stde.upload.storage", "result", reconnectRequired ? "reconnect-required" : "failed").increment();
+                documentRepository.transitionStatus(documentId, DocumentStatus.PENDING_STORAGE, doc.getVersion(),
+                        DocumentStatus.FAILED, null, null);
+                finish(spooled);
+                return;
+            }
+            long delay = backoff(attempt);
+            System.err.println("Warning: Storing document " + documentId + " failed (attempt " + attempt + "), retrying in " + delay + " ms: " + e.getMessage());
+            meterRegistry.counter("stde.upload.storage", "result", "retried").increment();
+            workers.schedule(() -> push(documentId, attempt + 1), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static boolean isReconnectRequired(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DriveClientFactory.ReconnectRequiredException) return true;
+        }
+        return false;
+    }
+
+    private void waitForFolder(UUID classroomId, UUID documentId) {
+        boolean firstWaiter;
+        synchronized (waiting) {
+            firstWaiter = !waiting.containsKey(classroomId);
+            waiting.computeIfAbsent(classroomId, id -> new HashSet<>()).add(documentId);
+        }
+        // The folder may have become ready after the document was read
+        checkFolder(classroomId);
+        if (firstWaiter) {
+            // Fallback for when another node provisions the classroom and cannot notify us
+            workers.schedule(() -> pollFolder(classroomId), folderPollMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void pollFolder(UUID classroomId) {
+        if (checkFolder(classroomId)) {
+            synchronized (waiting) {
+                if (!waiting.containsKey(classroomId)) return;
+            }
+            workers.schedule(() -> pollFolder(classroomId), folderPollMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Releases the classroom's waiting uploads once its folder exists (or the classroom is gone)
+    private boolean checkFolder(UUID classroomId) {
+        ProvisioningStatus status = classroomRepository.findById(classroomId)
+                .map(Classroom::getProvisioningStatus)
+                .orElse(null);
+        if (awaitsFolder(status)) {
+            return true;
+        }
+        classroomReady(classroomId);
+        return false;
+    }
+
+    // A FAILED classroom has no folder either: storing now would put the file in the uploader's
+    // Drive root, so the upload keeps waiting until retryProvisioning makes the classroom READY
+    private static boolean awaitsFolder(ProvisioningStatus status) {
+        return status == ProvisioningStatus.PROVISIONING || status == ProvisioningStatus.FAILED;
+    }
+
+    // Exponential back-off with jitter, capped at app.upload.max-backoff-ms
+    private long backoff(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 20));
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+    }
+
+    private void finish(Path spooled) {
+        pending.decrementAndGet();
+        discard(spooled);
+    }
+
+    private Path spoolPath(UUID documentId) {
+        return spoolRoot.resolve(documentId.toString());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A spooled upload: the file waiting for the storage backend, its size, and the
+     * SHA-256 (hex) of its bytes, which is also its blob cache key.
+     */
+    public record SpooledUpload(Path path, long size, String sha256) {
+    }
+}
@@ -0,0 +1,234 @@
+package citu.stde.service;
+
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.services.drive.Drive;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs Google Drive calls with per-user throttling and retries.
+ *
+ * Every call first takes a permit from the user's token bucket, sized to Drive's per-user
+ * quota (app.drive.throttle.*), so we slow down before Drive starts answering 403
+ * userRateLimitExceeded. Failures are classified by HTTP status and Drive error reason;
+ * rate limits, 5xx and network errors are retried with exponential back-off and
+ * jitter, honouring Retry-After. Anything else (not found, permission denied, daily
+ * quota exhausted, ...) fails at once.
+ */
+@Service
+@RequiredArgsConstructor
+public class DriveCallExecutor {
+
+    private final DriveClientFactory driveClientFactory;
+    private final MeterRegistry meterRegistry;
+
+    // Drive's default is 12,000 queries per minute per user; stay well below it
+    @Value("${app.drive.throttle.permits-per-second:20}")
+    private double permitsPerSecond;
+
+    @Value("${app.drive.throttle.burst:40}")
+    private int burst;
+
+    // A call that would have to wait longer than this is rejected instead
+    @Value("${app.drive.throttle.max-wait-ms:10000}")
+    private long maxWaitMillis;
+
+    @Value("${app.drive.retry.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${app.drive.retry.initial-backoff-ms:500}")
+    private long initialBackoffMillis;
+
+    @Value("${app.drive.retry.max-backoff-ms:32000}")
+    private long maxBackoffMillis;
+
+    @Value("${app.drive.client-cache-size:500}")
+    private int maxBuckets;
+
+    // Principal -> token bucket, LRU-bounded like the client cache
+    private final Map<String, TokenBucket> buckets = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, TokenBucket> eldest) {
+            return size() > maxBuckets;
+        }
+    };
+
+    @FunctionalInterface
+    public interface DriveCall<T> {
+        T call(Drive drive) throws IOException;
+    }
+
+    /**
+     * Runs the call with the given principal's Drive client (null: the current user).
+     * @param operation Short name for metrics, e.g. "files.delete"
+     */
+    public <T> T execute(String principalName, String operation, DriveCall<T> call) throws IOException {
+        String principal = resolve(principalName);
+        for (int attempt = 1; ; attempt++) {
+            throttle(principal, 1);
+            Drive drive;
+            try {
+                drive = driveClientFactory.forPrincipal(principal);
+            } catch (IllegalStateException e) {
+                throw new IOException("Failed to create Google Drive client: " + e.getMessage(), e);
+            }
+
+            try {
+                return call.call(drive);
+            } catch (IOException e) {
+                String reason = retryReason(e);
+                if (reason == null || attempt >= maxAttempts) {
+                    meterRegistry.counter("stde.drive.calls.failed", "operation", operation,
+                            "reason", reason != null ? reason : "permanent").increment();
+                    throw e;
+                }
+                meterRegistry.counter("stde.drive.retries", "operation", operation, "reason", reason).increment();
+                sleep(Math.max(backoffMillis(attempt), retryAfterMillis(e)));
+            }
+        }
+    }
+
+    /**
+     * Takes permits from the principal's bucket, waiting for them if needed.
+     * Used directly for calls that manage their own retries (batches, resumable uploads).
+     */
+    public void throttle(String principalName, int permits) throws IOException {
+        String principal = resolve(principalName);
+        TokenBucket bucket;
+        synchronized (buckets) {
+            bucket = buckets.computeIfAbsent(principal, key -> new TokenBucket(permitsPerSecond, burst));
+        }
+
+        long waitNanos = bucket.reserve(permits, TimeUnit.MILLISECONDS.toNanos(maxWaitMillis));
+        if (waitNanos < 0) {
+            meterRegistry.counter("stde.drive.throttle.rejected").increment();
+            throw new RuntimeException("TYPE:RATE_LIMIT|Too many Google Drive requests. Please try again in a moment.");
+        }
+        Timer.builder("stde.drive.throttle.wait")
+                .description("Time spent waiting for the per-user Drive quota")
+                .register(meterRegistry)
+                .record(waitNanos, TimeUnit.NANOSECONDS);
+        if (waitNanos > 0) {
+            sleep(TimeUnit.NANOSECONDS.toMillis(waitNanos) + 1);
+        }
+    }
+
+    /**
+     * Why a failed call may be retried, or null if it may not.
+     */
+    public String retryReason(IOException e) {
+        if (e instanceof GoogleJsonResponseException json && json.getDetails() != null) {
+            return retryReason(json.getDetails());
+        }
+        if (e instanceof HttpResponseException http) {
+            return retryReason(http.getStatusCode(), List.of());
+        }
+        return "network";
+    }
+
+    public String retryReason(GoogleJsonError error) {
+        List<String> reasons = error.getErrors() == null ? List.of()
+                : error.getErrors().stream().map(GoogleJsonError.ErrorInfo::getReason).toList();
+        return retryReason(error.getCode(), reasons);
+    }
+
+    private static String retryReason(int status, List<String> reasons) {
+        if (status == 429) return "rate-limit";
+        if (status == 403 && (reasons.contains("userRateLimitExceeded") || reasons.contains("rateLimitExceeded"))) {
+            return "rate-limit";
+        }
+        if (status == 408) return "timeout";
+        if (status >= 500) return "server-error";
+        return null; // e.g. 404, 403 insufficientPermissions / dailyLimitExceeded
+    }
+
+    /**
+     * Exponential back-off with jitter (half to full step), capped at app.drive.retry.max-backoff-ms.
+     */
+    public long backoffMillis(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+    }
+
+    private static long retryAfterMillis(IOException e) {
+        if (e instanceof HttpResponseException http && http.getHeaders() != null) {
+            Object retryAfter = http.getHeaders().get("retry-after");
+            if (retryAfter instanceof List<?> values && !values.isEmpty()) {
+                retryAfter = values.get(0);
+            }
+            if (retryAfter != null) {
+                try {
+                    return TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.toString().trim()));
+                } catch (NumberFormatException ignored) {
+                    // HTTP-date form; fall back to our own back-off
+                }
+            }
+        }
+        return 0;
+    }
+
+    private String resolve(String principalName) throws IOException {
+        if (principalName != null) return principalName;
+        try {
+            return driveClientFactory.currentPrincipal();
+        } catch (IllegalStateException e) {
+            throw new IOException("Failed to create Google Drive client: " + e.getMessage(), e);
+        }
+    }
+
+    void sleep(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting to call Google Drive", e);
+        }
+    }
+
+    /**
+     * Token bucket that hands out permits in advance: a caller reserves its permits and is
+     * told how long to wait until they are covered, so waiting callers queue up fairly.
+     */
+    static final class TokenBucket {
+        private final double permitsPerNano;
+        private final double capacity;
+        private double available;
+        private long refilledAt = System.nanoTime();
+
+        TokenBucket(double permitsPerSecond, int capacity) {
+            this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = capacity;
+            this.available = capacity;
+        }
+
+        /**
+         * @return nanoseconds to wait before the permits are covered, or -1 (nothing
+         *         reserved) if that would be longer than maxWaitNanos
+         */
+        synchronized long reserve(int permits, long maxWaitNanos) {
+            long now = System.nanoTime();
+            available = Math.min(capacity, available + (now - refilledAt) * permitsPerNano);
+            refilledAt = now;
+
+            double after = available - permits;
+            long waitNanos = after >= 0 ? 0 : (long) Math.ceil(-after / permitsPerNano);
+            if (waitNanos > maxWaitNanos) {
+                return -1;
+            }
+            available = after; // May go negative: later callers wait behind this one
+            return waitNanos;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package citu.stde.service;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Feed of file changes in a user's Drive (the Drive Changes API), read page by page
+ * from a saved page token. Kept behind an interface so the folder sync can run
+ * against a fake Drive in tests.
+ */
+public interface DriveChangeSource {
+
+    /**
+     * Token for "now": reading from it returns only changes made after this call.
+     */
+    String startPageToken(String principalName) throws IOException;
+
+    /**
+     * One page of changes visible to the given user, starting at the page token.
+     */
+    ChangePage changes(String principalName, String pageToken) throws IOException;
+
+    /**
+     * @param nextPageToken Set while more pages follow
+     * @param newStartPageToken Set on the last page; where the next sync should resume
+     */
+    record ChangePage(List<FileChange> changes, String nextPageToken, String newStartPageToken) {}
+
+    /**
+     * A changed file. Removed and trashed files have no metadata beyond the id.
+     * @param uploadedByStde The file was created by STDE itself (upload or import)
+     */
+    record FileChange(String fileId, boolean removed, String name, String mimeType, Long size,
+                      List<String> parents, String webViewLink, String ownerEmail, boolean uploadedByStde) {}
+}
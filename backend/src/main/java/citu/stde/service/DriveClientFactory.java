@@ -0,0 +1,156 @@
+package citu.stde.service;
+
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.services.drive.Drive;
+import com.google.auth.http.HttpCredentialsAdapter;
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.ClientAuthorizationException;
+import org.springframework.security.oauth2.client.OAuth2AuthorizeRequest;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Builds Google Drive clients on the shared HTTP transport and keeps one per user.
+ *
+ * Tokens come from the persisted authorized clients (see SecurityConfig) and are
+ * refreshed with the user's refresh token once expired, so background work keeps
+ * going after restarts and token expiry. A cached client is reused only while the
+ * user's access token is the same value and has not expired; after a re-login or
+ * token refresh a new client is built.
+ * The cache is LRU-bounded by app.drive.client-cache-size.
+ */
+@Service
+@RequiredArgsConstructor
+public class DriveClientFactory {
+
+    static final String APPLICATION_NAME = "STDE Platform";
+    private static final String REGISTRATION_ID = "google";
+    private static final GsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
+
+    private final HttpTransport driveHttpTransport;
+    private final OAuth2AuthorizedClientManager authorizedClientManager;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.drive.client-cache-size:500}")
+    private int cacheSize;
+
+    @Value("${app.drive.upload.max-retries:5}")
+    private int uploadMaxRetries;
+
+    // Access-ordered so the least recently used principal is evicted first
+    private final Map<String, CachedClient> clients = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedClient> eldest) {
+            return size() > cacheSize;
+        }
+    };
+
+    /**
+     * Drive client for the user of the current request.
+     */
+    public Drive forCurrentUser() {
+        return forPrincipal(currentPrincipal());
+    }
+
+    /**
+     * Principal name (email) of the user of the current request.
+     */
+    public String currentPrincipal() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null) {
+            throw new IllegalStateException("No user logged in");
+        }
+        return authentication.getName();
+    }
+
+    /**
+     * Drive client for the given principal (the user's email). Usable from background
+     * threads, where there is no security context.
+     */
+    public Drive forPrincipal(String principalName) {
+        OAuth2AccessToken token = accessToken(principalName);
+
+        synchronized (clients) {
+            CachedClient cached = clients.get(principalName);
+            if (cached != null && cached.isValidFor(token)) {
+                meterRegistry.counter("stde.drive.client.cache", "result", "hit").increment();
+                return cached.drive();
+            }
+        }
+
+        meterRegistry.counter("stde.drive.client.cache", "result", "miss").increment();
+        CachedClient built = new CachedClient(token.getTokenValue(), token.getExpiresAt(), build(token));
+        synchronized (clients) {
+            clients.put(principalName, built);
+        }
+        return built.drive();
+    }
+
+    // Stored token of the principal, refreshed first if it has expired and a refresh token is on file
+    private OAuth2AccessToken accessToken(String principalName) {
+        OAuth2AuthorizedClient client;
+        try {
+            client = authorizedClientManager.authorize(OAuth2AuthorizeRequest.withClientRegistrationId(REGISTRATION_ID)
+                    .principal(principalName)
+                    .build());
+        } catch (ClientAuthorizationException e) {
+            meterRegistry.counter("stde.drive.token.refresh", "result", "failed").increment();
+            throw new ReconnectRequiredException("Google Drive access was revoked or has expired. Please logout and log in again with Google.");
+        }
+        if (client == null || client.getAccessToken() == null) {
+            throw new ReconnectRequiredException("Google Drive connection not found. Please logout and log in again with Google.");
+        }
+        OAuth2AccessToken token = client.getAccessToken();
+        if (token.getExpiresAt() != null && !Instant.now().isBefore(token.getExpiresAt())) {
+            // Expired and no refresh token (signed in before offline access was requested)
+            throw new ReconnectRequiredException("Google Drive access has expired. Please logout and log in again with Google.");
+        }
+        return token;
+    }
+
+    private Drive build(OAuth2AccessToken token) {
+        // No expiry on the credential: it cannot refresh itself, so it must never try to
+        GoogleCredentials credentials = GoogleCredentials.create(new AccessToken(token.getTokenValue(), null));
+        HttpCredentialsAdapter credentialsAdapter = new HttpCredentialsAdapter(credentials);
+
+        HttpRequestInitializer initializer = request -> {
+            credentialsAdapter.initialize(request);
+            ResumableUploadRetry.install(request, uploadMaxRetries, meterRegistry);
+        };
+
+        return new Drive.Builder(driveHttpTransport, JSON_FACTORY, initializer)
+                .setApplicationName(APPLICATION_NAME)
+                .build();
+    }
+
+    /**
+     * The principal has no usable Drive authorization; only logging in with Google again helps,
+     * so callers should not retry.
+     */
+    public static class ReconnectRequiredException extends IllegalStateException {
+        public ReconnectRequiredException(String message) {
+            super(message);
+        }
+    }
+
+    private record CachedClient(String tokenValue, Instant expiresAt, Drive drive) {
+        boolean isValidFor(OAuth2AccessToken token) {
+            return tokenValue.equals(token.getTokenValue())
+                    && (expiresAt == null || Instant.now().isBefore(expiresAt));
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package citu.stde.service;
+
+import com.google.api.services.drive.model.File;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Stores documents in the uploader's Google Drive (the original behaviour).
+ * Always registered, since documents imported from Drive live there regardless of the backend.
+ */
+@Service
+@RequiredArgsConstructor
+public class DriveDocumentStorage implements DocumentStorage {
+
+    public static final String BACKEND = "drive";
+
+    private final GoogleDriveService googleDriveService;
+
+    @Override
+    public String backend() {
+        return BACKEND;
+    }
+
+    @Override
+    public StoredFile store(InputStream content, long length, String contentType, String filename, StoreTarget target) throws IOException {
+        File driveFile = googleDriveService.uploadFile(content, length, contentType, filename,
+                target.driveFolderId(), target.ownerPrincipal());
+        return new StoredFile(driveFile.getId(), driveFile.getWebViewLink());
+    }
+
+    @Override
+    public InputStream open(String key, RequestDeadline deadline) throws IOException {
+        return googleDriveService.downloadFile(key, deadline);
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        googleDriveService.deleteFile(key);
+    }
+
+    @Override
+    public void delete(String key, String ownerPrincipal) throws IOException {
+        googleDriveService.deleteFile(key, ownerPrincipal);
+    }
+}
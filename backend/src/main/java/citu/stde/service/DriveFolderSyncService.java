@@ -0,0 +1,176 @@
+package citu.stde.service;
+
+import citu.stde.entity.Classroom;
+import citu.stde.entity.Document;
+import citu.stde.entity.DocumentStatus;
+import citu.stde.entity.User;
+import citu.stde.repository.ClassroomRepository;
+import citu.stde.repository.DocumentRepository;
+import citu.stde.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Imports files that were put straight into a classroom's Drive folder.
+ *
+ * Each teacher keeps one Drive changes cursor (page token) for all of their classrooms.
+ * A sync reads only the changes since that cursor, through the teacher's Drive, and
+ * creates a Document for every new file whose parent is one of the teacher's classroom
+ * folders; folders are never listed. The first sync only records the current cursor, so
+ * files already in the folders are not imported.
+ *
+ * A page of changes is applied in the same transaction that moves the cursor past it,
+ * with a compare-and-set on the old cursor, so two nodes never import the same page.
+ */
+@Service
+@RequiredArgsConstructor
+public class DriveFolderSyncService {
+
+    private static final String FOLDER_MIME_TYPE = "application/vnd.google-apps.folder";
+
+    private final ClassroomRepository classroomRepository;
+    private final DocumentRepository documentRepository;
+    private final UserRepository userRepository;
+    private final ClassroomAccessCache classroomAccessCache;
+    private final DriveChangeSource driveChangeSource;
+    private final AdminService adminService;
+    private final MeterRegistry meterRegistry;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${app.drive.sync.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.drive.sync.max-pages-per-run:20}")
+    private int maxPagesPerRun;
+
+    @Scheduled(initialDelayString = "${app.drive.sync.initial-delay-ms:30000}",
+               fixedDelayString = "${app.drive.sync.interval-ms:120000}")
+    public void syncAll() {
+        if (!enabled) return;
+        Map<UUID, List<Classroom>> byTeacher = classroomRepository.findByDriveFolderIdIsNotNull().stream()
+                .collect(Collectors.groupingBy(Classroom::getTeacherId));
+        byTeacher.forEach((teacherId, classrooms) -> {
+            try {
+                syncTeacher(teacherId, classrooms);
+                meterRegistry.counter("stde.drive.sync.runs", "result", "ok").increment();
+            } catch (Exception e) {
+                System.err.println("Warning: Drive sync failed for teacher " + teacherId + ": " + e.getMessage());
+                meterRegistry.counter("stde.drive.sync.runs", "result", "failed").increment();
+            }
+        });
+    }
+
+    /**
+     * Applies the pending changes of the teacher's Drive to their classroom folders.
+     * @param classrooms The teacher's classrooms that have a Drive folder
+     * @return number of documents created
+     */
+    public int syncTeacher(UUID teacherId, List<Classroom> classrooms) throws IOException {
+        User teacher = userRepository.findById(teacherId).orElse(null);
+        if (teacher == null) return 0;
+        String principal = teacher.getEmail();
+
+        String token = teacher.getDriveChangesPageToken();
+        if (token == null) {
+            userRepository.initDriveChangesPageToken(teacherId, driveChangeSource.startPageToken(principal));
+            return 0;
+        }
+
+        Map<String, Classroom> byFolder = classrooms.stream()
+                .collect(Collectors.toMap(Classroom::getDriveFolderId, Function.identity(), (first, second) -> first));
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        int imported = 0;
+        for (int page = 0; page < maxPagesPerRun; page++) {
+            DriveChangeSource.ChangePage changes = driveChangeSource.changes(principal, token);
+            String current = token;
+            String next = changes.nextPageToken() != null ? changes.nextPageToken() : changes.newStartPageToken();
+            if (next == null || (next.equals(current) && changes.changes().isEmpty())) break; // Nothing new
+
+            Integer created = transaction.execute(status -> {
+                if (userRepository.advanceDriveChangesPageToken(teacherId, current, next) == 0) {
+                    return null; // Another node applied this page
+                }
+                return importChanges(byFolder, teacher, changes.changes());
+            });
+            if (created == null) break;
+            imported += created;
+
+            if (changes.nextPageToken() == null) break; // Caught up
+            token = next;
+        }
+
+        if (imported > 0) {
+            System.out.println("Drive sync: imported " + imported + " file(s) into the classrooms of " + principal);
+        }
+        return imported;
+    }
+
+    private int importChanges(Map<String, Classroom> byFolder, User teacher, List<DriveChangeSource.FileChange> changes) {
+        int created = 0;
+        for (DriveChangeSource.FileChange change : changes) {
+            Classroom classroom = isNewFile(change) ? classroomOf(change, byFolder) : null;
+            if (classroom == null) {
+                meterRegistry.counter("stde.drive.sync.files", "result", "skipped").increment();
+                continue;
+            }
+
+            User owner = ownerOf(change, classroom, teacher);
+            Document doc = new Document();
+            doc.setFilename(change.name());
+            doc.setFileType(change.mimeType());
+            doc.setFileSize(change.size());
+            doc.setStoragePath(DocumentStorageRouter.storagePath(DriveDocumentStorage.BACKEND, change.fileId()));
+            doc.setDriveFileId(change.fileId());
+            doc.setDriveWebViewLink(change.webViewLink());
+            doc.setUploadDate(Instant.now());
+            doc.setUser(owner);
+            doc.setClassroom(classroom);
+            doc.setStatus(DocumentStatus.UPLOADED);
+            doc.setIsCloudFile(true);
+            doc.setIsSubmitted(false);
+            documentRepository.save(doc);
+
+            adminService.logActivity("SYNC", owner.getEmail(), "Synced from Drive: " + change.name());
+            meterRegistry.counter("stde.drive.sync.files", "result", "imported").increment();
+            created++;
+        }
+        return created;
+    }
+
+    // Attributes the file to its Drive owner only if they are enrolled in the classroom;
+    // anyone else with access to the folder (or an unknown account) counts as the teacher
+    private User ownerOf(DriveChangeSource.FileChange change, Classroom classroom, User teacher) {
+        if (change.ownerEmail() == null) return teacher;
+        return userRepository.findByEmail(change.ownerEmail())
+                .filter(user -> classroomAccessCache.isEnrolled(classroom.getId(), user.getId()))
+                .orElse(teacher);
+    }
+
+    private static Classroom classroomOf(DriveChangeSource.FileChange change, Map<String, Classroom> byFolder) {
+        for (String parent : change.parents()) {
+            Classroom classroom = byFolder.get(parent);
+            if (classroom != null) return classroom;
+        }
+        return null;
+    }
+
+    private boolean isNewFile(DriveChangeSource.FileChange change) {
+        return !change.removed()
+                && !change.uploadedByStde()
+                && !FOLDER_MIME_TYPE.equals(change.mimeType())
+                && !documentRepository.existsByDriveFileId(change.fileId());
+    }
+}
@@ -0,0 +1,21 @@
+package citu.stde.service;
+
+import citu.stde.entity.UserType;
+
+/**
+ * Priority lanes for LLM calls. Each lane gets a share of the OpenAI capacity
+ * proportional to its weight (see app.llm.lane-weight.* in application.properties).
+ */
+public enum EvaluationLane {
+    INTERACTIVE, // Student clicked "Evaluate" and is waiting for the result
+    BATCH,       // Teacher re-running evaluations for a whole class
+    BACKGROUND;  // System re-evaluations (recovery, sync, etc.)
+
+    /**
+     * Lane of an evaluation someone asked for: teachers (re-running a class's documents)
+     * get BATCH, so they share the class's capacity with its students instead of taking it.
+     */
+    public static EvaluationLane forRequester(UserType type) {
+        return type == UserType.TEACHER ? BATCH : INTERACTIVE;
+    }
+}
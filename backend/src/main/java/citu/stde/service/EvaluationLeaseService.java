@@ -0,0 +1,201 @@
+package citu.stde.service;
+
+import citu.stde.entity.Document;
+import citu.stde.entity.DocumentStatus;
+import citu.stde.repository.DocumentRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.context.WebServerGracefulShutdownLifecycle;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lease-based ownership of PROCESSING documents.
+ *
+ * A node must claim a document before evaluating it. The claim records when and by
+ * which node, so a crashed or hung evaluation can be detected and failed by the
+ * reaper instead of leaving the document in PROCESSING forever. On shutdown the
+ * node stops taking new work, waits for in-flight evaluations, then gives up its leases.
+ */
+@Service
+@RequiredArgsConstructor
+public class EvaluationLeaseService implements SmartLifecycle {
+
+    private final DocumentRepository documentRepository;
+
+    @Value("${app.evaluation.lease-seconds:300}")
+    private long leaseSeconds;
+
+    @Value("${app.evaluation.drain-timeout-seconds:60}")
+    private long drainTimeoutSeconds;
+
+    @Value("${app.node-id:}")
+    private String configuredNodeId;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Object drainMonitor = new Object();
+    private volatile boolean running = false;
+    private volatile boolean draining = false;
+    private String nodeId;
+
+    @PostConstruct
+    void resolveNodeId() {
+        if (configuredNodeId != null && !configuredNodeId.isBlank()) {
+            nodeId = configuredNodeId.trim();
+            return;
+        }
+        // Host name plus PID: two instances on one host must never share leases
+        long pid = ProcessHandle.current().pid();
+        try {
+            nodeId = InetAddress.getLocalHost().getHostName() + "-" + pid;
+        } catch (Exception e) {
+            nodeId = "node-" + UUID.randomUUID();
+        }
+    }
+
+    /**
+     * Moves the document to PROCESSING under this node's lease, as a single
+     * conditional UPDATE on the status and version that were read.
+     * @return false if another request changed the document first or holds a live lease
+     */
+    public boolean claim(Document doc) {
+        if (draining) {
+            throw new RuntimeException("TYPE:RATE_LIMIT|Server is restarting. Please try again in a moment.");
+        }
+
+        Instant now = Instant.now();
+        DocumentStatus from = doc.getStatus();
+        if (from == DocumentStatus.PROCESSING) {
+            // Only an expired lease may be taken over
+            if (doc.getProcessingClaimedAt() != null && !isExpired(doc.getProcessingClaimedAt(), now)) {
+                return false;
+            }
+        } else if (!from.canTransitionTo(DocumentStatus.PROCESSING)) {
+            throw new IllegalStateException("Invalid status change: " + from + " -> " + DocumentStatus.PROCESSING);
+        }
+
+        int updated = documentRepository.transitionStatus(
+                doc.getId(), from, doc.getVersion(), DocumentStatus.PROCESSING, now, nodeId);
+        if (updated == 0) {
+            return false;
+        }
+
+        // Keep the loaded entity in sync with the row we just updated
+        doc.setStatus(DocumentStatus.PROCESSING);
+        doc.setProcessingClaimedAt(now);
+        doc.setProcessingOwner(nodeId);
+        doc.setVersion(doc.getVersion() + 1);
+        inFlight.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Records the content hash while holding the lease.
+     */
+    public void updateContentHash(Document doc, String contentHash) {
+        documentRepository.updateContentHash(doc.getId(), contentHash, nodeId);
+        doc.setContentHash(contentHash);
+    }
+
+    /**
+     * Ends the lease by moving the document from PROCESSING to its final status.
+     * @return false if the lease was lost (reaped or taken over) in the meantime
+     */
+    public boolean finish(Document doc, DocumentStatus status) {
+        if (!DocumentStatus.PROCESSING.canTransitionTo(status)) {
+            throw new IllegalStateException("Invalid status change: " + DocumentStatus.PROCESSING + " -> " + status);
+        }
+
+        int updated = documentRepository.transitionStatus(
+                doc.getId(), DocumentStatus.PROCESSING, doc.getVersion(), status, null, null);
+        if (updated == 0) {
+            System.err.println("Warning: Lost the processing lease on document " + doc.getId() + "; status not changed to " + status);
+            return false;
+        }
+
+        doc.setStatus(status);
+        doc.setProcessingClaimedAt(null);
+        doc.setProcessingOwner(null);
+        doc.setVersion(doc.getVersion() + 1);
+        return true;
+    }
+
+    /**
+     * Must be called once for every successful claim, after the evaluation is done.
+     */
+    public void release() {
+        if (inFlight.decrementAndGet() == 0) {
+            synchronized (drainMonitor) {
+                drainMonitor.notifyAll();
+            }
+        }
+    }
+
+    private boolean isExpired(Instant claimedAt, Instant now) {
+        return claimedAt.isBefore(now.minus(leaseSeconds, ChronoUnit.SECONDS));
+    }
+
+    @Scheduled(fixedDelayString = "${app.evaluation.reaper-interval-ms:60000}")
+    public void reapExpiredLeases() {
+        int reaped = documentRepository.failExpiredLeases(Instant.now().minus(leaseSeconds, ChronoUnit.SECONDS));
+        if (reaped > 0) {
+            System.err.println("Warning: Marked " + reaped + " stale PROCESSING document(s) as FAILED.");
+        }
+    }
+
+    // --- LIFECYCLE ---
+
+    @Override
+    public void start() {
+        // Anything this node was processing before a restart is dead. Only matches when
+        // app.node-id is set to a stable per-instance id; otherwise the reaper fails those
+        // leases once they expire.
+        int recovered = documentRepository.failLeasesOwnedBy(nodeId);
+        if (recovered > 0) {
+            System.err.println("Warning: Recovered " + recovered + " document(s) left in PROCESSING by a previous run.");
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        draining = true;
+        long deadline = System.currentTimeMillis() + drainTimeoutSeconds * 1000;
+        synchronized (drainMonitor) {
+            while (inFlight.get() > 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    System.err.println("Warning: Shutting down with " + inFlight.get() + " evaluation(s) still running.");
+                    break;
+                }
+                try {
+                    drainMonitor.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        documentRepository.failLeasesOwnedBy(nodeId);
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // Stop after the web server has finished its own graceful shutdown
+        return WebServerGracefulShutdownLifecycle.SMART_LIFECYCLE_PHASE - 1;
+    }
+}
@@ -1,35 +1,38 @@
 package citu.stde.service;
 
+import citu.stde.dto.CursorPage;
 import citu.stde.dto.EvaluationDTO;
+import citu.stde.dto.PageCursor;
 import citu.stde.dto.EvaluationResponse;
 import citu.stde.entity.Document;
 import citu.stde.entity.DocumentStatus;
+import citu.stde.entity.DocumentText;
 import citu.stde.entity.Evaluation;
 import citu.stde.entity.User;
 import citu.stde.repository.DocumentRepository;
 import citu.stde.repository.EvaluationRepository;
 import citu.stde.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.text.PDFTextStripper;
-import org.apache.poi.xwpf.extractor.XWPFWordExtractor;
-import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.hibernate.Hibernate;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
-import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -39,10 +42,22 @@ public class EvaluationService {
     private final ChatClient.Builder chatClientBuilder;
     private final DocumentRepository documentRepository;
     private final EvaluationRepository evaluationRepository;
-    private final GoogleDriveService googleDriveService;
+    private final DocumentStorageRouter documentStorageRouter;
     private final ClassroomService classroomService; 
     private final UserRepository userRepository;
     private final AdminService adminService; 
+    private final LlmScheduler llmScheduler;
+    private final DocumentTextExtractor documentTextExtractor;
+    private final BlobCache blobCache;
+    private final DocumentTextService documentTextService;
+    private final EvaluationLeaseService evaluationLeaseService;
+    private final MeterRegistry meterRegistry;
+    private final KeysetPaging keysetPaging;
+    private final PlatformTransactionManager transactionManager;
+
+    // Total time budget for one evaluation request (Drive + extraction + AI)
+    @Value("${app.evaluation.deadline-seconds:180}")
+    private long deadlineSeconds;
 
     // ==========================================
     // DEV SETTINGS (Toggle here for testing)
@@ -51,8 +66,26 @@ public class EvaluationService {
     private static final int HOURLY_LIMIT = 30;      // Dev limit increased to 30
     // ==========================================
 
-    @Transactional
-    public EvaluationDTO evaluateDocument(UUID documentId, UUID userId) {
+    // Not @Transactional: the lease and every status change must commit immediately,
+    // and no DB transaction should stay open while waiting on Drive or the AI.
+
+    // System-initiated re-evaluation (nobody waiting on it): lowest-priority lane
+    public EvaluationDTO reevaluateDocument(UUID documentId, UUID userId) {
+        return evaluateDocument(documentId, userId, user -> EvaluationLane.BACKGROUND, newDeadline());
+    }
+
+    // Evaluation requested by a user; the lane follows their role (EvaluationLane.forRequester)
+    public EvaluationDTO evaluateDocument(UUID documentId, UUID userId, RequestDeadline deadline) {
+        return evaluateDocument(documentId, userId, user -> EvaluationLane.forRequester(user.getUserType()), deadline);
+    }
+
+    // Fresh time budget for one evaluation (app.evaluation.deadline-seconds)
+    public RequestDeadline newDeadline() {
+        return RequestDeadline.after(Duration.ofSeconds(deadlineSeconds));
+    }
+
+    private EvaluationDTO evaluateDocument(UUID documentId, UUID userId, Function<User, EvaluationLane> laneOf,
+                                           RequestDeadline deadline) {
         Document doc = documentRepository.findById(documentId)
                 .orElseThrow(() -> new IllegalArgumentException("Document not found"));
         
@@ -60,16 +93,49 @@ public class EvaluationService {
             throw new SecurityException("Unauthorized access to document");
         }
 
-        checkAndIncrementUsage(userId);
+        if (doc.getStatus() == DocumentStatus.PENDING_STORAGE) {
+            throw new RuntimeException("TYPE:STILL_UPLOADING|This document is still being uploaded. Please try again in a moment.");
+        }
+
+        User user = checkUsageQuota(userId);
+        EvaluationLane lane = laneOf.apply(user);
+
+        // Status updates below detach the document, so load the owner while we still can
+        Hibernate.initialize(doc.getUser());
+
+        if (!evaluationLeaseService.claim(doc)) {
+            // Lost the race: reuse the winner's result instead of paying for another LLM call
+            return concurrentEvaluationResult(documentId);
+        }
+
+        try {
+            incrementUsage(user);
+            return runEvaluation(doc, userId, lane, deadline);
+        } finally {
+            evaluationLeaseService.release();
+        }
+    }
 
-        doc.setStatus(DocumentStatus.PROCESSING);
-        documentRepository.save(doc);
+    // The winner's result if it is already there; otherwise the client retries later.
+    // Never waits here: this runs on a shared async thread.
+    private EvaluationDTO concurrentEvaluationResult(UUID documentId) {
+        DocumentStatus status = documentRepository.findStatusById(documentId)
+                .orElseThrow(() -> new IllegalArgumentException("Document not found"));
+        if (status == DocumentStatus.COMPLETED) {
+            Evaluation eval = evaluationRepository.findByDocumentId(documentId)
+                    .orElseThrow(() -> new RuntimeException("TYPE:SERVER_ERROR|Evaluation report not found."));
+            return mapToDTO(eval, eval.getDocument().getFilename());
+        }
+        throw new RuntimeException("TYPE:ALREADY_PROCESSING|This document is already being evaluated. Please check back in a moment.");
+    }
 
+    private EvaluationDTO runEvaluation(Document doc, UUID userId, EvaluationLane lane, RequestDeadline deadline) {
+        UUID documentId = doc.getId();
         try {
-            String fileContent = fetchFileContentFromDrive(doc);
-            String currentHash = calculateHash(fileContent);
-            doc.setContentHash(currentHash);
-            documentRepository.save(doc);
+            DocumentText documentText = fetchFileContent(doc, deadline);
+            String fileContent = documentText.getText();
+            String currentHash = documentText.getContentHash();
+            evaluationLeaseService.updateContentHash(doc, currentHash);
 
             Optional<Evaluation> cachedEval = evaluationRepository
                 .findTopByUserIdAndDocument_ContentHashOrderByCreatedAtDesc(userId, currentHash);
@@ -79,17 +145,14 @@ public class EvaluationService {
                 return copyCachedEvaluation(cachedEval.get(), doc, userId);
             }
 
+            // Fairness flow: the classroom, or the student for personal documents
+            String flowKey = doc.getClassroom() != null ? doc.getClassroom().getId().toString() : userId.toString();
+
             String safeContent = truncateContent(fileContent);
-            if (!isValidSoftwareTestingDocument(safeContent)) {
+            if (!llmScheduler.submit(lane, flowKey, deadline, "llm-validate", () -> isValidSoftwareTestingDocument(safeContent))) {
                 throw new IllegalArgumentException("TYPE:INVALID_DOCUMENT|The uploaded document is not a Software Testing Document.");
             }
 
-            Optional<Evaluation> existingEval = evaluationRepository.findByDocumentId(documentId);
-            if (existingEval.isPresent()) {
-                evaluationRepository.delete(existingEval.get());
-                evaluationRepository.flush();
-            }
-
             ChatClient chatClient = chatClientBuilder.build();
             String systemPrompt = """
                 You are a strict QA Auditor. Evaluate the software test document on 4 criteria.
@@ -110,21 +173,27 @@ public class EvaluationService {
                 }
                 """;
 
-            EvaluationResponse aiResponse = chatClient.prompt()
+            EvaluationResponse aiResponse = llmScheduler.submit(lane, flowKey, deadline, "llm-evaluate", () -> chatClient.prompt()
                     .system(systemPrompt)
                     .user(u -> u.text("Document Content:\n{content}").param("content", safeContent))
                     .call()
-                    .entity(EvaluationResponse.class);
+                    .entity(EvaluationResponse.class));
 
             if (aiResponse.completenessScore() == null) {
                 throw new RuntimeException("AI returned null scores.");
             }
 
+            // The previous evaluation is replaced only once the new one exists, in one short transaction
             Evaluation evaluation = mapToEntity(aiResponse, doc, userId);
-            Evaluation savedEval = evaluationRepository.save(evaluation);
+            Evaluation savedEval = new TransactionTemplate(transactionManager).execute(status -> {
+                evaluationRepository.findByDocumentId(documentId).ifPresent(existingEval -> {
+                    evaluationRepository.delete(existingEval);
+                    evaluationRepository.flush();
+                });
+                return evaluationRepository.save(evaluation);
+            });
 
-            doc.setStatus(DocumentStatus.COMPLETED);
-            documentRepository.save(doc);
+            evaluationLeaseService.finish(doc, DocumentStatus.COMPLETED);
 
             // Record evaluation success
             adminService.logActivity("EVALUATE", doc.getUser().getEmail(), "Evaluated document: " + doc.getFilename());
@@ -132,8 +201,17 @@ public class EvaluationService {
             return mapToDTO(savedEval, doc.getFilename());
 
         } catch (Exception e) {
-            doc.setStatus(DocumentStatus.FAILED);
-            documentRepository.save(doc);
+            evaluationLeaseService.finish(doc, DocumentStatus.FAILED);
+
+            // A closed stream after cancellation surfaces as a plain I/O error; count it as cancelled too
+            if (!(e instanceof RequestDeadline.DeadlineExceededException) && (deadline.isCancelled() || deadline.isExpired())) {
+                e = new RequestDeadline.DeadlineExceededException("unknown", deadline.isCancelled() ? "cancelled" : "timeout");
+            }
+            if (e instanceof RequestDeadline.DeadlineExceededException cancelled) {
+                meterRegistry.counter("stde.evaluation.cancelled",
+                        "stage", cancelled.getStage(), "reason", cancelled.getReason()).increment();
+                throw cancelled;
+            }
             
             String errorMsg = e.getMessage().toLowerCase();
             if (errorMsg.contains("429") || errorMsg.contains("rate limit")) {
@@ -149,7 +227,8 @@ public class EvaluationService {
         }
     }
 
-    private void checkAndIncrementUsage(UUID userId) {
+    // Throws QUOTA_EXCEEDED when the hourly limit is used up; resets an expired window
+    private User checkUsageQuota(UUID userId) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new IllegalArgumentException("User not found"));
 
@@ -171,6 +250,12 @@ public class EvaluationService {
             throw new RuntimeException("TYPE:QUOTA_EXCEEDED|You have used all " + HOURLY_LIMIT + " analysis attempts for this hour. Resets in " + minutesLeft + " minutes.");
         }
 
+        return user;
+    }
+
+    // Only the request that actually runs the evaluation is charged
+    private void incrementUsage(User user) {
+        int currentCount = user.getEvaluationCount() == null ? 0 : user.getEvaluationCount();
         user.setEvaluationCount(currentCount + 1);
         userRepository.save(user);
     }
@@ -204,16 +289,6 @@ public class EvaluationService {
         );
     }
 
-    private String calculateHash(String content) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(content.getBytes(StandardCharsets.UTF_8));
-            return HexFormat.of().formatHex(hash);
-        } catch (Exception e) {
-            return null;
-        }
-    }
-
     private EvaluationDTO copyCachedEvaluation(Evaluation cached, Document currentDoc, UUID userId) {
         Evaluation newEval = Evaluation.builder()
                 .document(currentDoc)
@@ -231,8 +306,7 @@ public class EvaluationService {
                 .build();
 
         Evaluation saved = evaluationRepository.save(newEval);
-        currentDoc.setStatus(DocumentStatus.COMPLETED);
-        documentRepository.save(currentDoc);
+        evaluationLeaseService.finish(currentDoc, DocumentStatus.COMPLETED);
         
         // Record cached evaluation
         adminService.logActivity("EVALUATE_CACHE", currentDoc.getUser().getEmail(), "Returned cached evaluation for: " + currentDoc.getFilename());
@@ -247,6 +321,7 @@ public class EvaluationService {
         UUID classId = doc.getClassroom() != null ? doc.getClassroom().getId() : null;
         if (classId == null) throw new SecurityException("Security check failed: Document is not linked to any class.");
         classroomService.verifyClassroomOwnership(classId, teacherId);
+        if (doc.getStatus() == DocumentStatus.PROCESSING) throw new IllegalArgumentException("Cannot override a score while the document is being evaluated.");
         Evaluation eval = evaluationRepository.findByDocumentId(documentId).orElseGet(() -> Evaluation.builder().document(doc).userId(doc.getUser().getId()).build());
         eval.setOverallScore(newScore);
         eval.setCompletenessScore(newScore);
@@ -255,8 +330,12 @@ public class EvaluationService {
         eval.setVerificationScore(newScore);
         eval.setOverallFeedback("Score manually overridden by Professor.");
         Evaluation savedEval = evaluationRepository.save(eval);
-        doc.setStatus(DocumentStatus.COMPLETED); 
-        documentRepository.save(doc);
+        if (doc.getStatus() != DocumentStatus.COMPLETED) {
+            if (!doc.getStatus().canTransitionTo(DocumentStatus.COMPLETED)
+                    || documentRepository.transitionStatus(documentId, doc.getStatus(), doc.getVersion(), DocumentStatus.COMPLETED, null, null) == 0) {
+                throw new IllegalStateException("Document was modified by another request. Please try again.");
+            }
+        }
         
         // Record teacher override
         adminService.logActivity("OVERRIDE", "Teacher (ID: " + teacherId + ")", "Overrode score for: " + doc.getFilename() + " to " + newScore);
@@ -277,23 +356,45 @@ public class EvaluationService {
         return mapToDTO(eval, doc.getFilename());
     }
     
-    private String fetchFileContentFromDrive(Document doc) throws IOException {
-        String driveFileId = doc.getDriveFileId();
-        if (driveFileId == null || driveFileId.isEmpty()) throw new IllegalArgumentException("Document is missing Google Drive File ID");
-        try (InputStream inputStream = googleDriveService.downloadFile(driveFileId)) {
-            String contentType = doc.getFileType();
-            if ("application/pdf".equals(contentType)) return extractTextFromPDF(inputStream);
-            else if ("application/vnd.openxmlformats-officedocument.wordprocessingml.document".equals(contentType)) return extractTextFromDOCX(inputStream);
-            else return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+    private DocumentText fetchFileContent(Document doc, RequestDeadline deadline) throws IOException {
+        // Text extracted at upload (or by an earlier run) skips download and parsing entirely
+        Optional<DocumentText> stored = documentTextService.findCurrent(doc);
+        if (stored.isPresent()) {
+            return stored.get();
         }
-    }
 
-    private String extractTextFromPDF(InputStream inputStream) throws IOException {
-        try (PDDocument document = PDDocument.load(inputStream)) { return new PDFTextStripper().getText(document); }
+        // Then the local copy; only go to the storage backend on a cache miss
+        Optional<InputStream> cached = blobCache.open(doc.getBlobHash());
+        String text;
+        if (cached.isPresent()) {
+            try (InputStream inputStream = cached.get()) {
+                text = documentTextExtractor.extract(inputStream, doc.getFileType(), deadline);
+            }
+        } else {
+            if (doc.getStoragePath() == null && (doc.getDriveFileId() == null || doc.getDriveFileId().isEmpty())) {
+                throw new IllegalArgumentException("Document is missing its storage location");
+            }
+            byte[] bytes;
+            try (InputStream inputStream = documentStorageRouter.open(doc, deadline)) {
+                bytes = documentTextExtractor.readBounded(inputStream);
+            }
+            cacheBlob(doc, bytes);
+            text = documentTextExtractor.extract(bytes, doc.getFileType(), deadline);
+        }
+        return documentTextService.save(doc.getId(), doc.getBlobHash(), text);
     }
 
-    private String extractTextFromDOCX(InputStream inputStream) throws IOException {
-        try (XWPFDocument document = new XWPFDocument(inputStream)) { return new XWPFWordExtractor(document).getText(); }
+    private void cacheBlob(Document doc, byte[] bytes) {
+        if (!blobCache.isEnabled()) return;
+        try {
+            String blobHash = blobCache.put(bytes);
+            if (!blobHash.equals(doc.getBlobHash())) {
+                documentRepository.updateBlobHash(doc.getId(), blobHash);
+                doc.setBlobHash(blobHash);
+            }
+        } catch (IOException e) {
+            System.err.println("Warning: Failed to cache document " + doc.getId() + ": " + e.getMessage());
+        }
     }
 
     private boolean isValidSoftwareTestingDocument(String content) {
@@ -310,8 +411,13 @@ public class EvaluationService {
         return content.length() > 15000 ? content.substring(0, 15000) : content;
     }
 
-    public List<EvaluationDTO> getUserEvaluations(UUID userId) {
-        return evaluationRepository.findByUserId(userId).stream().map(eval -> mapToDTO(eval, eval.getDocument().getFilename())).collect(Collectors.toList());
+    @Transactional(readOnly = true)
+    public CursorPage<EvaluationDTO> getUserEvaluations(UUID userId, String cursor, Integer limit) {
+        PageCursor after = PageCursor.decode(cursor);
+        int size = keysetPaging.pageSize(cursor, limit);
+        List<EvaluationDTO> rows = evaluationRepository.findPageByUserId(userId, after.at(), after.id(), keysetPaging.probe(size))
+                .stream().map(eval -> mapToDTO(eval, eval.getDocument().getFilename())).collect(Collectors.toList());
+        return keysetPaging.page(rows, size, eval -> new PageCursor(eval.getCreatedAt(), eval.getId()));
     }
 
     private Evaluation mapToEntity(EvaluationResponse response, Document doc, UUID userId) {
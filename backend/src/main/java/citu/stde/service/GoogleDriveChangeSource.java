@@ -0,0 +1,65 @@
+package citu.stde.service;
+
+import com.google.api.services.drive.model.Change;
+import com.google.api.services.drive.model.ChangeList;
+import com.google.api.services.drive.model.File;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DriveChangeSource backed by changes.list on the user's Drive.
+ */
+@Service
+@RequiredArgsConstructor
+public class GoogleDriveChangeSource implements DriveChangeSource {
+
+    private static final String CHANGE_FIELDS = "nextPageToken, newStartPageToken, "
+            + "changes(fileId, removed, file(id, name, mimeType, size, parents, webViewLink, trashed, owners(emailAddress), appProperties))";
+
+    private final DriveCallExecutor driveCallExecutor;
+
+    @Value("${app.drive.sync.page-size:100}")
+    private int pageSize;
+
+    @Override
+    public String startPageToken(String principalName) throws IOException {
+        return driveCallExecutor.execute(principalName, "changes.getStartPageToken",
+                drive -> drive.changes().getStartPageToken().execute().getStartPageToken());
+    }
+
+    @Override
+    public ChangePage changes(String principalName, String pageToken) throws IOException {
+        ChangeList page = driveCallExecutor.execute(principalName, "changes.list", drive -> drive.changes().list(pageToken)
+                .setPageSize(pageSize)
+                .setSpaces("drive")
+                .setFields(CHANGE_FIELDS)
+                .execute());
+
+        List<FileChange> changes = new ArrayList<>();
+        if (page.getChanges() != null) {
+            for (Change change : page.getChanges()) {
+                changes.add(toFileChange(change));
+            }
+        }
+        return new ChangePage(changes, page.getNextPageToken(), page.getNewStartPageToken());
+    }
+
+    private static FileChange toFileChange(Change change) {
+        File file = change.getFile();
+        if (Boolean.TRUE.equals(change.getRemoved()) || file == null || Boolean.TRUE.equals(file.getTrashed())) {
+            return new FileChange(change.getFileId(), true, null, null, null, List.of(), null, null, false);
+        }
+        String owner = file.getOwners() != null && !file.getOwners().isEmpty()
+                ? file.getOwners().get(0).getEmailAddress()
+                : null;
+        boolean uploadedByStde = file.getAppProperties() != null
+                && GoogleDriveService.STDE_APP_PROPERTY_VALUE.equals(file.getAppProperties().get(GoogleDriveService.STDE_APP_PROPERTY));
+        return new FileChange(file.getId(), false, file.getName(), file.getMimeType(), file.getSize(),
+                file.getParents() != null ? file.getParents() : List.of(), file.getWebViewLink(), owner, uploadedByStde);
+    }
+}
@@ -1,98 +1,157 @@
 package citu.stde.service;
 
-import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.media.MediaHttpUploader;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpResponse;
 import com.google.api.client.http.InputStreamContent;
-import com.google.api.client.http.javanet.NetHttpTransport;
-import com.google.api.client.json.gson.GsonFactory;
 import com.google.api.services.drive.Drive;
+import com.google.api.services.drive.DriveRequest;
 import com.google.api.services.drive.model.File;
-import com.google.auth.http.HttpCredentialsAdapter;
-import com.google.auth.oauth2.AccessToken;
-import com.google.auth.oauth2.GoogleCredentials;
+import com.google.api.services.drive.model.FileList;
+import com.google.api.services.drive.model.Permission;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
-import org.springframework.security.oauth2.client.OAuth2AuthorizedClientService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class GoogleDriveService {
 
-    private final OAuth2AuthorizedClientService authorizedClientService;
-    private static final String APPLICATION_NAME = "STDE Platform";
-    private static final GsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
+    private static final int MAX_BATCH_SIZE = 100; // Drive's limit per batch request
 
-    /**
-     * Helper to build the Drive client using the current user's OAuth token
-     */
-    private Drive getDriveClient() throws IOException {
-        try {
-            // 1. Get the current user's email (Principal Name)
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            String principalName = authentication.getName(); 
-
-            // 2. Load the OAuth2 client using the email
-            OAuth2AuthorizedClient client = authorizedClientService.loadAuthorizedClient("google", principalName);
+    // Marks files STDE created itself, so the folder sync does not import them a second time
+    static final String STDE_APP_PROPERTY = "stde";
+    static final String STDE_APP_PROPERTY_VALUE = "true";
+    private static final String CLASSROOM_APP_PROPERTY = "stdeClassroomId";
+    private static final String COPY_APP_PROPERTY = "stdeCopyId";
+    private static final String FOLDER_MIME_TYPE = "application/vnd.google-apps.folder";
 
-            if (client == null || client.getAccessToken() == null) {
-                throw new IllegalStateException("Google Drive connection not found. Please logout and log in again with Google.");
-            }
+    private final DriveClientFactory driveClientFactory;
+    private final DriveCallExecutor driveCallExecutor;
+    private final MeterRegistry meterRegistry;
 
-            // 3. Build the Drive Service
-            String accessToken = client.getAccessToken().getTokenValue();
-            GoogleCredentials credentials = GoogleCredentials.create(new AccessToken(accessToken, null));
+    // Must be a multiple of 256 KB (MediaHttpUploader.MINIMUM_CHUNK_SIZE)
+    @Value("${app.drive.upload.chunk-size-bytes:2097152}")
+    private int uploadChunkSize;
 
-            final NetHttpTransport HTTP_TRANSPORT = GoogleNetHttpTransport.newTrustedTransport();
+    @Value("${app.drive.batch.max-attempts:3}")
+    private int batchMaxAttempts;
 
-            return new Drive.Builder(HTTP_TRANSPORT, JSON_FACTORY, new HttpCredentialsAdapter(credentials))
-                    .setApplicationName(APPLICATION_NAME)
-                    .build();
+    /**
+     * Helper to get the (cached) Drive client for the current user's OAuth token
+     */
+    private Drive getDriveClient() throws IOException {
+        return getDriveClient(null);
+    }
 
+    /**
+     * Drive client for the given principal (background work), or for the current user if null.
+     */
+    private Drive getDriveClient(String principalName) throws IOException {
+        try {
+            return principalName != null
+                    ? driveClientFactory.forPrincipal(principalName)
+                    : driveClientFactory.forCurrentUser();
         } catch (Exception e) {
             throw new IOException("Failed to create Google Drive client: " + e.getMessage(), e);
         }
     }
 
     /**
-     * Uploads a file to Google Drive.
+     * Uploads a file to Google Drive as a resumable, chunked upload.
+     * The file is streamed in chunks of app.drive.upload.chunk-size-bytes; a chunk that fails
+     * is resent from the last offset Drive committed (see ResumableUploadRetry).
      * @param multipartFile The file from the frontend
      * @param folderId Optional: The ID of the folder to upload to (can be null for root)
      * @return The Drive File object (containing ID, WebViewLink, etc.)
      */
     public File uploadFile(MultipartFile multipartFile, String folderId) throws IOException {
-        Drive driveService = getDriveClient();
+        try (InputStream in = multipartFile.getInputStream()) {
+            return uploadFile(in, multipartFile.getSize(), multipartFile.getContentType(),
+                    multipartFile.getOriginalFilename(), folderId, null);
+        }
+    }
+
+    /**
+     * Uploads a stream of known length to Google Drive (same resumable upload as above).
+     * @param principalName Whose Drive to use; null for the current user
+     */
+    public File uploadFile(InputStream content, long length, String contentType, String filename,
+                           String folderId, String principalName) throws IOException {
+        Drive driveService = getDriveClient(principalName);
 
         // 1. Set file metadata
         File fileMetadata = new File();
-        fileMetadata.setName(multipartFile.getOriginalFilename());
+        fileMetadata.setName(filename);
+        fileMetadata.setAppProperties(stdeAppProperties());
         
         // If a folder ID is provided, place the file inside it
         if (folderId != null && !folderId.isEmpty()) {
             fileMetadata.setParents(Collections.singletonList(folderId));
         }
 
-        // 2. Set file content
-        InputStreamContent mediaContent = new InputStreamContent(
-                multipartFile.getContentType(),
-                multipartFile.getInputStream()
-        );
+        // 2. Set file content. The known length lets Drive commit chunk by chunk, and the
+        // buffered stream can rewind within the current chunk when a retry resumes mid-chunk.
+        InputStream in = new BufferedInputStream(content, uploadChunkSize);
+        InputStreamContent mediaContent = new InputStreamContent(contentType, in);
+        mediaContent.setLength(length);
 
         // 3. Upload
         // We request 'id' and 'webViewLink' fields in the response
-        return driveService.files().create(fileMetadata, mediaContent)
-                .setFields("id, name, webViewLink, size, mimeType")
-                .execute();
+        Drive.Files.Create create = driveService.files().create(fileMetadata, mediaContent)
+                .setFields("id, name, webViewLink, size, mimeType");
+        MediaHttpUploader uploader = create.getMediaHttpUploader();
+        uploader.setDirectUploadEnabled(false);
+        uploader.setChunkSize(uploadChunkSize);
+
+        // Chunks are retried by ResumableUploadRetry; only take the quota permit here
+        driveCallExecutor.throttle(principalName, 1);
+        long startNanos = System.nanoTime();
+        File uploaded = create.execute();
+        recordUploadThroughput(length, System.nanoTime() - startNanos);
+        return uploaded;
+    }
+
+    /**
+     * App properties for files STDE creates in Drive (uploads and imported copies).
+     */
+    private static Map<String, String> stdeAppProperties() {
+        return Map.of(STDE_APP_PROPERTY, STDE_APP_PROPERTY_VALUE);
+    }
+
+    private void recordUploadThroughput(long bytes, long elapsedNanos) {
+        meterRegistry.counter("stde.drive.upload.bytes").increment(bytes);
+        if (elapsedNanos > 0) {
+            DistributionSummary.builder("stde.drive.upload.throughput")
+                    .description("Drive upload throughput per file")
+                    .baseUnit("bytes/s")
+                    .register(meterRegistry)
+                    .record(bytes * 1_000_000_000.0 / elapsedNanos);
+        }
     }
 
     /**
@@ -100,40 +159,268 @@ public class GoogleDriveService {
      * Used when a Teacher creates a new Class.
      */
     public String createFolder(String folderName, String parentFolderId) throws IOException {
-        Drive driveService = getDriveClient();
+        return createFolder(folderName, parentFolderId, null, null);
+    }
 
+    /**
+     * @param principalName Whose Drive to use; null for the current user
+     * @param classroomId Tags the folder so a retried creation can find it (see findClassroomFolder)
+     */
+    public String createFolder(String folderName, String parentFolderId, String principalName, UUID classroomId) throws IOException {
         File fileMetadata = new File();
         fileMetadata.setName(folderName);
-        fileMetadata.setMimeType("application/vnd.google-apps.folder");
+        fileMetadata.setMimeType(FOLDER_MIME_TYPE);
+        if (classroomId != null) {
+            fileMetadata.setAppProperties(Map.of(STDE_APP_PROPERTY, STDE_APP_PROPERTY_VALUE, CLASSROOM_APP_PROPERTY, classroomId.toString()));
+        }
 
         if (parentFolderId != null) {
             fileMetadata.setParents(Collections.singletonList(parentFolderId));
         }
 
-        File file = driveService.files().create(fileMetadata)
+        File file = driveCallExecutor.execute(principalName, "files.create", drive -> drive.files().create(fileMetadata)
                 .setFields("id")
-                .execute();
+                .execute());
 
         return file.getId();
     }
 
+    /**
+     * Folder an earlier attempt already created for the classroom, if any.
+     */
+    public Optional<String> findClassroomFolder(UUID classroomId, String principalName) throws IOException {
+        String query = "mimeType = '" + FOLDER_MIME_TYPE + "' and trashed = false and appProperties has { key='"
+                + CLASSROOM_APP_PROPERTY + "' and value='" + classroomId + "' }";
+        FileList found = driveCallExecutor.execute(principalName, "files.list", drive -> drive.files().list()
+                .setQ(query)
+                .setSpaces("drive")
+                .setFields("files(id)")
+                .setPageSize(1)
+                .execute());
+        return found.getFiles() == null || found.getFiles().isEmpty()
+                ? Optional.empty()
+                : Optional.of(found.getFiles().get(0).getId());
+    }
+
+    /**
+     * Copies a file into the given folder.
+     * files.copy is not idempotent, so every copy is tagged with a fresh id in its
+     * appProperties; before a retry, the copy an earlier attempt may already have
+     * made is looked up by that tag instead of copying again.
+     * @param fields Fields of the copy to return, e.g. "id, name, webViewLink"
+     */
+    public File copyFile(String fileId, String parentFolderId, String fields) throws IOException {
+        String copyId = UUID.randomUUID().toString();
+        File copyMetadata = new File();
+        copyMetadata.setParents(Collections.singletonList(parentFolderId));
+        copyMetadata.setAppProperties(Map.of(STDE_APP_PROPERTY, STDE_APP_PROPERTY_VALUE, COPY_APP_PROPERTY, copyId));
+
+        String query = "trashed = false and appProperties has { key='" + COPY_APP_PROPERTY + "' and value='" + copyId + "' }";
+        boolean[] attempted = {false};
+        return driveCallExecutor.execute(null, "files.copy", drive -> {
+            if (attempted[0]) {
+                FileList earlier = drive.files().list()
+                        .setQ(query)
+                        .setSpaces("drive")
+                        .setFields("files(" + fields + ")")
+                        .setPageSize(1)
+                        .execute();
+                if (earlier.getFiles() != null && !earlier.getFiles().isEmpty()) {
+                    meterRegistry.counter("stde.drive.copy.recovered").increment();
+                    return earlier.getFiles().get(0);
+                }
+            }
+            attempted[0] = true;
+            return drive.files().copy(fileId, copyMetadata)
+                    .setFields(fields)
+                    .execute();
+        });
+    }
+
     /**
      * Downloads a file's content as an InputStream.
      * Used by the AI Evaluation Service to read the file text.
      */
     public InputStream downloadFile(String fileId) throws IOException {
-        Drive driveService = getDriveClient();
-        
         // For Google Docs/Slides (native formats), we might need export(), 
         // but for uploaded PDFs/DOCX, we use get().executeMedia()
-        return driveService.files().get(fileId).executeMediaAsInputStream();
+        return driveCallExecutor.execute(null, "files.download",
+                drive -> drive.files().get(fileId).executeMediaAsInputStream());
+    }
+
+    /**
+     * Downloads a file's content within the remaining request budget.
+     * Connect/read timeouts are capped to the budget, every read re-checks it,
+     * and cancelling the request closes the connection.
+     */
+    public InputStream downloadFile(String fileId, RequestDeadline deadline) throws IOException {
+        deadline.check("download");
+
+        HttpResponse response = driveCallExecutor.execute(null, "files.download", drive -> {
+            deadline.check("download");
+            Drive.Files.Get get = drive.files().get(fileId);
+            get.set("alt", "media");
+            HttpRequest request = get.buildHttpRequest();
+            int timeoutMillis = (int) Math.min(Integer.MAX_VALUE, Math.max(1, deadline.remainingMillis()));
+            request.setConnectTimeout(timeoutMillis);
+            request.setReadTimeout(timeoutMillis);
+            return request.execute();
+        });
+        InputStream content = response.getContent();
+        deadline.onCancel(() -> {
+            try {
+                response.disconnect();
+            } catch (IOException ignored) {
+                // Connection is being abandoned anyway
+            }
+        });
+        return deadline.guard(content, "download");
     }
 
     /**
      * Deletes a file from Google Drive (moves to trash).
      */
     public void deleteFile(String fileId) throws IOException {
-        Drive driveService = getDriveClient();
-        driveService.files().delete(fileId).execute();
+        deleteFile(fileId, null);
+    }
+
+    /**
+     * @param principalName Whose Drive to use; null for the current user
+     */
+    public void deleteFile(String fileId, String principalName) throws IOException {
+        driveCallExecutor.execute(principalName, "files.delete", drive -> drive.files().delete(fileId).execute());
+    }
+
+    // --- BATCH OPERATIONS ---
+
+    /**
+     * Deletes many files in Drive batch requests (up to 100 per HTTP round-trip).
+     * Files that are already gone count as deleted.
+     */
+    public BatchResult<Void> deleteFiles(Collection<String> fileIds) throws IOException {
+        return deleteFiles(fileIds, null);
+    }
+
+    /**
+     * @param principalName Whose Drive to use; null for the current user
+     */
+    public BatchResult<Void> deleteFiles(Collection<String> fileIds, String principalName) throws IOException {
+        Drive driveService = getDriveClient(principalName);
+        return executeBatched(fileIds, fileId -> driveService.files().delete(fileId), true, driveService, principalName);
+    }
+
+    /**
+     * Fetches metadata for many files in Drive batch requests.
+     * @param fields Drive field mask, e.g. "id, name, mimeType, size"
+     */
+    public BatchResult<File> getFilesMetadata(Collection<String> fileIds, String fields) throws IOException {
+        return getFilesMetadata(fileIds, fields, null);
+    }
+
+    /**
+     * @param principalName Whose Drive to use; null for the current user
+     */
+    public BatchResult<File> getFilesMetadata(Collection<String> fileIds, String fields, String principalName) throws IOException {
+        Drive driveService = getDriveClient(principalName);
+        return executeBatched(fileIds, fileId -> driveService.files().get(fileId).setFields(fields), false, driveService, principalName);
+    }
+
+    /**
+     * Grants a user a role (reader, commenter, writer) on many files in Drive batch requests.
+     */
+    public BatchResult<Permission> grantPermission(Collection<String> fileIds, String email, String role) throws IOException {
+        return grantPermission(fileIds, email, role, null);
+    }
+
+    /**
+     * @param principalName Whose Drive to use; null for the current user
+     */
+    public BatchResult<Permission> grantPermission(Collection<String> fileIds, String email, String role,
+                                                   String principalName) throws IOException {
+        Drive driveService = getDriveClient(principalName);
+        return executeBatched(fileIds, fileId -> driveService.permissions()
+                .create(fileId, new Permission().setType("user").setRole(role).setEmailAddress(email))
+                .setSendNotificationEmail(false), false, driveService, principalName);
+    }
+
+    /**
+     * Queues one request per file into batches of MAX_BATCH_SIZE and executes them.
+     * Parts that fail with a transient error (rate limit, 5xx, or a failed batch
+     * round-trip) are retried in a new batch, up to app.drive.batch.max-attempts.
+     */
+    private <T> BatchResult<T> executeBatched(Collection<String> fileIds, BatchPart<T> part,
+                                              boolean notFoundIsSuccess, Drive driveService, String principalName) throws IOException {
+        Map<String, T> results = new LinkedHashMap<>();
+        Map<String, String> failures = new LinkedHashMap<>();
+        List<String> pending = fileIds.stream().filter(Objects::nonNull).distinct().collect(Collectors.toList());
+
+        for (int attempt = 1; !pending.isEmpty(); attempt++) {
+            List<String> retry = new ArrayList<>();
+
+            for (int from = 0; from < pending.size(); from += MAX_BATCH_SIZE) {
+                List<String> group = pending.subList(from, Math.min(from + MAX_BATCH_SIZE, pending.size()));
+                BatchRequest batch = driveService.batch();
+                for (String fileId : group) {
+                    part.build(fileId).queue(batch, new JsonBatchCallback<T>() {
+                        @Override
+                        public void onSuccess(T result, HttpHeaders responseHeaders) {
+                            results.put(fileId, result);
+                        }
+
+                        @Override
+                        public void onFailure(GoogleJsonError error, HttpHeaders responseHeaders) {
+                            if (notFoundIsSuccess && error.getCode() == 404) {
+                                results.put(fileId, null);
+                                return;
+                            }
+                            failures.put(fileId, error.getCode() + " " + error.getMessage());
+                            String reason = driveCallExecutor.retryReason(error);
+                            if (reason != null) {
+                                meterRegistry.counter("stde.drive.retries", "operation", "batch", "reason", reason).increment();
+                                retry.add(fileId);
+                            }
+                        }
+                    });
+                }
+
+                driveCallExecutor.throttle(principalName, group.size()); // Each part counts against the quota
+                meterRegistry.counter("stde.drive.batch.requests").increment();
+                try {
+                    batch.execute();
+                } catch (IOException e) {
+                    // The whole round-trip failed; every part without an answer is retried
+                    for (String fileId : group) {
+                        if (!results.containsKey(fileId) && !failures.containsKey(fileId)) {
+                            failures.put(fileId, "Batch request failed: " + e.getMessage());
+                            retry.add(fileId);
+                        }
+                    }
+                }
+            }
+
+            if (retry.isEmpty() || attempt >= batchMaxAttempts) {
+                break;
+            }
+            meterRegistry.counter("stde.drive.batch.retried-parts").increment(retry.size());
+            retry.forEach(failures::remove);
+            pending = retry;
+            driveCallExecutor.sleep(driveCallExecutor.backoffMillis(attempt));
+        }
+
+        return new BatchResult<>(results, failures);
+    }
+
+    @FunctionalInterface
+    private interface BatchPart<T> {
+        DriveRequest<T> build(String fileId) throws IOException;
+    }
+
+    /**
+     * Outcome of a batched operation: per-file results, and the error for every file that still failed.
+     */
+    public record BatchResult<T>(Map<String, T> results, Map<String, String> failures) {
+        public boolean hasFailures() {
+            return !failures.isEmpty();
+        }
     }
 }
\ No newline at end of file
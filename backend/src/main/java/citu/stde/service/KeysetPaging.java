@@ -0,0 +1,61 @@
+package citu.stde.service;
+
+import citu.stde.dto.CursorPage;
+import citu.stde.dto.PageCursor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Page size limits and page assembly for keyset (cursor) pagination.
+ *
+ * Queries ask for one row more than the page size; if it comes back there is a next
+ * page, and its cursor is the (time, id) of the last row that is returned.
+ *
+ * A request with neither a cursor nor a limit gets every row, as before pagination:
+ * the frontend still reads these lists whole. Lists that only grow (the activity log)
+ * use boundedPageSize instead and always get a page.
+ */
+@Component
+public class KeysetPaging {
+
+    @Value("${app.pagination.default-size:100}")
+    private int defaultSize;
+
+    @Value("${app.pagination.max-size:500}")
+    private int maxSize;
+
+    // Page size of an unpaginated request: all rows fit on the one page
+    public static final int UNPAGED = Integer.MAX_VALUE;
+
+    public int pageSize(String cursor, Integer requested) {
+        if (cursor == null && requested == null) return UNPAGED;
+        return boundedPageSize(requested);
+    }
+
+    /**
+     * Page size for lists too large to return whole: the default page when no limit is given.
+     */
+    public int boundedPageSize(Integer requested) {
+        if (requested == null || requested <= 0) return defaultSize;
+        return Math.min(requested, maxSize);
+    }
+
+    /**
+     * Row limit for the query: the page plus one row to detect whether more follow.
+     */
+    public Pageable probe(int pageSize) {
+        return pageSize == UNPAGED ? Pageable.unpaged() : Pageable.ofSize(pageSize + 1);
+    }
+
+    public <T> CursorPage<T> page(List<T> rows, int pageSize, Function<T, PageCursor> keyOf) {
+        if (rows.size() <= pageSize) {
+            return new CursorPage<>(rows, null);
+        }
+        List<T> items = rows.subList(0, pageSize);
+        return new CursorPage<>(items, keyOf.apply(items.get(pageSize - 1)).encode());
+    }
+}
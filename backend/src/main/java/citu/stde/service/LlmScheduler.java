@@ -0,0 +1,242 @@
+package citu.stde.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Fair-share gate in front of every OpenAI call.
+ *
+ * Only app.llm.max-concurrent calls run at once. Waiting calls are ordered with
+ * weighted fair queuing: every (lane, classroom) pair is its own flow, and a flow's
+ * weight is the weight of its lane. A teacher re-running a whole class only fills
+ * one BATCH flow, so students in other classrooms keep getting their turn.
+ */
+@Service
+@RequiredArgsConstructor
+public class LlmScheduler {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.llm.max-concurrent:4}")
+    private int maxConcurrent;
+
+    @Value("${app.llm.queue-timeout-seconds:120}")
+    private long queueTimeoutSeconds;
+
+    @Value("${app.llm.lane-weight.interactive:8}")
+    private double interactiveWeight;
+
+    @Value("${app.llm.lane-weight.batch:2}")
+    private double batchWeight;
+
+    @Value("${app.llm.lane-weight.background:1}")
+    private double backgroundWeight;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition stateChanged = lock.newCondition();
+
+    // Smallest finish tag is served first; sequence breaks ties in arrival order
+    private final PriorityQueue<Ticket> waiting = new PriorityQueue<>(
+            Comparator.comparingDouble(Ticket::finishTag).thenComparingLong(Ticket::sequence));
+
+    // Last finish tag handed out per flow (lane + classroom)
+    private final Map<String, Double> flowFinishTags = new HashMap<>();
+
+    private final Map<EvaluationLane, AtomicInteger> queueDepth = new EnumMap<>(EvaluationLane.class);
+    private final Map<EvaluationLane, Timer> waitTimers = new EnumMap<>(EvaluationLane.class);
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    // LLM calls run here so the caller can stop waiting when its deadline passes
+    private final ExecutorService llmExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private double virtualTime = 0;
+    private long nextSequence = 0;
+
+    @PostConstruct
+    void registerMetrics() {
+        for (EvaluationLane lane : EvaluationLane.values()) {
+            AtomicInteger depth = new AtomicInteger();
+            queueDepth.put(lane, depth);
+            Gauge.builder("stde.llm.queue.depth", depth, AtomicInteger::get)
+                    .description("LLM calls waiting for capacity")
+                    .tag("lane", lane.name())
+                    .register(meterRegistry);
+            waitTimers.put(lane, Timer.builder("stde.llm.queue.wait")
+                    .description("Time an LLM call waited in the scheduler queue")
+                    .tag("lane", lane.name())
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry));
+        }
+        Gauge.builder("stde.llm.in-flight", inFlight, AtomicInteger::get)
+                .description("LLM calls currently running")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs the given LLM call once the scheduler grants it a slot.
+     * Both the queue wait and the call itself are bounded by the request deadline;
+     * the slot is held until the call really finishes, even if the caller gave up.
+     * @param lane Priority lane of the caller
+     * @param flowKey Fairness key, normally the classroom ID (the user ID for personal documents)
+     * @param stage Stage name reported when the deadline cuts the call short
+     */
+    public <T> T submit(EvaluationLane lane, String flowKey, RequestDeadline deadline, String stage, Supplier<T> call) {
+        acquire(lane, flowKey, deadline, stage);
+
+        // Whoever flips this first owns the slot: the task when it starts, or the canceller
+        // when the task is cancelled before it ever ran (its finally would never release)
+        AtomicBoolean claimed = new AtomicBoolean(false);
+        Future<T> future;
+        try {
+            future = llmExecutor.submit(() -> {
+                if (!claimed.compareAndSet(false, true)) {
+                    return null;
+                }
+                try {
+                    return call.get();
+                } finally {
+                    release();
+                }
+            });
+        } catch (RuntimeException e) {
+            release();
+            throw e;
+        }
+        Runnable cancel = () -> {
+            future.cancel(true);
+            if (claimed.compareAndSet(false, true)) {
+                release();
+            }
+        };
+        deadline.onCancel(cancel);
+
+        try {
+            return future.get(deadline.remainingNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            cancel.run();
+            throw new RequestDeadline.DeadlineExceededException(stage, "timeout");
+        } catch (CancellationException e) {
+            throw new RequestDeadline.DeadlineExceededException(stage, "cancelled");
+        } catch (InterruptedException e) {
+            cancel.run();
+            Thread.currentThread().interrupt();
+            throw new RequestDeadline.DeadlineExceededException(stage, "cancelled");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private void acquire(EvaluationLane lane, String flowKey, RequestDeadline deadline, String stage) {
+        long enqueuedAt = System.nanoTime();
+        long queueDeadline = enqueuedAt + Math.min(TimeUnit.SECONDS.toNanos(queueTimeoutSeconds), deadline.remainingNanos());
+
+        // Wake the waiter if the request is cancelled while queued
+        deadline.onCancel(() -> {
+            lock.lock();
+            try {
+                stateChanged.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        });
+
+        lock.lock();
+        try {
+            Ticket ticket = enqueue(lane, flowKey);
+            boolean granted = false;
+            try {
+                while (waiting.peek() != ticket || inFlight.get() >= maxConcurrent) {
+                    deadline.check(stage + "-queue");
+                    long remaining = queueDeadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw new RuntimeException("TYPE:RATE_LIMIT|AI is busy. Please wait 30 seconds.");
+                    }
+                    stateChanged.awaitNanos(remaining);
+                }
+                granted = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("TYPE:SERVER_ERROR|Evaluation was interrupted while waiting for the AI.");
+            } finally {
+                if (!granted) {
+                    waiting.remove(ticket);
+                    queueDepth.get(lane).decrementAndGet();
+                    stateChanged.signalAll();
+                }
+            }
+
+            waiting.poll();
+            queueDepth.get(lane).decrementAndGet();
+            inFlight.incrementAndGet();
+            virtualTime = ticket.startTag();
+            flowFinishTags.values().removeIf(tag -> tag <= virtualTime); // idle flows restart at virtualTime anyway
+            stateChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        waitTimers.get(lane).record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+    }
+
+    private Ticket enqueue(EvaluationLane lane, String flowKey) {
+        String flow = lane.name() + ":" + flowKey;
+        double start = Math.max(virtualTime, flowFinishTags.getOrDefault(flow, 0.0));
+        double finish = start + 1.0 / weightOf(lane);
+        flowFinishTags.put(flow, finish);
+
+        Ticket ticket = new Ticket(start, finish, nextSequence++);
+        waiting.add(ticket);
+        queueDepth.get(lane).incrementAndGet();
+        return ticket;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        llmExecutor.shutdown();
+    }
+
+    private void release() {
+        lock.lock();
+        try {
+            inFlight.decrementAndGet();
+            stateChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private double weightOf(EvaluationLane lane) {
+        return switch (lane) {
+            case INTERACTIVE -> interactiveWeight;
+            case BATCH -> batchWeight;
+            case BACKGROUND -> backgroundWeight;
+        };
+    }
+
+    private record Ticket(double startTag, double finishTag, long sequence) {}
+}
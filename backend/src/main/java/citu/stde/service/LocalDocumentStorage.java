@@ -0,0 +1,86 @@
+package citu.stde.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+/**
+ * Stores documents on the local filesystem under app.storage.local.dir.
+ * Reads memory-map the file instead of copying it through a stream buffer.
+ * Meant for single-node deployments, development, and offline load tests.
+ */
+@Service
+// Registered while it is the active backend, or while app.storage.local.enabled keeps it readable after a switch
+@ConditionalOnExpression("'${app.storage.backend:drive}' == 'local' or ${app.storage.local.enabled:false}")
+public class LocalDocumentStorage implements DocumentStorage {
+
+    public static final String BACKEND = "local";
+
+    @Value("${app.storage.local.dir:${java.io.tmpdir}/stde-documents}")
+    private String directory;
+
+    private Path root;
+
+    @PostConstruct
+    void init() throws IOException {
+        root = Paths.get(directory).toAbsolutePath().normalize();
+        Files.createDirectories(root);
+    }
+
+    @Override
+    public String backend() {
+        return BACKEND;
+    }
+
+    @Override
+    public StoredFile store(InputStream content, long length, String contentType, String filename, StoreTarget target) throws IOException {
+        String key = "documents/" + UUID.randomUUID();
+        Path path = resolve(key);
+        Files.createDirectories(path.getParent());
+
+        // Write next to the final file, then rename, so readers never see a partial file
+        Path temp = Files.createTempFile(path.getParent(), "upload-", ".tmp");
+        try {
+            Files.copy(content, temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return new StoredFile(key, null);
+    }
+
+    @Override
+    public InputStream open(String key, RequestDeadline deadline) throws IOException {
+        deadline.check("download");
+        try (FileChannel channel = FileChannel.open(resolve(key), StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return deadline.guard(new ByteBufferInputStream(mapped), "download");
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(resolve(key));
+    }
+
+    private Path resolve(String key) {
+        Path path = root.resolve(key).normalize();
+        if (!path.startsWith(root)) {
+            throw new IllegalArgumentException("Invalid storage key: " + key);
+        }
+        return path;
+    }
+}
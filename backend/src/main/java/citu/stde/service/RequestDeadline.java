@@ -0,0 +1,122 @@
+package citu.stde.service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Time budget for one evaluation request, passed down through Drive, extraction and the AI calls.
+ * Each stage asks for the remaining budget and stops as soon as the budget runs out
+ * or the request is cancelled (e.g. the browser disconnected).
+ */
+public final class RequestDeadline {
+
+    private final long deadlineNanos;
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    private final List<Runnable> cancelListeners = new CopyOnWriteArrayList<>();
+
+    private RequestDeadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public static RequestDeadline after(Duration budget) {
+        return new RequestDeadline(System.nanoTime() + budget.toNanos());
+    }
+
+    public long remainingMillis() {
+        return Math.max(0, (deadlineNanos - System.nanoTime()) / 1_000_000);
+    }
+
+    public long remainingNanos() {
+        return Math.max(0, deadlineNanos - System.nanoTime());
+    }
+
+    public boolean isExpired() {
+        return System.nanoTime() >= deadlineNanos;
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * Cancels the request and runs every registered listener (once).
+     */
+    public void cancel() {
+        if (cancelled.compareAndSet(false, true)) {
+            for (Runnable listener : cancelListeners) {
+                try {
+                    listener.run();
+                } catch (RuntimeException e) {
+                    // Listeners only release resources; never let one block the others
+                }
+            }
+        }
+    }
+
+    /**
+     * Registers work to abort when the request is cancelled. Runs immediately if already cancelled.
+     */
+    public void onCancel(Runnable listener) {
+        cancelListeners.add(listener);
+        if (cancelled.get()) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Throws if the request was cancelled or the budget ran out before the given stage.
+     */
+    public void check(String stage) {
+        if (cancelled.get()) {
+            throw new DeadlineExceededException(stage, "cancelled");
+        }
+        if (isExpired()) {
+            throw new DeadlineExceededException(stage, "timeout");
+        }
+    }
+
+    /**
+     * Wraps a stream so every read checks the deadline.
+     */
+    public InputStream guard(InputStream in, String stage) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                check(stage);
+                return super.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                check(stage);
+                return super.read(b, off, len);
+            }
+        };
+    }
+
+    public static class DeadlineExceededException extends RuntimeException {
+        private final String stage;
+        private final String reason;
+
+        public DeadlineExceededException(String stage, String reason) {
+            super("cancelled".equals(reason)
+                    ? "TYPE:CANCELLED|The evaluation was cancelled."
+                    : "TYPE:TIMEOUT|The evaluation took too long and was stopped. Please try again.");
+            this.stage = stage;
+            this.reason = reason;
+        }
+
+        public String getStage() {
+            return stage;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+    }
+}
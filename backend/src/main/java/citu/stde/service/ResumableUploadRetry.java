@@ -0,0 +1,72 @@
+package citu.stde.service;
+
+import com.google.api.client.http.HttpBackOffIOExceptionHandler;
+import com.google.api.client.http.HttpBackOffUnsuccessfulResponseHandler;
+import com.google.api.client.http.HttpIOExceptionHandler;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpUnsuccessfulResponseHandler;
+import com.google.api.client.util.ExponentialBackOff;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.io.IOException;
+
+/**
+ * Retry policy for the requests of a resumable Drive upload.
+ *
+ * MediaHttpUploader wraps these handlers: whenever they allow a retry after a
+ * server error or a network failure, it first asks Drive how many bytes were
+ * committed and resends the chunk from that offset, not from the start of the file.
+ * Other Drive requests are left untouched.
+ */
+class ResumableUploadRetry implements HttpUnsuccessfulResponseHandler, HttpIOExceptionHandler {
+
+    private final HttpUnsuccessfulResponseHandler originalResponseHandler;
+    private final HttpBackOffUnsuccessfulResponseHandler serverErrorBackOff;
+    private final HttpBackOffIOExceptionHandler ioBackOff;
+    private final MeterRegistry meterRegistry;
+
+    private ResumableUploadRetry(HttpRequest request, MeterRegistry meterRegistry) {
+        this.originalResponseHandler = request.getUnsuccessfulResponseHandler();
+        // One back-off per request object, i.e. per chunk
+        this.serverErrorBackOff = new HttpBackOffUnsuccessfulResponseHandler(new ExponentialBackOff())
+                .setBackOffRequired(HttpBackOffUnsuccessfulResponseHandler.BackOffRequired.ON_SERVER_ERROR);
+        this.ioBackOff = new HttpBackOffIOExceptionHandler(new ExponentialBackOff());
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Installs the policy if the request belongs to a resumable upload.
+     */
+    static void install(HttpRequest request, int maxRetries, MeterRegistry meterRegistry) {
+        if (!"resumable".equals(request.getUrl().getFirst("uploadType"))) {
+            return;
+        }
+        ResumableUploadRetry retry = new ResumableUploadRetry(request, meterRegistry);
+        request.setNumberOfRetries(maxRetries);
+        request.setUnsuccessfulResponseHandler(retry);
+        request.setIOExceptionHandler(retry);
+    }
+
+    @Override
+    public boolean handleResponse(HttpRequest request, HttpResponse response, boolean supportsRetry) throws IOException {
+        if (response.getStatusCode() / 100 == 5) {
+            boolean retry = serverErrorBackOff.handleResponse(request, response, supportsRetry);
+            if (retry) {
+                meterRegistry.counter("stde.drive.upload.retries", "cause", "server-error").increment();
+            }
+            return retry;
+        }
+        // e.g. 401: let the credentials adapter decide
+        return originalResponseHandler != null && originalResponseHandler.handleResponse(request, response, supportsRetry);
+    }
+
+    @Override
+    public boolean handleIOException(HttpRequest request, boolean supportsRetry) throws IOException {
+        boolean retry = ioBackOff.handleIOException(request, supportsRetry);
+        if (retry) {
+            meterRegistry.counter("stde.drive.upload.retries", "cause", "network").increment();
+        }
+        return retry;
+    }
+}
@@ -0,0 +1,120 @@
+package citu.stde.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Stores documents in an S3-compatible bucket (AWS S3, MinIO, etc.).
+ * Set app.storage.s3.endpoint for non-AWS servers; path-style addressing is the default
+ * since most self-hosted servers need it.
+ */
+@Service
+// Registered while it is the active backend, or while app.storage.s3.enabled keeps it readable after a switch
+@ConditionalOnExpression("'${app.storage.backend:drive}' == 's3' or ${app.storage.s3.enabled:false}")
+public class S3DocumentStorage implements DocumentStorage {
+
+    public static final String BACKEND = "s3";
+
+    @Value("${app.storage.s3.bucket}")
+    private String bucket;
+
+    @Value("${app.storage.s3.region:us-east-1}")
+    private String region;
+
+    @Value("${app.storage.s3.endpoint:}")
+    private String endpoint;
+
+    @Value("${app.storage.s3.path-style:true}")
+    private boolean pathStyle;
+
+    @Value("${app.storage.s3.access-key:}")
+    private String accessKey;
+
+    @Value("${app.storage.s3.secret-key:}")
+    private String secretKey;
+
+    private S3Client s3;
+
+    @PostConstruct
+    void init() {
+        S3ClientBuilder builder = S3Client.builder()
+                .region(Region.of(region))
+                .forcePathStyle(pathStyle)
+                .overrideConfiguration(config -> config.apiCallTimeout(Duration.ofMinutes(2)));
+        if (!endpoint.isBlank()) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+        builder.credentialsProvider(accessKey.isBlank()
+                ? DefaultCredentialsProvider.create()
+                : StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey)));
+        s3 = builder.build();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        s3.close();
+    }
+
+    @Override
+    public String backend() {
+        return BACKEND;
+    }
+
+    @Override
+    public StoredFile store(InputStream content, long length, String contentType, String filename, StoreTarget target) throws IOException {
+        String key = "documents/" + UUID.randomUUID();
+        try {
+            s3.putObject(request -> request.bucket(bucket).key(key).contentType(contentType).contentLength(length),
+                    RequestBody.fromInputStream(content, length));
+        } catch (SdkException e) {
+            throw new IOException("Failed to store document in S3: " + e.getMessage(), e);
+        }
+        return new StoredFile(key, null);
+    }
+
+    @Override
+    public InputStream open(String key, RequestDeadline deadline) throws IOException {
+        deadline.check("download");
+        ResponseInputStream<GetObjectResponse> object;
+        try {
+            object = s3.getObject(request -> request.bucket(bucket).key(key)
+                    .overrideConfiguration(config -> config.apiCallAttemptTimeout(
+                            Duration.ofMillis(Math.max(1, deadline.remainingMillis())))));
+        } catch (NoSuchKeyException e) {
+            throw new IOException("Document not found in S3: " + key, e);
+        } catch (SdkException e) {
+            throw new IOException("Failed to read document from S3: " + e.getMessage(), e);
+        }
+        deadline.onCancel(object::abort);
+        return deadline.guard(object, "download");
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        try {
+            s3.deleteObject(request -> request.bucket(bucket).key(key));
+        } catch (SdkException e) {
+            throw new IOException("Failed to delete document from S3: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package citu.stde.service;
+
+import citu.stde.entity.StorageCleanup;
+import citu.stde.repository.StorageCleanupRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes stored files after their rows are gone, outside the deleting transaction.
+ *
+ * Deletes that remove many documents at once (a classroom) queue the files in the
+ * storage_cleanup table in the same transaction, and this worker drains it after commit:
+ * Drive files in batch requests (up to 100 per round-trip) per owner, other backends one by
+ * one. Failed entries stay queued and are retried on the next run, up to
+ * app.storage.cleanup.max-attempts. Deleting is idempotent (a missing file counts as
+ * deleted), so two nodes draining the same entries do no harm.
+ */
+@Service
+@RequiredArgsConstructor
+public class StorageCleanupWorker {
+
+    private final StorageCleanupRepository storageCleanupRepository;
+    private final DocumentStorageRouter documentStorageRouter;
+    private final GoogleDriveService googleDriveService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.storage.cleanup.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.storage.cleanup.max-attempts:10}")
+    private int maxAttempts;
+
+    private ExecutorService worker;
+
+    @PostConstruct
+    void init() {
+        // One drain at a time; a trigger while one is queued is dropped
+        worker = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(1), runnable -> {
+            Thread thread = new Thread(runnable, "storage-cleanup");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Queued entries stay in the table and are picked up on the next start
+        worker.shutdownNow();
+    }
+
+    /**
+     * Drains the queue once the current transaction commits.
+     */
+    public void trigger() {
+        AfterCommit.run(() -> worker.execute(this::drain));
+    }
+
+    @Scheduled(initialDelayString = "${app.storage.cleanup.initial-delay-ms:60000}",
+               fixedDelayString = "${app.storage.cleanup.interval-ms:300000}")
+    public void retryPending() {
+        worker.execute(this::drain);
+    }
+
+    void drain() {
+        try {
+            // Walks the queue once; entries that fail wait for the next run
+            long after = 0;
+            List<StorageCleanup> batch;
+            do {
+                batch = storageCleanupRepository.findBatchAfter(after, Pageable.ofSize(batchSize));
+                if (batch.isEmpty()) return;
+                process(batch);
+                after = batch.get(batch.size() - 1).getId();
+            } while (batch.size() == batchSize);
+        } catch (Exception e) {
+            System.err.println("Warning: Storage cleanup run failed: " + e.getMessage());
+        }
+    }
+
+    private void process(List<StorageCleanup> batch) {
+        List<Long> done = new ArrayList<>();
+        Map<String, Map<String, List<StorageCleanup>>> driveByOwner = new LinkedHashMap<>();
+
+        for (StorageCleanup entry : batch) {
+            try {
+                if (documentStorageRouter.isDrive(entry.getStoragePath(), entry.getDriveFileId())) {
+                    String fileId = documentStorageRouter.key(entry.getStoragePath(), entry.getDriveFileId());
+                    if (fileId == null) {
+                        done.add(entry.getId());
+                        continue;
+                    }
+                    driveByOwner.computeIfAbsent(entry.getOwnerPrincipal(), owner -> new LinkedHashMap<>())
+                            .computeIfAbsent(fileId, id -> new ArrayList<>()).add(entry);
+                } else {
+                    documentStorageRouter.delete(entry.getStoragePath(), entry.getDriveFileId(), entry.getOwnerPrincipal());
+                    done.add(entry.getId());
+                }
+            } catch (Exception e) {
+                failed(entry, e.getMessage());
+            }
+        }
+
+        driveByOwner.forEach((owner, files) -> {
+            try {
+                GoogleDriveService.BatchResult<Void> deleted = googleDriveService.deleteFiles(files.keySet(), owner);
+                deleted.results().keySet().forEach(fileId -> files.get(fileId).forEach(entry -> done.add(entry.getId())));
+                deleted.failures().forEach((fileId, error) -> files.get(fileId).forEach(entry -> failed(entry, error)));
+            } catch (Exception e) {
+                files.values().forEach(entries -> entries.forEach(entry -> failed(entry, e.getMessage())));
+            }
+        });
+
+        if (!done.isEmpty()) {
+            storageCleanupRepository.deleteByIdIn(done);
+            meterRegistry.counter("stde.storage.cleanup", "result", "deleted").increment(done.size());
+        }
+    }
+
+    private void failed(StorageCleanup entry, String error) {
+        if (entry.getAttempts() + 1 >= maxAttempts) {
+            System.err.println("Error: Giving up deleting stored file " + describe(entry) + ": " + error);
+            meterRegistry.counter("stde.storage.cleanup", "result", "abandoned").increment();
+            storageCleanupRepository.deleteById(entry.getId());
+            return;
+        }
+        entry.setAttempts(entry.getAttempts() + 1);
+        entry.setLastError(error != null && error.length() > 500 ? error.substring(0, 500) : error);
+        storageCleanupRepository.save(entry);
+        meterRegistry.counter("stde.storage.cleanup", "result", "retried").increment();
+    }
+
+    private static String describe(StorageCleanup entry) {
+        return entry.getStoragePath() != null ? entry.getStoragePath() : "drive:" + entry.getDriveFileId();
+    }
+}
@@ -0,0 +1,101 @@
+package citu.stde.service;
+
+import citu.stde.entity.TeacherStats;
+import citu.stde.repository.ClassroomRepository;
+import citu.stde.repository.DocumentRepository;
+import citu.stde.repository.TeacherStatsRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Teacher dashboard counters (classes, distinct students, submissions), maintained per event.
+ *
+ * A teacher's row is counted once, the first time the dashboard is opened; after that the
+ * classroom and document services adjust it with atomic updates in the same transaction as
+ * the change itself, so a dashboard load is a primary-key read. Events for a teacher without
+ * a row are no-ops. A nightly reconcile recounts every row to repair any drift, e.g. from an
+ * event that landed while the row was being seeded.
+ */
+@Service
+@RequiredArgsConstructor
+public class TeacherStatsService {
+
+    private final TeacherStatsRepository teacherStatsRepository;
+    private final ClassroomRepository classroomRepository;
+    private final DocumentRepository documentRepository;
+    private final MeterRegistry meterRegistry;
+
+    public TeacherStats getStats(UUID teacherId) {
+        return teacherStatsRepository.findById(teacherId).orElseGet(() -> seed(teacherId));
+    }
+
+    public void classroomCreated(UUID teacherId) {
+        teacherStatsRepository.addClasses(teacherId, 1);
+    }
+
+    /**
+     * Call after the classroom and its enrolments are deleted, in the same transaction.
+     */
+    public void classroomDeleted(UUID teacherId, long submittedDocuments) {
+        teacherStatsRepository.addClasses(teacherId, -1);
+        teacherStatsRepository.addSubmissions(teacherId, -submittedDocuments);
+        teacherStatsRepository.recountStudents(teacherId);
+    }
+
+    /**
+     * @param firstClassWithTeacher Whether the student had no other classroom of this teacher
+     */
+    public void studentJoined(UUID teacherId, boolean firstClassWithTeacher) {
+        if (firstClassWithTeacher) {
+            teacherStatsRepository.addStudents(teacherId, 1);
+        }
+    }
+
+    public void documentSubmitted(UUID teacherId) {
+        teacherStatsRepository.addSubmissions(teacherId, 1);
+    }
+
+    @Scheduled(cron = "${app.dashboard.stats.reconcile-cron:0 30 3 * * *}")
+    public void reconcileAll() {
+        int drifted = 0;
+        for (TeacherStats stored : teacherStatsRepository.findAll()) {
+            TeacherStats counted = count(stored.getTeacherId());
+            if (counted.getTotalClasses() != stored.getTotalClasses()
+                    || counted.getTotalStudents() != stored.getTotalStudents()
+                    || counted.getTotalSubmissions() != stored.getTotalSubmissions()) {
+                drifted++;
+            }
+            teacherStatsRepository.save(counted);
+        }
+        if (drifted > 0) {
+            System.err.println("Warning: Corrected dashboard statistics of " + drifted + " teacher(s).");
+            meterRegistry.counter("stde.dashboard.stats.drifted").increment(drifted);
+        }
+    }
+
+    private TeacherStats seed(UUID teacherId) {
+        TeacherStats counted = count(teacherId);
+        try {
+            return teacherStatsRepository.saveAndFlush(counted);
+        } catch (DataIntegrityViolationException e) {
+            // Seeded by a concurrent request
+            return teacherStatsRepository.findById(teacherId).orElse(counted);
+        }
+    }
+
+    private TeacherStats count(UUID teacherId) {
+        return TeacherStats.builder()
+                .teacherId(teacherId)
+                .totalClasses(classroomRepository.countByTeacherId(teacherId))
+                .totalStudents(classroomRepository.countUniqueStudentsByTeacherId(teacherId))
+                .totalSubmissions(documentRepository.countByClassroom_TeacherIdAndIsSubmittedTrue(teacherId))
+                .reconciledAt(Instant.now())
+                .build();
+    }
+}
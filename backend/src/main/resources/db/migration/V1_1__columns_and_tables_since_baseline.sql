@@ -0,0 +1,37 @@
+-- Columns and tables added since the baseline. Databases created by ddl-auto=update may
+-- already have some of them, so every change is conditional.
+
+-- Classroom Drive folders are provisioned in the background
+ALTER TABLE classrooms ADD COLUMN IF NOT EXISTS provisioning_status varchar(20)
+    CHECK (provisioning_status IN ('PROVISIONING', 'READY', 'FAILED'));
+
+-- Drive folder sync: one Drive changes cursor per teacher
+ALTER TABLE users ADD COLUMN IF NOT EXISTS drive_changes_page_token varchar(255);
+
+-- Local blob cache key, evaluation lease and optimistic locking
+ALTER TABLE documents ADD COLUMN IF NOT EXISTS blob_hash varchar(64);
+ALTER TABLE documents ADD COLUMN IF NOT EXISTS processing_claimed_at timestamp(6) with time zone;
+ALTER TABLE documents ADD COLUMN IF NOT EXISTS processing_owner varchar(100);
+ALTER TABLE documents ADD COLUMN IF NOT EXISTS version bigint DEFAULT 0;
+-- A version column added by ddl-auto was nullable and left empty on existing rows
+UPDATE documents SET version = 0 WHERE version IS NULL;
+ALTER TABLE documents ALTER COLUMN version SET DEFAULT 0;
+ALTER TABLE documents ALTER COLUMN version SET NOT NULL;
+
+-- Extracted text, kept apart from the documents rows
+CREATE TABLE IF NOT EXISTS document_texts (
+    document_id  uuid        NOT NULL PRIMARY KEY,
+    blob_hash    varchar(64),
+    content_hash varchar(64) NOT NULL,
+    text         TEXT        NOT NULL,
+    extracted_at timestamp(6) with time zone NOT NULL
+);
+
+-- Teacher dashboard counters
+CREATE TABLE IF NOT EXISTS teacher_stats (
+    teacher_id        uuid   NOT NULL PRIMARY KEY,
+    total_classes     bigint NOT NULL,
+    total_students    bigint NOT NULL,
+    total_submissions bigint NOT NULL,
+    reconciled_at     timestamp(6) with time zone NOT NULL
+);
@@ -0,0 +1,84 @@
+-- Baseline: the schema as Hibernate (ddl-auto=update) created it before migrations took over.
+-- Existing databases are baselined at this version and skip it (spring.flyway.baseline-on-migrate),
+-- so it must not change; later columns and tables are added by V1_1 and up.
+
+CREATE TABLE users (
+    id                  uuid         NOT NULL PRIMARY KEY,
+    firstname           varchar(255) NOT NULL,
+    lastname            varchar(255) NOT NULL,
+    email               varchar(255) NOT NULL UNIQUE,
+    password            varchar(255),
+    user_type           varchar(50)  NOT NULL CHECK (user_type IN ('STUDENT', 'TEACHER', 'ADMIN')),
+    avatar_url          varchar(500),
+    is_active           boolean,
+    eval_count          integer,
+    eval_window_start   timestamp(6) with time zone,
+    created_at          timestamp(6) with time zone,
+    update_at           timestamp(6) with time zone,
+    password_updated_at timestamp(6) with time zone
+);
+
+CREATE TABLE classrooms (
+    id              uuid         NOT NULL PRIMARY KEY,
+    name            varchar(255) NOT NULL,
+    section         varchar(255) NOT NULL,
+    class_code      varchar(255) NOT NULL UNIQUE,
+    teacher_id      uuid         NOT NULL,
+    drive_folder_id varchar(255),
+    created_at      timestamp(6) with time zone
+);
+
+CREATE TABLE student_enrollments (
+    classroom_id uuid NOT NULL REFERENCES classrooms (id),
+    student_id   uuid NOT NULL REFERENCES users (id),
+    PRIMARY KEY (classroom_id, student_id)
+);
+
+CREATE TABLE documents (
+    id                 uuid         NOT NULL PRIMARY KEY,
+    user_id            uuid         NOT NULL REFERENCES users (id),
+    classroom_id       uuid         REFERENCES classrooms (id),
+    filename           varchar(255) NOT NULL,
+    file_type          varchar(50),
+    file_size          bigint,
+    drive_file_id      varchar(255),
+    drive_webview_link varchar(500),
+    storage_path       varchar(255),
+    is_cloud_file      boolean,
+    content_hash       varchar(64),
+    is_submitted       boolean,
+    upload_date        timestamp(6) with time zone NOT NULL,
+    status             varchar(50)  CHECK (status IN ('UPLOADED', 'PROCESSING', 'COMPLETED', 'FAILED'))
+);
+
+CREATE TABLE evaluations (
+    id                    uuid    NOT NULL PRIMARY KEY,
+    document_id           uuid    NOT NULL UNIQUE REFERENCES documents (id),
+    user_id               uuid    NOT NULL,
+    completeness_score    integer,
+    completeness_feedback TEXT,
+    clarity_score         integer,
+    clarity_feedback      TEXT,
+    consistency_score     integer,
+    consistency_feedback  TEXT,
+    verification_score    integer,
+    verification_feedback TEXT,
+    overall_score         integer,
+    overall_feedback      TEXT,
+    created_at            timestamp(6) with time zone
+);
+
+CREATE TABLE activity_logs (
+    id         uuid         NOT NULL PRIMARY KEY,
+    action     varchar(255) NOT NULL,
+    details    TEXT,
+    user_email varchar(255),
+    timestamp  timestamp(6) with time zone NOT NULL
+);
+
+CREATE TABLE password_reset_tokens (
+    id          uuid         NOT NULL PRIMARY KEY,
+    token       varchar(255) NOT NULL UNIQUE,
+    user_id     uuid         NOT NULL UNIQUE REFERENCES users (id),
+    expiry_date timestamp(6) with time zone NOT NULL
+);
@@ -0,0 +1,50 @@
+-- Indexes for the hot query paths. Listings are keyset-paginated on (time DESC, id DESC),
+-- so their indexes end in exactly that order and serve both the filter and the sort.
+-- evaluations(document_id) is already covered by its unique constraint.
+
+-- A user's own documents (DocumentRepository.findDtosByUserId)
+CREATE INDEX IF NOT EXISTS idx_documents_user_upload
+    ON documents (user_id, upload_date DESC, id DESC);
+
+-- Submitted documents of a class (teacher view) and a teacher's recent feed
+CREATE INDEX IF NOT EXISTS idx_documents_classroom_submitted_upload
+    ON documents (classroom_id, upload_date DESC, id DESC)
+    WHERE is_submitted = true;
+
+-- A student's documents in one class; also serves classroom deletes
+CREATE INDEX IF NOT EXISTS idx_documents_classroom_user_upload
+    ON documents (classroom_id, user_id, upload_date DESC, id DESC);
+
+-- Evaluation reuse by content hash, and the Drive sync's "already imported" check
+CREATE INDEX IF NOT EXISTS idx_documents_content_hash
+    ON documents (content_hash)
+    WHERE content_hash IS NOT NULL;
+
+CREATE INDEX IF NOT EXISTS idx_documents_drive_file_id
+    ON documents (drive_file_id)
+    WHERE drive_file_id IS NOT NULL;
+
+-- Lease reaper: only the few PROCESSING rows are indexed
+CREATE INDEX IF NOT EXISTS idx_documents_processing_claimed
+    ON documents (processing_claimed_at)
+    WHERE status = 'PROCESSING';
+
+-- A user's evaluations (EvaluationRepository.findPageByUserId)
+CREATE INDEX IF NOT EXISTS idx_evaluations_user_created
+    ON evaluations (user_id, created_at DESC, id DESC);
+
+-- Activity log pages (ActivityLogRepository.findPage)
+CREATE INDEX IF NOT EXISTS idx_activity_logs_timestamp
+    ON activity_logs (timestamp DESC, id DESC);
+
+-- A teacher's classrooms, and a student's classrooms (the primary key leads with classroom_id)
+CREATE INDEX IF NOT EXISTS idx_classrooms_teacher
+    ON classrooms (teacher_id);
+
+CREATE INDEX IF NOT EXISTS idx_student_enrollments_student
+    ON student_enrollments (student_id, classroom_id);
+
+-- Databases created by ddl-auto before PENDING_STORAGE existed kept the old status check
+ALTER TABLE documents DROP CONSTRAINT IF EXISTS documents_status_check;
+ALTER TABLE documents ADD CONSTRAINT documents_status_check
+    CHECK (status IN ('PENDING_STORAGE', 'UPLOADED', 'PROCESSING', 'COMPLETED', 'FAILED'));
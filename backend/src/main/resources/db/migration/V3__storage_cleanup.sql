@@ -0,0 +1,10 @@
+-- Outbox of stored files to delete after their rows are gone (StorageCleanupWorker)
+CREATE TABLE storage_cleanup (
+    id              bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    storage_path    varchar(255),
+    drive_file_id   varchar(255),
+    owner_principal varchar(255) NOT NULL,
+    enqueued_at     timestamp(6) with time zone NOT NULL,
+    attempts        integer      NOT NULL DEFAULT 0,
+    last_error      varchar(500)
+);
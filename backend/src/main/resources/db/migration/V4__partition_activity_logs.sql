@@ -0,0 +1,63 @@
+-- Activity logs: monthly range partitions on "timestamp", plus daily counts per action.
+-- ActivityLogMaintenance creates the coming months, rolls up the days finished since the
+-- last rollup and drops partitions older than app.activity-log.retention-months (their
+-- rollups are kept).
+
+ALTER TABLE activity_logs RENAME TO activity_logs_unpartitioned;
+
+CREATE TABLE activity_logs (
+    id         uuid         NOT NULL,
+    action     varchar(255) NOT NULL,
+    details    TEXT,
+    user_email varchar(255),
+    timestamp  timestamp(6) with time zone NOT NULL
+) PARTITION BY RANGE (timestamp);
+
+-- Catches rows with no monthly partition yet; ActivityLogMaintenance moves them into their month
+CREATE TABLE activity_logs_default PARTITION OF activity_logs DEFAULT;
+
+-- One partition per month (UTC) from the oldest existing log up to two months ahead
+DO $$
+DECLARE
+    month date := date_trunc('month', COALESCE((SELECT min(timestamp) FROM activity_logs_unpartitioned), now()) AT TIME ZONE 'UTC');
+    last_month date := date_trunc('month', now() AT TIME ZONE 'UTC') + interval '2 months';
+BEGIN
+    WHILE month <= last_month LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF activity_logs FOR VALUES FROM (%L) TO (%L)',
+                       'activity_logs_p' || to_char(month, 'YYYYMM'),
+                       month::timestamp AT TIME ZONE 'UTC',
+                       (month + interval '1 month')::timestamp AT TIME ZONE 'UTC');
+        month := month + interval '1 month';
+    END LOOP;
+END $$;
+
+INSERT INTO activity_logs (id, action, details, user_email, timestamp)
+SELECT id, action, details, user_email, timestamp FROM activity_logs_unpartitioned;
+
+DROP TABLE activity_logs_unpartitioned;
+
+-- Unique keys on a partitioned table must include the partition column
+ALTER TABLE activity_logs ADD PRIMARY KEY (id, timestamp);
+
+-- Admin log pages (keyset, latest first); replaces the V2 index of the same name
+CREATE INDEX idx_activity_logs_timestamp
+    ON activity_logs (timestamp DESC, id DESC);
+
+-- Time-range scans (rollups, today's counts): logs arrive in time order, so a block range
+-- index answers them from a few pages per partition
+CREATE INDEX idx_activity_logs_timestamp_brin
+    ON activity_logs USING brin (timestamp);
+
+CREATE TABLE activity_log_daily (
+    day         date         NOT NULL,
+    action      varchar(255) NOT NULL,
+    event_count bigint       NOT NULL,
+    PRIMARY KEY (day, action)
+);
+
+-- Every finished day (UTC) of the existing logs; maintenance continues from the last one
+INSERT INTO activity_log_daily (day, action, event_count)
+SELECT CAST(timestamp AT TIME ZONE 'UTC' AS date), action, count(*)
+FROM activity_logs
+WHERE timestamp < date_trunc('day', now() AT TIME ZONE 'UTC') AT TIME ZONE 'UTC'
+GROUP BY 1, 2;
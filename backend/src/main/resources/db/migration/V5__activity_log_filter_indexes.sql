@@ -0,0 +1,7 @@
+-- Admin activity log filters (ActivityLogSearch): by action or by user, newest first.
+-- Created on every monthly partition; a time range on top prunes the partitions.
+CREATE INDEX IF NOT EXISTS idx_activity_logs_action_timestamp
+    ON activity_logs (action, timestamp DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS idx_activity_logs_user_timestamp
+    ON activity_logs (user_email, timestamp DESC, id DESC);
@@ -0,0 +1,110 @@
+package citu.stde.repository;
+
+import citu.stde.dto.ActivityLogFilter;
+import citu.stde.dto.CursorPage;
+import citu.stde.dto.PageCursor;
+import citu.stde.entity.ActivityLog;
+import citu.stde.service.ActivityLogWriter;
+import citu.stde.service.AdminService;
+import citu.stde.service.KeysetPaging;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Activity log filters combine, pages follow the cursor, and streaming visits every match.
+ */
+@H2JpaTest
+@Import(ActivityLogSearch.class)
+class ActivityLogSearchTest {
+
+    @Autowired
+    private ActivityLogRepository activityLogRepository;
+
+    @Autowired
+    private ActivityLogSearch activityLogSearch;
+
+    private final Instant base = Instant.parse("2025-03-10T08:00:00Z");
+
+    @BeforeEach
+    void setUp() {
+        // 30 logs, one a minute: LOGIN/UPLOAD alternating, spread over three users
+        for (int i = 0; i < 30; i++) {
+            activityLogRepository.save(ActivityLog.builder()
+                    .action(i % 2 == 0 ? "LOGIN" : "UPLOAD")
+                    .userEmail("user" + (i % 3) + "@cit.edu")
+                    .details("event " + i)
+                    .timestamp(base.plusSeconds(60L * i))
+                    .build());
+        }
+        activityLogRepository.flush();
+    }
+
+    @Test
+    void filtersCombine() {
+        ActivityLogFilter filter = new ActivityLogFilter("LOGIN", "user0@cit.edu",
+                base.plusSeconds(60L * 6), base.plusSeconds(60L * 24));
+
+        List<ActivityLog> logs = page(filter, 100);
+
+        // i in [6, 24), even, divisible by 3: 6, 12, 18
+        assertEquals(List.of("event 18", "event 12", "event 6"), logs.stream().map(ActivityLog::getDetails).toList());
+    }
+
+    @Test
+    void pagesFollowTheCursorNewestFirst() {
+        ActivityLogFilter filter = ActivityLogFilter.of("UPLOAD", null, null, null);
+        List<ActivityLog> first = page(filter, 10);
+        ActivityLog last = first.get(first.size() - 1);
+        List<ActivityLog> second = activityLogSearch.findPage(filter, last.getTimestamp(), last.getId(), 10);
+
+        assertEquals("event 29", first.get(0).getDetails());
+        assertEquals(10, first.size());
+        assertEquals(5, second.size());
+        assertEquals("event 9", second.get(0).getDetails());
+        assertTrue(second.stream().allMatch(log -> log.getTimestamp().isBefore(last.getTimestamp())));
+    }
+
+    @Test
+    void requestWithoutCursorOrLimitGetsTheDefaultPage() {
+        KeysetPaging paging = new KeysetPaging();
+        ReflectionTestUtils.setField(paging, "defaultSize", 20);
+        ReflectionTestUtils.setField(paging, "maxSize", 500);
+        AdminService adminService = new AdminService(activityLogRepository, mock(DataSource.class),
+                mock(ChatClient.Builder.class), paging, mock(ActivityLogWriter.class), activityLogSearch);
+
+        CursorPage<ActivityLog> page = adminService.getLogs(ActivityLogFilter.of(null, null, null, null), null, null);
+
+        assertEquals(20, page.items().size());
+        assertEquals("event 29", page.items().get(0).getDetails());
+        assertNotNull(page.nextCursor());
+    }
+
+    @Test
+    void streamVisitsEveryMatchInOrder() {
+        List<ActivityLog> seen = new ArrayList<>();
+        activityLogSearch.stream(ActivityLogFilter.of(null, "user1@cit.edu", null, null), 4, seen::add);
+
+        assertEquals(10, seen.size());
+        assertEquals("event 28", seen.get(0).getDetails());
+        assertEquals("event 1", seen.get(9).getDetails());
+    }
+
+    private List<ActivityLog> page(ActivityLogFilter filter, int limit) {
+        return activityLogSearch.findPage(filter, PageCursor.START.at(), PageCursor.START.id(), limit);
+    }
+}
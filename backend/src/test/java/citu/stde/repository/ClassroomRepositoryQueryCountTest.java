@@ -0,0 +1,175 @@
+package citu.stde.repository;
+
+import citu.stde.entity.Classroom;
+import citu.stde.entity.Document;
+import citu.stde.entity.DocumentText;
+import citu.stde.entity.Evaluation;
+import citu.stde.entity.TeacherStats;
+import citu.stde.entity.User;
+import citu.stde.entity.UserType;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Student counts and enrolment checks run as single queries, without loading students;
+ * deleting a classroom is one statement per table, whatever the number of documents.
+ */
+@H2JpaTest
+class ClassroomRepositoryQueryCountTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private ClassroomRepository classroomRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private UUID teacherId;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        teacherId = entityManager.persist(user("teacher@cit.edu", UserType.TEACHER)).getId();
+    }
+
+    @Test
+    void studentCountsAreOneGroupedQuery() {
+        Classroom small = classroomWithStudents("SMALL", 2);
+        Classroom large = classroomWithStudents("LARGE", 40);
+        Classroom empty = classroomWithStudents("EMPTY", 0);
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        Map<UUID, Long> counts = classroomRepository
+                .countStudentsByClassroomIds(List.of(small.getId(), large.getId(), empty.getId())).stream()
+                .collect(Collectors.toMap(ClassroomRepository.StudentCount::getClassroomId,
+                        ClassroomRepository.StudentCount::getStudentCount));
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(2L, counts.get(small.getId()));
+        assertEquals(40L, counts.get(large.getId()));
+        assertFalse(counts.containsKey(empty.getId()));
+    }
+
+    @Test
+    void enrolmentIsCheckedAndAddedWithoutLoadingStudents() {
+        Classroom classroom = classroomWithStudents("ACL", 3);
+        UUID joiner = entityManager.persist(user("joiner@cit.edu", UserType.STUDENT)).getId();
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        assertFalse(classroomRepository.isEnrolled(classroom.getId(), joiner));
+        classroomRepository.enroll(classroom.getId(), joiner);
+        assertTrue(classroomRepository.isEnrolled(classroom.getId(), joiner));
+        assertEquals(teacherId, classroomRepository.findTeacherIdById(classroom.getId()).orElseThrow());
+
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(0, statistics.getCollectionLoadCount());
+    }
+
+    @Autowired
+    private TeacherStatsRepository teacherStatsRepository;
+
+    @Test
+    void teacherStatsCountersMoveAndStudentsRecount() {
+        Classroom first = classroomWithStudents("FIRST", 3);
+        teacherStatsRepository.save(TeacherStats.builder().teacherId(teacherId)
+                .totalClasses(1).totalStudents(99).totalSubmissions(4).reconciledAt(Instant.now()).build());
+        entityManager.flush();
+
+        assertEquals(1, teacherStatsRepository.addClasses(teacherId, 1));
+        assertEquals(1, teacherStatsRepository.addSubmissions(teacherId, -4));
+        assertEquals(1, teacherStatsRepository.recountStudents(teacherId));
+        assertEquals(0, teacherStatsRepository.addClasses(UUID.randomUUID(), 1)); // No row: no-op
+        assertTrue(classroomRepository.hasStudentWithTeacher(teacherId,
+                first.getStudents().iterator().next().getId()));
+
+        entityManager.clear();
+        TeacherStats stats = teacherStatsRepository.findById(teacherId).orElseThrow();
+        assertEquals(2, stats.getTotalClasses());
+        assertEquals(3, stats.getTotalStudents());
+        assertEquals(0, stats.getTotalSubmissions());
+    }
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private DocumentTextRepository documentTextRepository;
+
+    @Autowired
+    private EvaluationRepository evaluationRepository;
+
+    @Autowired
+    private StorageCleanupRepository storageCleanupRepository;
+
+    @Test
+    void classroomCascadeIsOneStatementPerTable() {
+        Classroom doomed = classroomWithStudents("DOOMED", 5);
+        Classroom kept = classroomWithStudents("KEPT", 1);
+        User student = doomed.getStudents().iterator().next();
+        for (int i = 0; i < 20; i++) {
+            Document doc = entityManager.persist(Document.builder().user(student).classroom(doomed)
+                    .filename("report" + i + ".pdf").storagePath("local:blob" + i).build());
+            entityManager.persist(Evaluation.builder().document(doc).userId(student.getId()).createdAt(Instant.now()).build());
+            entityManager.persist(DocumentText.builder().documentId(doc.getId()).contentHash("hash" + i)
+                    .text("text").extractedAt(Instant.now()).build());
+        }
+        Document survivor = entityManager.persist(Document.builder().user(student).classroom(kept)
+                .filename("kept.pdf").storagePath("local:kept").build());
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        UUID classId = doomed.getId();
+        assertEquals(20, storageCleanupRepository.enqueueClassroomDocuments(classId, "teacher@cit.edu"));
+        evaluationRepository.deleteByClassroomId(classId);
+        documentTextRepository.deleteByClassroomId(classId);
+        assertEquals(20, documentRepository.deleteByClassroomId(classId));
+        UUID enrolled = student.getId();
+        assertEquals(1, classroomRepository.deleteClassroomById(classId));
+
+        assertEquals(6, statistics.getPrepareStatementCount()); // Including the enrolments delete
+        assertFalse(classroomRepository.isEnrolled(classId, enrolled));
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(20, storageCleanupRepository.count());
+        assertEquals(1, documentRepository.count());
+        assertEquals(0, evaluationRepository.count());
+        assertTrue(documentRepository.existsById(survivor.getId()));
+        assertTrue(classroomRepository.existsById(kept.getId()));
+    }
+
+    private Classroom classroomWithStudents(String code, int count) {
+        Classroom classroom = Classroom.builder().name("Software Testing").section("F1").classCode(code).teacherId(teacherId).build();
+        for (int i = 0; i < count; i++) {
+            classroom.getStudents().add(entityManager.persist(user(code.toLowerCase() + i + "@cit.edu", UserType.STUDENT)));
+        }
+        return entityManager.persist(classroom);
+    }
+
+    private static User user(String email, UserType type) {
+        return User.builder().firstname("First").lastname("Last")
+                .email(email).userType(type).isActive(true).createdAt(Instant.now()).build();
+    }
+}
@@ -0,0 +1,182 @@
+package citu.stde.repository;
+
+import citu.stde.dto.DocumentDTO;
+import citu.stde.dto.PageCursor;
+import citu.stde.entity.Classroom;
+import citu.stde.entity.Document;
+import citu.stde.entity.DocumentStatus;
+import citu.stde.entity.Evaluation;
+import citu.stde.entity.User;
+import citu.stde.entity.UserType;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Pageable;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Document listings must cost one SQL statement no matter how many rows they return,
+ * and keyset pages must cover every row exactly once.
+ */
+@H2JpaTest
+class DocumentRepositoryQueryCountTest {
+
+    private static final PageCursor START = PageCursor.START;
+    private static final Pageable ALL = Pageable.unpaged(); // Requests without a cursor or limit
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private UUID teacherId;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        teacherId = entityManager.persist(user("teacher@cit.edu", UserType.TEACHER)).getId();
+    }
+
+    @Test
+    void classListingIsOneQueryForAnyNumberOfDocuments() {
+        Classroom small = classroomWithSubmissions("SMALL", 3);
+        Classroom large = classroomWithSubmissions("LARGE", 60);
+
+        assertEquals(3, countStatements(() -> documentRepository.findSubmittedDtosByClassroomId(small.getId(), START.at(), START.id(), ALL)).size());
+        long smallQueries = statistics.getPrepareStatementCount();
+        assertEquals(60, countStatements(() -> documentRepository.findSubmittedDtosByClassroomId(large.getId(), START.at(), START.id(), ALL)).size());
+        long largeQueries = statistics.getPrepareStatementCount();
+
+        assertEquals(1, smallQueries);
+        assertEquals(1, largeQueries);
+    }
+
+    @Test
+    void studentAndOwnListingsAreOneQueryEach() {
+        Classroom classroom = classroomWithSubmissions("CLASS", 25);
+        UUID studentId = documentRepository.findSubmittedDtosByClassroomId(classroom.getId(), START.at(), START.id(), ALL).get(0).getId();
+        User student = documentRepository.findById(studentId).orElseThrow().getUser();
+
+        countStatements(() -> documentRepository.findDtosByClassroomIdAndUserId(classroom.getId(), student.getId(), START.at(), START.id(), ALL));
+        assertEquals(1, statistics.getPrepareStatementCount());
+        countStatements(() -> documentRepository.findDtosByUserId(student.getId(), START.at(), START.id(), ALL));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void projectionCarriesOwnerNameAndScoreOnlyWhenCompleted() {
+        Classroom classroom = entityManager.persist(classroom("MIXED"));
+        User student = entityManager.persist(user("ana@cit.edu", UserType.STUDENT));
+        Document completed = entityManager.persist(document(student, classroom, DocumentStatus.COMPLETED, Instant.now()));
+        entityManager.persist(evaluation(completed, 87));
+        // Stale evaluation of a document that is being re-evaluated: no score shown
+        Document processing = entityManager.persist(document(student, classroom, DocumentStatus.PROCESSING, Instant.now().minusSeconds(60)));
+        entityManager.persist(evaluation(processing, 40));
+        entityManager.flush();
+        entityManager.clear();
+
+        List<DocumentDTO> dtos = documentRepository.findSubmittedDtosByClassroomId(classroom.getId(), START.at(), START.id(), ALL);
+
+        assertEquals(2, dtos.size());
+        assertEquals(completed.getId(), dtos.get(0).getId());
+        assertEquals("Ana Student", dtos.get(0).getStudentName());
+        assertEquals(87, dtos.get(0).getOverallScore());
+        assertEquals(classroom.getId(), dtos.get(0).getClassroomId());
+        assertNull(dtos.get(1).getOverallScore());
+    }
+
+    @Test
+    void teacherFeedIsOneQueryWithScores() {
+        classroomWithSubmissions("FEED", 15);
+
+        List<DocumentDTO> feed = countStatements(() -> documentRepository.findRecentSubmittedDtosByTeacherId(teacherId, Pageable.ofSize(10)));
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(10, feed.size());
+        assertEquals(50, feed.get(0).getOverallScore()); // Newest is i = 0
+    }
+
+    @Test
+    void keysetPagesCoverEveryDocumentOnceEvenWithEqualUploadDates() {
+        Classroom classroom = entityManager.persist(classroom("TIES"));
+        Instant sameMoment = Instant.parse("2025-01-15T08:00:00Z");
+        for (int i = 0; i < 23; i++) {
+            User student = entityManager.persist(user("tie" + i + "@cit.edu", UserType.STUDENT));
+            // Groups of four share an upload date, so pages split inside a group
+            entityManager.persist(document(student, classroom, DocumentStatus.UPLOADED, sameMoment.minusSeconds(i / 4)));
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        List<UUID> seen = new ArrayList<>();
+        PageCursor cursor = START;
+        for (int pages = 0; pages < 10; pages++) {
+            List<DocumentDTO> page = documentRepository.findSubmittedDtosByClassroomId(
+                    classroom.getId(), cursor.at(), cursor.id(), Pageable.ofSize(5));
+            if (page.isEmpty()) break;
+            page.forEach(dto -> seen.add(dto.getId()));
+            DocumentDTO last = page.get(page.size() - 1);
+            cursor = PageCursor.decode(new PageCursor(last.getUploadDate(), last.getId()).encode());
+        }
+
+        Set<UUID> distinct = new HashSet<>(seen);
+        assertEquals(23, seen.size());
+        assertEquals(23, distinct.size());
+    }
+
+    private List<DocumentDTO> countStatements(java.util.function.Supplier<List<DocumentDTO>> query) {
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+        return query.get();
+    }
+
+    private Classroom classroomWithSubmissions(String code, int count) {
+        Classroom classroom = entityManager.persist(classroom(code));
+        for (int i = 0; i < count; i++) {
+            User student = entityManager.persist(user(code.toLowerCase() + i + "@cit.edu", UserType.STUDENT));
+            Document doc = entityManager.persist(document(student, classroom, DocumentStatus.COMPLETED, Instant.now().minusSeconds(i)));
+            entityManager.persist(evaluation(doc, 50 + i % 50));
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return classroom;
+    }
+
+    private Classroom classroom(String code) {
+        return Classroom.builder().name("Software Testing").section("F1").classCode(code).teacherId(teacherId).build();
+    }
+
+    private static User user(String email, UserType type) {
+        String first = email.substring(0, 1).toUpperCase() + email.substring(1, email.indexOf('@'));
+        return User.builder().firstname(first).lastname(type == UserType.STUDENT ? "Student" : "Teacher")
+                .email(email).userType(type).isActive(true).createdAt(Instant.now()).build();
+    }
+
+    private static Document document(User owner, Classroom classroom, DocumentStatus status, Instant uploaded) {
+        return Document.builder().user(owner).classroom(classroom).filename("std.pdf").fileType("application/pdf")
+                .fileSize(1024L).uploadDate(uploaded).status(status).isSubmitted(true).build();
+    }
+
+    private static Evaluation evaluation(Document doc, int score) {
+        return Evaluation.builder().document(doc).userId(doc.getUser().getId()).overallScore(score).createdAt(Instant.now()).build();
+    }
+}
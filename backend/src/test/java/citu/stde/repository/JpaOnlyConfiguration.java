@@ -0,0 +1,16 @@
+package citu.stde.repository;
+
+import citu.stde.entity.Document;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+/**
+ * Test configuration found by the repository tests in this package, in place of the
+ * application class: entities and repositories only, no services or scheduled jobs.
+ */
+@SpringBootConfiguration
+@EntityScan(basePackageClasses = Document.class)
+@EnableJpaRepositories(basePackageClasses = DocumentRepository.class)
+class JpaOnlyConfiguration {
+}
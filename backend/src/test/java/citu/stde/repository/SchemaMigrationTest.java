@@ -0,0 +1,227 @@
+package citu.stde.repository;
+
+import citu.stde.entity.Document;
+import citu.stde.service.ActivityLogMaintenance;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.oauth2.client.JdbcOAuth2AuthorizedClientService;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.InMemoryClientRegistrationRepository;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the Flyway migrations on a real PostgreSQL, lets Hibernate validate the entities
+ * against the result (the context would not start otherwise), and checks with EXPLAIN
+ * that the hot queries use their indexes, and exercises the activity log partition
+ * maintenance and the persisted OAuth clients. Skipped when Docker is not available.
+ *
+ * Sequential scans are disabled for the EXPLAINs: the test tables are tiny and the planner
+ * would scan them anyway; what matters is that a matching index exists and is usable.
+ */
+@DataJpaTest(properties = {
+        // Skip application.properties (secrets file); everything needed is here
+        "spring.config.name=schema-migration-test",
+        "spring.flyway.enabled=true",
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.PostgreSQLDialect",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+class SchemaMigrationTest {
+
+    @Container
+    @ServiceConnection
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final String id = "'" + UUID.randomUUID() + "'";
+    private final String cursorAt = "'9999-12-31T23:59:59Z'";
+    private final String cursorId = "'ffffffff-ffff-ffff-ffff-ffffffffffff'";
+
+    @BeforeEach
+    void preferIndexes() {
+        jdbcTemplate.execute("SET enable_seqscan = off");
+    }
+
+    @Test
+    void ownDocumentPageUsesUserIndex() {
+        assertUses("idx_documents_user_upload",
+                "SELECT * FROM documents d WHERE d.user_id = " + id + keyset("d.upload_date"));
+    }
+
+    @Test
+    void submittedClassPageUsesPartialIndex() {
+        assertUses("idx_documents_classroom_submitted_upload",
+                "SELECT * FROM documents d WHERE d.classroom_id = " + id + " AND d.is_submitted = true" + keyset("d.upload_date"));
+    }
+
+    @Test
+    void studentClassPageUsesClassroomUserIndex() {
+        assertUses("idx_documents_classroom_user_upload",
+                "SELECT * FROM documents d WHERE d.classroom_id = " + id + " AND d.user_id = " + id + keyset("d.upload_date"));
+    }
+
+    @Test
+    void contentHashLookupUsesPartialIndex() {
+        assertUses("idx_documents_content_hash",
+                "SELECT * FROM documents WHERE content_hash = 'abc'");
+    }
+
+    @Test
+    void evaluationLookupsUseTheirIndexes() {
+        assertUses("evaluations_document_id_key", "SELECT * FROM evaluations WHERE document_id = " + id);
+        assertUses("idx_evaluations_user_created",
+                "SELECT * FROM evaluations e WHERE e.user_id = " + id + keyset("e.created_at"));
+    }
+
+    @Test
+    void activityLogPageUsesPartitionIndexes() {
+        // Each monthly partition carries its own copy of idx_activity_logs_timestamp
+        assertUses("_timestamp_id_idx",
+                "SELECT * FROM activity_logs l WHERE l.timestamp <= " + cursorAt + keyset("l.timestamp"));
+    }
+
+    @Test
+    void activityLogFiltersUseTheirIndexes() {
+        assertUses("_action_timestamp_id_idx",
+                "SELECT * FROM activity_logs l WHERE l.action = 'UPLOAD' AND l.timestamp <= " + cursorAt + keyset("l.timestamp"));
+        assertUses("_user_email_timestamp_id_idx",
+                "SELECT * FROM activity_logs l WHERE l.user_email = 'a@cit.edu' AND l.timestamp <= " + cursorAt + keyset("l.timestamp"));
+    }
+
+    @Test
+    void activityLogTimeRangeIsPrunedToItsPartition() {
+        String month = ActivityLogMaintenance.partitionName(YearMonth.now(ZoneOffset.UTC));
+        List<String> plan = jdbcTemplate.queryForList("EXPLAIN SELECT count(*) FROM activity_logs " +
+                "WHERE timestamp >= date_trunc('month', now()) AND timestamp < date_trunc('month', now()) + interval '1 day'", String.class);
+        assertTrue(String.join("\n", plan).contains(month), () -> String.join("\n", plan));
+        assertTrue(plan.stream().noneMatch(line -> line.contains("activity_logs_default")), () -> String.join("\n", plan));
+    }
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ActivityLogRepository activityLogRepository;
+
+    @Test
+    void maintenanceAdoptsStrayRowsRollsThemUpAndDropsExpiredMonths() {
+        ActivityLogMaintenance maintenance = new ActivityLogMaintenance(jdbcTemplate, transactionManager,
+                activityLogRepository, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(maintenance, "partitionsAhead", 2);
+        ReflectionTestUtils.setField(maintenance, "retentionMonths", 24);
+        // A month long before the migration ran has no partition: the row lands in the default one
+        jdbcTemplate.update("INSERT INTO activity_logs (id, action, \"timestamp\") VALUES (gen_random_uuid(), 'LOGIN', '2001-05-17T10:00:00Z')");
+        jdbcTemplate.update("INSERT INTO activity_logs (id, action, \"timestamp\") VALUES (gen_random_uuid(), 'LOGIN', '2001-05-17T23:00:00Z')");
+
+        maintenance.maintain();
+
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT count(*) FROM activity_logs_default", Integer.class));
+        assertFalse(maintenance.partitionMonths().contains(YearMonth.of(2001, 5))); // Adopted, then past retention
+        assertTrue(maintenance.partitionMonths().contains(YearMonth.now(ZoneOffset.UTC).plusMonths(2)));
+        assertEquals(2L, jdbcTemplate.queryForObject(
+                "SELECT event_count FROM activity_log_daily WHERE day = DATE '2001-05-17' AND action = 'LOGIN'", Long.class));
+
+        List<ActivityLogRepository.DailyCount> counts = activityLogRepository.findDailyCounts(
+                LocalDate.of(2001, 5, 1), LocalDate.of(2001, 6, 1));
+        assertEquals(1, counts.size());
+        assertEquals(LocalDate.of(2001, 5, 17), counts.get(0).getDay());
+        assertEquals(2L, counts.get(0).getEventCount());
+    }
+
+    @Test
+    void rollupCatchesUpFromTheLastRolledUpDay() {
+        ActivityLogMaintenance maintenance = new ActivityLogMaintenance(jdbcTemplate, transactionManager,
+                activityLogRepository, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(maintenance, "partitionsAhead", 2);
+        ReflectionTestUtils.setField(maintenance, "retentionMonths", 24);
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        // No rollup has run for the last five days
+        jdbcTemplate.update("INSERT INTO activity_log_daily (day, action, event_count) VALUES (?, 'LOGIN', 1)", today.minusDays(6));
+        for (int daysAgo : new int[] {5, 3, 0}) {
+            jdbcTemplate.update("INSERT INTO activity_logs (id, action, \"timestamp\") VALUES (gen_random_uuid(), 'LOGIN', ?)",
+                    Timestamp.from(today.minusDays(daysAgo).atTime(10, 0).toInstant(ZoneOffset.UTC)));
+        }
+
+        maintenance.maintain();
+
+        List<ActivityLogRepository.DailyCount> counts = activityLogRepository.findDailyCounts(today.minusDays(6), today.plusDays(1));
+        assertEquals(List.of(today.minusDays(6), today.minusDays(5), today.minusDays(3)),
+                counts.stream().map(ActivityLogRepository.DailyCount::getDay).toList()); // Today is not finished
+    }
+
+    @Test
+    void authorizedClientsRoundTripThroughTheJdbcService() {
+        ClientRegistration google = ClientRegistration.withRegistrationId("google")
+                .clientId("client-id")
+                .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+                .redirectUri("http://localhost/login/oauth2/code/google")
+                .authorizationUri("https://accounts.google.com/o/oauth2/auth")
+                .tokenUri("https://oauth2.googleapis.com/token")
+                .build();
+        JdbcOAuth2AuthorizedClientService service = new JdbcOAuth2AuthorizedClientService(
+                jdbcTemplate, new InMemoryClientRegistrationRepository(google));
+        Instant issuedAt = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        OAuth2AccessToken accessToken = new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "access-1",
+                issuedAt, issuedAt.plus(1, ChronoUnit.HOURS), Set.of("email", "https://www.googleapis.com/auth/drive"));
+        service.saveAuthorizedClient(new OAuth2AuthorizedClient(google, "teacher@cit.edu", accessToken,
+                        new OAuth2RefreshToken("refresh-1", issuedAt)),
+                new TestingAuthenticationToken("teacher@cit.edu", null));
+
+        OAuth2AuthorizedClient loaded = service.loadAuthorizedClient("google", "teacher@cit.edu");
+
+        assertEquals("access-1", loaded.getAccessToken().getTokenValue());
+        assertEquals(issuedAt.plus(1, ChronoUnit.HOURS), loaded.getAccessToken().getExpiresAt());
+        assertEquals("refresh-1", loaded.getRefreshToken().getTokenValue());
+    }
+
+    @Test
+    void leaseReaperUsesPartialIndex() {
+        assertUses("idx_documents_processing_claimed",
+                "SELECT id FROM documents WHERE status = 'PROCESSING' AND processing_claimed_at < now()");
+    }
+
+    // Same shape as the repositories' keyset conditions
+    private String keyset(String column) {
+        String alias = column.substring(0, column.indexOf('.'));
+        return " AND (" + column + " < " + cursorAt + " OR (" + column + " = " + cursorAt + " AND " + alias + ".id < " + cursorId + "))"
+                + " ORDER BY " + column + " DESC, " + alias + ".id DESC LIMIT 51";
+    }
+
+    private void assertUses(String index, String sql) {
+        List<String> plan = jdbcTemplate.queryForList("EXPLAIN " + sql, String.class);
+        assertTrue(String.join("\n", plan).contains(index), () -> "Expected " + index + " in plan:\n" + String.join("\n", plan));
+    }
+}
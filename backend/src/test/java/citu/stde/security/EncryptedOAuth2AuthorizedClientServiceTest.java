@@ -0,0 +1,116 @@
+package citu.stde.security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.config.oauth2.client.CommonOAuth2Provider;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.InMemoryClientRegistrationRepository;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Refresh tokens are stored encrypted, and a login without a new refresh token keeps the stored one.
+ */
+class EncryptedOAuth2AuthorizedClientServiceTest {
+
+    private static final String EMAIL = "teacher@cit.edu";
+
+    private final ClientRegistration google = CommonOAuth2Provider.GOOGLE.getBuilder("google")
+            .clientId("client-id").clientSecret("client-secret").build();
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbc;
+    private EncryptedOAuth2AuthorizedClientService service;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("db/migration/V6__oauth2_authorized_client.sql")
+                .build();
+        jdbc = new JdbcTemplate(database);
+        service = newService("token-password");
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void storesTheRefreshTokenEncrypted() {
+        service.saveAuthorizedClient(client("access-1", "1//refresh-token"), principal());
+
+        assertFalse(storedRefreshToken().contains("refresh-token"));
+        OAuth2AuthorizedClient loaded = service.loadAuthorizedClient("google", EMAIL);
+        assertEquals("1//refresh-token", loaded.getRefreshToken().getTokenValue());
+    }
+
+    @Test
+    void loginWithoutARefreshTokenKeepsTheStoredOne() {
+        service.saveAuthorizedClient(client("access-1", "1//refresh-token"), principal());
+        service.saveAuthorizedClient(client("access-2", null), principal());
+
+        OAuth2AuthorizedClient loaded = service.loadAuthorizedClient("google", EMAIL);
+        assertEquals("access-2", loaded.getAccessToken().getTokenValue());
+        assertEquals("1//refresh-token", loaded.getRefreshToken().getTokenValue());
+    }
+
+    @Test
+    void unencryptedTokenIsReadAndEncryptedOnTheNextSave() {
+        service.saveAuthorizedClient(client("access-1", "1//refresh-token"), principal());
+        jdbc.update("UPDATE oauth2_authorized_client SET refresh_token_value = ?",
+                (Object) "1//legacy-token".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("1//legacy-token", service.loadAuthorizedClient("google", EMAIL).getRefreshToken().getTokenValue());
+
+        service.saveAuthorizedClient(client("access-2", null), principal());
+        assertFalse(storedRefreshToken().contains("legacy-token"));
+        assertEquals("1//legacy-token", service.loadAuthorizedClient("google", EMAIL).getRefreshToken().getTokenValue());
+    }
+
+    @Test
+    void tokenEncryptedWithAnotherPasswordIsDropped() {
+        service.saveAuthorizedClient(client("access-1", "1//refresh-token"), principal());
+
+        OAuth2AuthorizedClient loaded = newService("new-password").loadAuthorizedClient("google", EMAIL);
+
+        assertNull(loaded.getRefreshToken()); // The next login shows the consent screen again
+    }
+
+    private EncryptedOAuth2AuthorizedClientService newService(String password) {
+        return new EncryptedOAuth2AuthorizedClientService(jdbc, new InMemoryClientRegistrationRepository(google),
+                password, "36d5620a377af517");
+    }
+
+    private OAuth2AuthorizedClient client(String accessToken, String refreshToken) {
+        Instant now = Instant.now();
+        return new OAuth2AuthorizedClient(google, EMAIL,
+                new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, accessToken, now, now.plusSeconds(3600), Set.of("email")),
+                refreshToken != null ? new OAuth2RefreshToken(refreshToken, now) : null);
+    }
+
+    private TestingAuthenticationToken principal() {
+        return new TestingAuthenticationToken(EMAIL, null);
+    }
+
+    private String storedRefreshToken() {
+        return new String(jdbc.queryForObject("SELECT refresh_token_value FROM oauth2_authorized_client", byte[].class),
+                StandardCharsets.UTF_8);
+    }
+}
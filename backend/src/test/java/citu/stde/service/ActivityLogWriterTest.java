@@ -0,0 +1,90 @@
+package citu.stde.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Entries are written in JDBC batches off the caller's thread; a full queue drops new entries.
+ */
+class ActivityLogWriterTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ActivityLogWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        writer = new ActivityLogWriter(jdbcTemplate, meterRegistry);
+        ReflectionTestUtils.setField(writer, "queueCapacity", 5);
+        ReflectionTestUtils.setField(writer, "batchSize", 2);
+        ReflectionTestUtils.setField(writer, "flushIntervalMillis", 60_000L); // Flushed by hand below
+        writer.init();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        writer.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void queuedEntriesAreWrittenInBatches() {
+        when(jdbcTemplate.batchUpdate(eq(ActivityLogWriter.INSERT_SQL), any(Collection.class), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class))).thenReturn(new int[0][]);
+        writer.append("LOGIN", "a@cit.edu", "one");
+
+        writer.flush();
+
+        verify(jdbcTemplate, times(1)).batchUpdate(eq(ActivityLogWriter.INSERT_SQL), any(Collection.class), eq(1),
+                any(ParameterizedPreparedStatementSetter.class));
+        assertEquals(1.0, meterRegistry.counter("stde.activity-log.events", "result", "written").count());
+        assertEquals(0.0, meterRegistry.get("stde.activity-log.queue").gauge().value());
+    }
+
+    @Test
+    void fullQueueDropsNewEntries() throws InterruptedException {
+        // No full batch ever waits, so nothing is drained while the queue fills
+        ReflectionTestUtils.setField(writer, "batchSize", 100);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(writer.append("UPLOAD", "a@cit.edu", "file " + i));
+        }
+
+        assertFalse(writer.append("UPLOAD", "a@cit.edu", "one too many"));
+        assertEquals(1.0, meterRegistry.counter("stde.activity-log.events", "result", "dropped").count());
+        assertEquals(5.0, meterRegistry.get("stde.activity-log.queue").gauge().value());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void failedBatchIsCountedAndDoesNotStopTheWriter() {
+        when(jdbcTemplate.batchUpdate(eq(ActivityLogWriter.INSERT_SQL), any(Collection.class), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class)))
+                .thenThrow(new RuntimeException("connection refused"))
+                .thenReturn(new int[0][]);
+        writer.append("LOGIN", "a@cit.edu", "lost");
+        writer.flush();
+        writer.append("LOGIN", "a@cit.edu", "kept");
+        writer.flush();
+
+        assertEquals(1.0, meterRegistry.counter("stde.activity-log.events", "result", "failed").count());
+        assertEquals(1.0, meterRegistry.counter("stde.activity-log.events", "result", "written").count());
+    }
+}
@@ -0,0 +1,61 @@
+package citu.stde.service;
+
+import citu.stde.repository.ActivityLogRepository;
+import citu.stde.repository.ActivityLogSearch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Activity log entries of a transaction are queued only once it commits.
+ */
+class AdminServiceTest {
+
+    private final ActivityLogWriter activityLogWriter = mock(ActivityLogWriter.class);
+    private final AdminService adminService = new AdminService(mock(ActivityLogRepository.class), mock(DataSource.class),
+            mock(ChatClient.Builder.class), new KeysetPaging(), activityLogWriter, mock(ActivityLogSearch.class));
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void outsideATransactionTheEntryIsQueuedAtOnce() {
+        adminService.logActivity("LOGIN", "student@cit.edu", "Logged in");
+
+        verify(activityLogWriter).append("LOGIN", "student@cit.edu", "Logged in");
+    }
+
+    @Test
+    void insideATransactionTheEntryWaitsForTheCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        adminService.logActivity("SUBMIT", "student@cit.edu", "Submitted document: plan.pdf");
+        verify(activityLogWriter, never()).append("SUBMIT", "student@cit.edu", "Submitted document: plan.pdf");
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        verify(activityLogWriter).append("SUBMIT", "student@cit.edu", "Submitted document: plan.pdf");
+    }
+
+    @Test
+    void aRolledBackTransactionLogsNothing() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        adminService.logActivity("SUBMIT", "student@cit.edu", "Submitted document: plan.pdf");
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        verify(activityLogWriter, never()).append("SUBMIT", "student@cit.edu", "Submitted document: plan.pdf");
+    }
+}
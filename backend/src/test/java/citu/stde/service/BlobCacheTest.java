@@ -0,0 +1,130 @@
+package citu.stde.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checksum on read, LRU eviction against max-bytes and index rebuild from disk.
+ */
+class BlobCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsBackWhatWasStored() throws IOException {
+        BlobCache cache = cache(1000);
+        byte[] bytes = blob('a', 100);
+
+        String hash = cache.put(bytes);
+
+        assertArrayEquals(bytes, read(cache, hash).orElseThrow());
+        assertEquals(1.0, meterRegistry.get("stde.blob-cache.requests").tag("result", "hit").counter().count());
+    }
+
+    @Test
+    void linksASpooledFileInUnderItsKnownHash() throws IOException {
+        BlobCache cache = cache(1000);
+        byte[] bytes = blob('a', 100);
+        String hash = cache.put(bytes);
+        cache.remove(hash);
+        Path spooled = Files.write(Files.createTempFile(directory, "incoming-", ".tmp"), bytes);
+
+        cache.put(hash, spooled);
+
+        assertTrue(Files.isSameFile(spooled, pathOf(hash))); // Linked, not copied
+        Files.delete(spooled); // The upload worker drops its spool file later
+        assertArrayEquals(bytes, read(cache, hash).orElseThrow());
+        assertEquals(100.0, meterRegistry.get("stde.blob-cache.bytes").gauge().value());
+    }
+
+    @Test
+    void dropsABlobThatFailsItsChecksum() throws IOException {
+        BlobCache cache = cache(1000);
+        String hash = cache.put(blob('a', 100));
+        Files.write(pathOf(hash), blob('b', 100)); // Corrupted on disk
+
+        assertTrue(read(cache, hash).isEmpty());
+        assertFalse(Files.exists(pathOf(hash)));
+        assertEquals(1.0, meterRegistry.get("stde.blob-cache.requests").tag("result", "corrupt").counter().count());
+        assertEquals(0.0, meterRegistry.get("stde.blob-cache.bytes").gauge().value());
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedBlobPastMaxBytes() throws IOException {
+        BlobCache cache = cache(250);
+        String first = cache.put(blob('a', 100));
+        String second = cache.put(blob('b', 100));
+        read(cache, first); // Now the second is the least recently used
+
+        String third = cache.put(blob('c', 100));
+
+        assertTrue(read(cache, second).isEmpty());
+        assertFalse(Files.exists(pathOf(second)));
+        assertTrue(read(cache, first).isPresent());
+        assertTrue(read(cache, third).isPresent());
+        assertEquals(200.0, meterRegistry.get("stde.blob-cache.bytes").gauge().value());
+        assertEquals(1.0, meterRegistry.get("stde.blob-cache.evictions").counter().count());
+    }
+
+    @Test
+    void rebuildsTheIndexInLastAccessOrderOnRestart() throws IOException {
+        BlobCache before = cache(1000);
+        String older = before.put(blob('a', 100));
+        String newer = before.put(blob('b', 100));
+        Files.setLastModifiedTime(pathOf(older), FileTime.fromMillis(1_000_000));
+        Files.setLastModifiedTime(pathOf(newer), FileTime.fromMillis(2_000_000));
+        Path leftover = Files.createTempFile(directory, "put-", ".tmp"); // Interrupted write
+
+        BlobCache after = cache(150); // Room for one blob: the older one goes
+
+        assertFalse(Files.exists(leftover));
+        assertTrue(read(after, older).isEmpty());
+        assertArrayEquals(blob('b', 100), read(after, newer).orElseThrow());
+    }
+
+    private BlobCache cache(long maxBytes) throws IOException {
+        meterRegistry.clear();
+        BlobCache cache = new BlobCache(meterRegistry);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "directory", directory.toString());
+        ReflectionTestUtils.setField(cache, "maxBytes", maxBytes);
+        cache.init();
+        return cache;
+    }
+
+    private static Optional<byte[]> read(BlobCache cache, String hash) throws IOException {
+        Optional<InputStream> stream = cache.open(hash);
+        if (stream.isEmpty()) return Optional.empty();
+        try (InputStream in = stream.get()) {
+            return Optional.of(in.readAllBytes());
+        }
+    }
+
+    private Path pathOf(String hash) {
+        return directory.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    private static byte[] blob(char fill, int size) {
+        byte[] bytes = new byte[size];
+        Arrays.fill(bytes, (byte) fill);
+        return bytes;
+    }
+}
@@ -0,0 +1,94 @@
+package citu.stde.service;
+
+import citu.stde.repository.ClassroomRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Ownership and enrolment checks hit the database once, then stay in memory.
+ */
+class ClassroomAccessCacheTest {
+
+    private final ClassroomRepository classroomRepository = mock(ClassroomRepository.class);
+    private final UUID classroomId = UUID.randomUUID();
+    private final UUID teacherId = UUID.randomUUID();
+    private ClassroomAccessCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new ClassroomAccessCache(classroomRepository, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "maxClassrooms", 100);
+        when(classroomRepository.findTeacherIdById(classroomId)).thenReturn(Optional.of(teacherId));
+    }
+
+    @Test
+    void ownershipIsLookedUpOnce() {
+        assertTrue(cache.isOwner(classroomId, teacherId));
+        assertFalse(cache.isOwner(classroomId, UUID.randomUUID()));
+        assertTrue(cache.isOwner(classroomId, teacherId));
+
+        verify(classroomRepository, times(1)).findTeacherIdById(classroomId);
+        assertFalse(cache.isOwner(UUID.randomUUID(), teacherId)); // Unknown classroom
+    }
+
+    @Test
+    void enrolmentsAreCachedButRefusalsAreNot() {
+        UUID student = UUID.randomUUID();
+        when(classroomRepository.isEnrolled(classroomId, student)).thenReturn(false, true);
+
+        assertFalse(cache.isEnrolled(classroomId, student));
+        // Joined on another node: the next check must see it
+        assertTrue(cache.isEnrolled(classroomId, student));
+        assertTrue(cache.isEnrolled(classroomId, student));
+
+        verify(classroomRepository, times(2)).isEnrolled(classroomId, student);
+    }
+
+    @Test
+    void joinAndDeleteUpdateTheCache() {
+        UUID enrolled = UUID.randomUUID();
+        when(classroomRepository.isEnrolled(classroomId, enrolled)).thenReturn(true);
+        cache.isEnrolled(classroomId, enrolled);
+
+        UUID joiner = UUID.randomUUID();
+        cache.enrolled(classroomId, joiner); // No transaction: applied at once
+        assertTrue(cache.isEnrolled(classroomId, joiner));
+        verify(classroomRepository, times(0)).isEnrolled(classroomId, joiner);
+
+        cache.invalidate(classroomId);
+        when(classroomRepository.findTeacherIdById(classroomId)).thenReturn(Optional.empty());
+        assertFalse(cache.isOwner(classroomId, teacherId));
+    }
+
+    @Test
+    void uuidSetGrowsAndFindsEveryMember() {
+        ClassroomAccessCache.UuidSet set = new ClassroomAccessCache.UuidSet();
+        List<UUID> members = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            UUID id = UUID.randomUUID();
+            members.add(id);
+            set.add(id);
+            set.add(id);
+        }
+
+        assertEquals(1000, set.size());
+        members.forEach(id -> assertTrue(set.contains(id)));
+        assertFalse(set.contains(UUID.randomUUID()));
+        assertFalse(set.contains(new UUID(0, 0)));
+    }
+}
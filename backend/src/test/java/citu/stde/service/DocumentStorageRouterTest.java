@@ -0,0 +1,95 @@
+package citu.stde.service;
+
+import citu.stde.entity.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * New uploads go to app.storage.backend; existing documents are read and deleted
+ * through the backend named in their storagePath, whichever one is active.
+ */
+class DocumentStorageRouterTest {
+
+    private final DocumentStorage drive = storage(DriveDocumentStorage.BACKEND);
+    private final DocumentStorage local = storage(LocalDocumentStorage.BACKEND);
+    private final DocumentStorage s3 = storage(S3DocumentStorage.BACKEND);
+    private DocumentStorageRouter router;
+
+    @BeforeEach
+    void setUp() {
+        // Switched from local to s3, with local still enabled for the older documents
+        router = new DocumentStorageRouter(List.of(drive, local, s3), S3DocumentStorage.BACKEND);
+    }
+
+    @Test
+    void newUploadsGoToTheActiveBackend() {
+        assertSame(s3, router.active());
+        assertEquals("s3:documents/new", DocumentStorageRouter.storagePath(router.active(), "documents/new"));
+    }
+
+    @Test
+    void readsAndDeletesByTheStoragePathPrefix() throws IOException {
+        Document doc = document("local:documents/old", null);
+        RequestDeadline deadline = RequestDeadline.after(Duration.ofSeconds(10));
+
+        router.open(doc, deadline);
+        router.delete(doc);
+        router.delete("local:documents/queued", null, "teacher@cit.edu");
+
+        verify(local).open("documents/old", deadline);
+        verify(local).delete("documents/old");
+        verify(local).delete("documents/queued", "teacher@cit.edu");
+        assertFalse(router.isDrive(doc));
+    }
+
+    @Test
+    void rowsWithoutAStoragePathAreInDrive() throws IOException {
+        Document doc = document(null, "drive-file-1");
+
+        router.delete(doc);
+
+        verify(drive).delete("drive-file-1");
+        assertTrue(router.isDrive(doc));
+        assertEquals("drive-file-1", router.key(null, "drive-file-1"));
+    }
+
+    @Test
+    void aDisabledBackendIsReportedNotGuessed() {
+        DocumentStorageRouter driveOnly = new DocumentStorageRouter(List.of(drive), DriveDocumentStorage.BACKEND);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> driveOnly.open(document("local:documents/old", null), RequestDeadline.after(Duration.ofSeconds(10))));
+        assertTrue(e.getMessage().contains("'local'"));
+    }
+
+    @Test
+    void unknownActiveBackendFailsAtStartup() {
+        assertThrows(IllegalStateException.class, () -> new DocumentStorageRouter(List.of(drive), "ftp"));
+    }
+
+    private static DocumentStorage storage(String backend) {
+        DocumentStorage storage = mock(DocumentStorage.class);
+        when(storage.backend()).thenReturn(backend);
+        return storage;
+    }
+
+    private static Document document(String storagePath, String driveFileId) {
+        Document doc = new Document();
+        doc.setStoragePath(storagePath);
+        doc.setDriveFileId(driveFileId);
+        return doc;
+    }
+}
@@ -0,0 +1,140 @@
+package citu.stde.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Guard rails of the extraction pool: zip bomb pre-scan, output char cap and
+ * rejection when the pool and its queue are full; and background extraction of spooled files.
+ */
+class DocumentTextExtractorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch blocker = new CountDownLatch(1);
+    private DocumentTextExtractor extractor;
+
+    @BeforeEach
+    void setUp() {
+        extractor = new DocumentTextExtractor(meterRegistry);
+        ReflectionTestUtils.setField(extractor, "poolSize", 1);
+        ReflectionTestUtils.setField(extractor, "queueCapacity", 1);
+        ReflectionTestUtils.setField(extractor, "maxBytes", 26214400L);
+        ReflectionTestUtils.setField(extractor, "maxChars", 40);
+        ReflectionTestUtils.setField(extractor, "maxCpuMillis", 20000L);
+        ReflectionTestUtils.setField(extractor, "maxZipRatio", 100);
+        ReflectionTestUtils.setField(extractor, "maxZipEntries", 5000);
+        ReflectionTestUtils.setField(extractor, "maxZipInflatedBytes", 209715200L);
+        ReflectionTestUtils.setField(extractor, "pdfMaxHeapBytes", 33554432L);
+        extractor.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        blocker.countDown();
+        extractor.shutdown();
+    }
+
+    @Test
+    void rejectsAnArchiveThatInflatesTooFar() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            zip.putNextEntry(new ZipEntry("word/document.xml"));
+            zip.write(new byte[4 * 1024 * 1024]); // Zeros: about 1000:1
+            zip.closeEntry();
+        }
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> extractor.extract(bytes.toByteArray(), DocumentTextExtractor.DOCX, deadline()));
+        assertTrue(e.getMessage().startsWith("TYPE:INVALID_DOCUMENT|"));
+        assertEquals(1.0, meterRegistry.get("stde.extraction.aborted").tag("reason", "zip-ratio").counter().count());
+    }
+
+    @Test
+    void capsDocxTextAtMaxChars() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (XWPFDocument document = new XWPFDocument()) {
+            for (int i = 0; i < 100; i++) {
+                document.createParagraph().createRun().setText("paragraph " + i);
+            }
+            document.write(bytes);
+        }
+
+        String text = extractor.extract(bytes.toByteArray(), DocumentTextExtractor.DOCX, deadline());
+
+        assertEquals(40, text.length());
+        assertTrue(text.startsWith("paragraph 0\nparagraph 1\n"));
+    }
+
+    @Test
+    void capsPlainTextAtMaxChars() throws IOException {
+        byte[] bytes = "x".repeat(1000).getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(40, extractor.extract(bytes, "text/plain", deadline()).length());
+    }
+
+    @Test
+    void backgroundExtractionReadsTheFileItWasGivenEvenAfterItIsDeleted() throws Exception {
+        Path spooled = Files.createTempFile("spooled-", ".txt");
+        Files.writeString(spooled, "Test Case 1: login");
+        ThreadPoolExecutor pool = (ThreadPoolExecutor) ReflectionTestUtils.getField(extractor, "pool");
+        CountDownLatch hold = new CountDownLatch(1);
+        pool.execute(() -> {
+            try {
+                hold.await(); // Keeps the job queued until the file is gone
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        CompletableFuture<String> text = extractor.extractInBackground(spooled, "text/plain", deadline());
+        Files.delete(spooled); // The upload worker removes it once stored
+        hold.countDown();
+
+        assertEquals("Test Case 1: login", text.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void rejectsRightAwayWhenThePoolIsFull() {
+        ThreadPoolExecutor pool = (ThreadPoolExecutor) ReflectionTestUtils.getField(extractor, "pool");
+        pool.execute(this::block); // Takes the only worker
+        pool.execute(this::block); // Fills the queue
+
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> extractor.extract("text".getBytes(StandardCharsets.UTF_8), "text/plain", deadline()));
+        assertTrue(e.getMessage().startsWith("TYPE:RATE_LIMIT|"));
+        assertEquals(1.0, meterRegistry.get("stde.extraction.rejected").counter().count());
+    }
+
+    private void block() {
+        try {
+            blocker.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static RequestDeadline deadline() {
+        return RequestDeadline.after(Duration.ofSeconds(30));
+    }
+}
@@ -0,0 +1,95 @@
+package citu.stde.service;
+
+import citu.stde.entity.Classroom;
+import citu.stde.entity.Document;
+import citu.stde.entity.DocumentStatus;
+import citu.stde.entity.ProvisioningStatus;
+import citu.stde.entity.User;
+import citu.stde.repository.ClassroomRepository;
+import citu.stde.repository.DocumentRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Uploads to a classroom without a Drive folder wait for it instead of landing in the uploader's Drive root.
+ */
+class DocumentUploadWorkerTest {
+
+    private final DocumentRepository documentRepository = mock(DocumentRepository.class);
+    private final ClassroomRepository classroomRepository = mock(ClassroomRepository.class);
+    private final DocumentStorageRouter documentStorageRouter = mock(DocumentStorageRouter.class);
+    private final DocumentStorage driveStorage = mock(DocumentStorage.class);
+    private final DocumentUploadWorker worker = new DocumentUploadWorker(documentRepository, classroomRepository,
+            documentStorageRouter, new SimpleMeterRegistry());
+
+    private final Classroom classroom = Classroom.builder().id(UUID.randomUUID())
+            .provisioningStatus(ProvisioningStatus.FAILED).build();
+    private final Document document = Document.builder().id(UUID.randomUUID())
+            .user(User.builder().email("student@cit.edu").build()).classroom(classroom)
+            .filename("test-plan.pdf").fileType("application/pdf").status(DocumentStatus.PENDING_STORAGE).build();
+
+    @TempDir
+    Path spoolDirectory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ReflectionTestUtils.setField(worker, "spoolDirectory", spoolDirectory.toString());
+        ReflectionTestUtils.setField(worker, "workerThreads", 1);
+        ReflectionTestUtils.setField(worker, "maxAttempts", 1);
+        ReflectionTestUtils.setField(worker, "folderPollMillis", 50L);
+        worker.init();
+
+        when(documentStorageRouter.active()).thenReturn(driveStorage);
+        when(driveStorage.backend()).thenReturn(DriveDocumentStorage.BACKEND);
+        when(driveStorage.store(any(), anyLong(), any(), any(), any()))
+                .thenReturn(new DocumentStorage.StoredFile("drive-file-1", "https://drive/view"));
+        when(documentRepository.findWithOwnerById(document.getId())).thenReturn(Optional.of(document));
+        when(documentRepository.completeStorage(any(), anyString(), any(), any(), any())).thenReturn(1);
+        when(classroomRepository.findById(classroom.getId())).thenAnswer(call -> Optional.of(classroom));
+    }
+
+    @AfterEach
+    void tearDown() {
+        worker.shutdown();
+    }
+
+    @Test
+    void uploadToAFailedClassroomWaitsUntilTheRetryMakesItReady() throws IOException {
+        DocumentUploadWorker.SpooledUpload upload =
+                worker.spool(new MockMultipartFile("file", "test-plan.pdf", "application/pdf", new byte[]{1, 2, 3}));
+
+        worker.enqueue(document.getId(), upload.path());
+
+        // Several folder polls go by without storing the file anywhere
+        verify(driveStorage, after(300).never()).store(any(), anyLong(), any(), any(), any());
+
+        classroom.setProvisioningStatus(ProvisioningStatus.READY);
+        classroom.setDriveFolderId("class-folder");
+        worker.classroomReady(classroom.getId());
+
+        verify(driveStorage, timeout(5000)).store(any(), eq(3L), eq("application/pdf"), eq("test-plan.pdf"),
+                eq(new DocumentStorage.StoreTarget("student@cit.edu", "class-folder")));
+        verify(documentRepository, never()).transitionStatus(any(), any(), any(), eq(DocumentStatus.FAILED), any(), any());
+    }
+}
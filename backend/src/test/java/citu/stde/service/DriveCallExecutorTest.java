@@ -0,0 +1,117 @@
+package citu.stde.service;
+
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.services.drive.Drive;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Retry classification, back-off and the per-user token bucket, without real sleeps.
+ */
+class DriveCallExecutorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<Long> sleeps = new ArrayList<>();
+    private DriveCallExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        DriveClientFactory factory = mock(DriveClientFactory.class);
+        when(factory.forPrincipal("student@cit.edu")).thenReturn(mock(Drive.class));
+
+        executor = new DriveCallExecutor(factory, meterRegistry) {
+            @Override
+            void sleep(long millis) {
+                sleeps.add(millis);
+            }
+        };
+        ReflectionTestUtils.setField(executor, "permitsPerSecond", 1000.0);
+        ReflectionTestUtils.setField(executor, "burst", 1000);
+        ReflectionTestUtils.setField(executor, "maxWaitMillis", 10_000L);
+        ReflectionTestUtils.setField(executor, "maxAttempts", 4);
+        ReflectionTestUtils.setField(executor, "initialBackoffMillis", 500L);
+        ReflectionTestUtils.setField(executor, "maxBackoffMillis", 32_000L);
+        ReflectionTestUtils.setField(executor, "maxBuckets", 10);
+    }
+
+    @Test
+    void retriesRateLimitsAndServerErrorsUntilSuccess() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        String result = executor.execute("student@cit.edu", "files.get", drive -> {
+            switch (calls.incrementAndGet()) {
+                case 1 -> throw driveError(403, "userRateLimitExceeded");
+                case 2 -> throw driveError(503, "backendError");
+                case 3 -> throw new SocketTimeoutException("Read timed out");
+                default -> { return "ok"; }
+            }
+        });
+
+        assertEquals("ok", result);
+        assertEquals(4, calls.get());
+        assertEquals(3, sleeps.size());
+        assertTrue(sleeps.get(0) >= 250 && sleeps.get(0) <= 500);
+        assertTrue(sleeps.get(2) >= 1000 && sleeps.get(2) <= 2000);
+        assertEquals(1.0, meterRegistry.counter("stde.drive.retries", "operation", "files.get", "reason", "rate-limit").count());
+        assertEquals(1.0, meterRegistry.counter("stde.drive.retries", "operation", "files.get", "reason", "server-error").count());
+        assertEquals(1.0, meterRegistry.counter("stde.drive.retries", "operation", "files.get", "reason", "network").count());
+    }
+
+    @Test
+    void permanentErrorsFailAtOnce() {
+        AtomicInteger calls = new AtomicInteger();
+        assertThrows(GoogleJsonResponseException.class, () -> executor.execute("student@cit.edu", "files.get", drive -> {
+            calls.incrementAndGet();
+            throw driveError(403, "insufficientPermissions");
+        }));
+        assertEquals(1, calls.get());
+        assertTrue(sleeps.isEmpty());
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() {
+        AtomicInteger calls = new AtomicInteger();
+        assertThrows(GoogleJsonResponseException.class, () -> executor.execute("student@cit.edu", "files.get", drive -> {
+            calls.incrementAndGet();
+            throw driveError(500, "backendError");
+        }));
+        assertEquals(4, calls.get());
+    }
+
+    @Test
+    void tokenBucketMakesCallersWaitOnceTheBurstIsSpent() {
+        DriveCallExecutor.TokenBucket bucket = new DriveCallExecutor.TokenBucket(10, 5);
+        long maxWait = 10_000_000_000L;
+
+        assertEquals(0, bucket.reserve(5, maxWait));
+        long wait = bucket.reserve(1, maxWait);
+        assertTrue(wait > 50_000_000L && wait <= 100_000_000L, "one permit at 10/s takes ~100ms, was " + wait);
+        // Would need to wait ~10s for 100 more permits: rejected, nothing reserved
+        assertEquals(-1, bucket.reserve(100, 1_000_000_000L));
+    }
+
+    private static GoogleJsonResponseException driveError(int status, String reason) {
+        GoogleJsonError.ErrorInfo info = new GoogleJsonError.ErrorInfo();
+        info.setReason(reason);
+        GoogleJsonError details = new GoogleJsonError();
+        details.setCode(status);
+        details.setErrors(List.of(info));
+        return new GoogleJsonResponseException(new HttpResponseException.Builder(status, reason, new HttpHeaders()), details);
+    }
+}
@@ -0,0 +1,111 @@
+package citu.stde.service;
+
+import citu.stde.config.GoogleDriveConfig;
+import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.services.drive.Drive;
+import com.google.auth.http.HttpCredentialsAdapter;
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientService;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Per-call overhead of getting a Drive client: a fresh trusted transport per call
+ * (the old behaviour) versus the shared transport with the per-user client cache.
+ * No network traffic; only client construction is measured, and the cached path must
+ * be at least MIN_SPEEDUP times faster (the failure message carries both timings).
+ *
+ * Run with: mvn test -Dtest=DriveClientFactoryBenchmarkTest -Dstde.benchmark=true
+ */
+@EnabledIfSystemProperty(named = "stde.benchmark", matches = "true")
+class DriveClientFactoryBenchmarkTest {
+
+    private static final int WARMUP = 200;
+    private static final int ITERATIONS = 2_000;
+    private static final int MIN_SPEEDUP = 3;
+
+    @Test
+    void perCallOverhead() throws Exception {
+        OAuth2AuthorizedClient client = authorizedClient("token-1");
+        OAuth2AuthorizedClientService clientService = mock(OAuth2AuthorizedClientService.class);
+        when(clientService.loadAuthorizedClient(eq("google"), any())).thenAnswer(invocation -> client);
+        OAuth2AuthorizedClientManager clientManager = mock(OAuth2AuthorizedClientManager.class);
+        when(clientManager.authorize(any())).thenAnswer(invocation -> client);
+
+        GoogleDriveConfig config = new GoogleDriveConfig();
+        ReflectionTestUtils.setField(config, "maxConnections", 50);
+        ReflectionTestUtils.setField(config, "idleTimeoutSeconds", 60L);
+        HttpTransport sharedTransport = config.driveHttpTransport();
+        DriveClientFactory factory = new DriveClientFactory(sharedTransport, clientManager, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(factory, "cacheSize", 500);
+
+        double before = nanosPerCall(() -> buildUncached(clientService));
+        double after = nanosPerCall(() -> factory.forPrincipal("student@cit.edu"));
+
+        assertTrue(before >= MIN_SPEEDUP * after, String.format(
+                "Drive client per call: new transport %.1f us, cached %.1f us (%.0fx, expected at least %dx)",
+                before / 1000, after / 1000, before / after, MIN_SPEEDUP));
+        assertSame(factory.forPrincipal("student@cit.edu"), factory.forPrincipal("student@cit.edu"));
+    }
+
+    // What GoogleDriveService.getDriveClient() did on every call before the cache
+    private static Drive buildUncached(OAuth2AuthorizedClientService clientService) throws Exception {
+        OAuth2AuthorizedClient client = clientService.loadAuthorizedClient("google", "student@cit.edu");
+        GoogleCredentials credentials = GoogleCredentials.create(
+                new AccessToken(client.getAccessToken().getTokenValue(), null));
+        return new Drive.Builder(GoogleNetHttpTransport.newTrustedTransport(), GsonFactory.getDefaultInstance(),
+                new HttpCredentialsAdapter(credentials))
+                .setApplicationName("STDE Platform")
+                .build();
+    }
+
+    private static double nanosPerCall(ThrowingSupplier call) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            call.get();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            call.get();
+        }
+        return (System.nanoTime() - start) / (double) ITERATIONS;
+    }
+
+    private static OAuth2AuthorizedClient authorizedClient(String tokenValue) {
+        ClientRegistration registration = ClientRegistration.withRegistrationId("google")
+                .clientId("client-id")
+                .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+                .redirectUri("http://localhost/login/oauth2/code/google")
+                .authorizationUri("https://accounts.google.com/o/oauth2/auth")
+                .tokenUri("https://oauth2.googleapis.com/token")
+                .build();
+        Instant now = Instant.now();
+        OAuth2AccessToken token = new OAuth2AccessToken(
+                OAuth2AccessToken.TokenType.BEARER, tokenValue, now, now.plus(1, ChronoUnit.HOURS));
+        return new OAuth2AuthorizedClient(registration, "student@cit.edu", token);
+    }
+
+    @FunctionalInterface
+    private interface ThrowingSupplier {
+        Object get() throws Exception;
+    }
+}
@@ -0,0 +1,89 @@
+package citu.stde.service;
+
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.services.drive.Drive;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.client.ClientAuthorizationException;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Clients are cached per access token; a missing, revoked or expired authorization
+ * is reported as ReconnectRequiredException so background work stops retrying.
+ */
+class DriveClientFactoryTest {
+
+    private static final ClientRegistration GOOGLE = ClientRegistration.withRegistrationId("google")
+            .clientId("client-id")
+            .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+            .redirectUri("http://localhost/login/oauth2/code/google")
+            .authorizationUri("https://accounts.google.com/o/oauth2/auth")
+            .tokenUri("https://oauth2.googleapis.com/token")
+            .build();
+
+    private final OAuth2AuthorizedClientManager clientManager = mock(OAuth2AuthorizedClientManager.class);
+    private DriveClientFactory factory;
+
+    @BeforeEach
+    void setUp() {
+        factory = new DriveClientFactory(new MockHttpTransport(), clientManager, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(factory, "cacheSize", 10);
+        ReflectionTestUtils.setField(factory, "uploadMaxRetries", 5);
+    }
+
+    @Test
+    void reusesTheClientUntilTheTokenChanges() {
+        when(clientManager.authorize(any())).thenReturn(client("token-1", 3600));
+        Drive first = factory.forPrincipal("teacher@cit.edu");
+        assertSame(first, factory.forPrincipal("teacher@cit.edu"));
+
+        when(clientManager.authorize(any())).thenReturn(client("token-2", 3600)); // Refreshed
+        assertNotSame(first, factory.forPrincipal("teacher@cit.edu"));
+    }
+
+    @Test
+    void missingAuthorizationNeedsAReconnect() {
+        when(clientManager.authorize(any())).thenReturn(null);
+
+        assertThrows(DriveClientFactory.ReconnectRequiredException.class, () -> factory.forPrincipal("teacher@cit.edu"));
+    }
+
+    @Test
+    void expiredTokenWithoutRefreshNeedsAReconnect() {
+        when(clientManager.authorize(any())).thenReturn(client("token-1", -60));
+
+        assertThrows(DriveClientFactory.ReconnectRequiredException.class, () -> factory.forPrincipal("teacher@cit.edu"));
+    }
+
+    @Test
+    void failedRefreshNeedsAReconnect() {
+        when(clientManager.authorize(any())).thenThrow(
+                new ClientAuthorizationException(new OAuth2Error("invalid_grant"), "google"));
+
+        assertThrows(DriveClientFactory.ReconnectRequiredException.class, () -> factory.forPrincipal("teacher@cit.edu"));
+    }
+
+    private static OAuth2AuthorizedClient client(String tokenValue, long expiresInSeconds) {
+        Instant expiresAt = Instant.now().plus(expiresInSeconds, ChronoUnit.SECONDS);
+        OAuth2AccessToken token = new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, tokenValue,
+                expiresAt.minus(1, ChronoUnit.HOURS), expiresAt);
+        return new OAuth2AuthorizedClient(GOOGLE, "teacher@cit.edu", token);
+    }
+}
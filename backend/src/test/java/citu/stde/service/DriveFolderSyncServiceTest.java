@@ -0,0 +1,182 @@
+package citu.stde.service;
+
+import citu.stde.entity.Classroom;
+import citu.stde.entity.Document;
+import citu.stde.entity.DocumentStatus;
+import citu.stde.entity.User;
+import citu.stde.repository.ClassroomRepository;
+import citu.stde.repository.DocumentRepository;
+import citu.stde.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the folder sync against FakeDriveChangeSource, with mocked repositories.
+ */
+class DriveFolderSyncServiceTest {
+
+    private static final String FOLDER = "folder-1";
+    private static final String OTHER_FOLDER = "folder-2";
+
+    private final ClassroomRepository classroomRepository = mock(ClassroomRepository.class);
+    private final DocumentRepository documentRepository = mock(DocumentRepository.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final ClassroomAccessCache classroomAccessCache = mock(ClassroomAccessCache.class);
+    private final AdminService adminService = mock(AdminService.class);
+
+    private User teacher;
+    private User student;
+    private Classroom classroom;
+    private Classroom otherClassroom;
+
+    @BeforeEach
+    void setUp() {
+        teacher = User.builder().id(UUID.randomUUID()).email("teacher@cit.edu").build();
+        student = User.builder().id(UUID.randomUUID()).email("student@cit.edu").build();
+        classroom = Classroom.builder().id(UUID.randomUUID()).teacherId(teacher.getId()).driveFolderId(FOLDER).build();
+        otherClassroom = Classroom.builder().id(UUID.randomUUID()).teacherId(teacher.getId()).driveFolderId(OTHER_FOLDER).build();
+
+        when(userRepository.findById(teacher.getId())).thenReturn(Optional.of(teacher));
+        when(userRepository.findByEmail("student@cit.edu")).thenReturn(Optional.of(student));
+        when(userRepository.findByEmail("outsider@gmail.com")).thenReturn(Optional.empty());
+        when(userRepository.findByEmail("classmate@cit.edu")).thenReturn(Optional.of(
+                User.builder().id(UUID.randomUUID()).email("classmate@cit.edu").build()));
+        when(classroomAccessCache.isEnrolled(classroom.getId(), student.getId())).thenReturn(true);
+        when(userRepository.advanceDriveChangesPageToken(any(), anyString(), anyString())).thenReturn(1);
+    }
+
+    @Test
+    void firstSyncOnlyRecordsTheCursor() throws Exception {
+        FakeDriveChangeSource drive = new FakeDriveChangeSource(10)
+                .addFile("old-1", "old.pdf", FOLDER, "student@cit.edu")
+                .addFile("old-2", "older.pdf", FOLDER, "student@cit.edu");
+
+        int imported = syncService(drive).syncTeacher(teacher.getId(), List.of(classroom));
+
+        assertEquals(0, imported);
+        assertEquals(0, drive.pagesRead);
+        verify(userRepository).initDriveChangesPageToken(teacher.getId(), "2");
+        verify(documentRepository, never()).save(any());
+    }
+
+    @Test
+    void importsOnlyNewFilesInTheClassroomFolders() throws Exception {
+        FakeDriveChangeSource drive = new FakeDriveChangeSource(3)
+                .addFile("f-1", "report.pdf", FOLDER, "student@cit.edu")
+                .addFile("f-2", "elsewhere.pdf", "other-folder", "student@cit.edu")
+                .add(new DriveChangeSource.FileChange("f-3", false, "sub", "application/vnd.google-apps.folder",
+                        null, List.of(FOLDER), null, "teacher@cit.edu", false))
+                .add(new DriveChangeSource.FileChange("f-4", false, "uploaded.pdf", "application/pdf",
+                        10L, List.of(FOLDER), null, "student@cit.edu", true))
+                .add(new DriveChangeSource.FileChange("f-5", true, null, null, null, List.of(), null, null, false))
+                .addFile("f-6", "known.pdf", FOLDER, "student@cit.edu")
+                .addFile("f-7", "shared.pdf", FOLDER, "outsider@gmail.com");
+        when(documentRepository.existsByDriveFileId("f-6")).thenReturn(true);
+        teacher.setDriveChangesPageToken("0");
+
+        int imported = syncService(drive).syncTeacher(teacher.getId(), List.of(classroom));
+
+        assertEquals(2, imported);
+        assertEquals(3, drive.pagesRead);
+        verify(userRepository).advanceDriveChangesPageToken(teacher.getId(), "0", "3");
+        verify(userRepository).advanceDriveChangesPageToken(teacher.getId(), "3", "6");
+        verify(userRepository).advanceDriveChangesPageToken(teacher.getId(), "6", "7");
+
+        ArgumentCaptor<Document> saved = ArgumentCaptor.forClass(Document.class);
+        verify(documentRepository, times(2)).save(saved.capture());
+        Document fromStudent = saved.getAllValues().get(0);
+        assertEquals("f-1", fromStudent.getDriveFileId());
+        assertEquals("drive:f-1", fromStudent.getStoragePath());
+        assertEquals(student, fromStudent.getUser());
+        assertEquals(classroom, fromStudent.getClassroom());
+        assertEquals(DocumentStatus.UPLOADED, fromStudent.getStatus());
+        // Unknown Drive owner falls back to the teacher
+        assertEquals(teacher, saved.getAllValues().get(1).getUser());
+    }
+
+    @Test
+    void stopsWhenAnotherNodeAppliedThePage() throws Exception {
+        FakeDriveChangeSource drive = new FakeDriveChangeSource(10)
+                .addFile("f-1", "report.pdf", FOLDER, "student@cit.edu");
+        when(userRepository.advanceDriveChangesPageToken(teacher.getId(), "0", "1")).thenReturn(0);
+        teacher.setDriveChangesPageToken("0");
+
+        int imported = syncService(drive).syncTeacher(teacher.getId(), List.of(classroom));
+
+        assertEquals(0, imported);
+        verify(documentRepository, never()).save(any());
+    }
+
+    @Test
+    void nothingChangedLeavesTheCursorInPlace() throws Exception {
+        FakeDriveChangeSource drive = new FakeDriveChangeSource(10)
+                .addFile("f-1", "report.pdf", FOLDER, "student@cit.edu");
+        teacher.setDriveChangesPageToken("1");
+
+        int imported = syncService(drive).syncTeacher(teacher.getId(), List.of(classroom));
+
+        assertEquals(0, imported);
+        verify(userRepository, never()).advanceDriveChangesPageToken(any(), anyString(), anyString());
+        verify(documentRepository, never()).save(any());
+    }
+
+    @Test
+    void filesOfStudentsNotEnrolledInTheClassroomCountAsTheTeachers() throws Exception {
+        FakeDriveChangeSource drive = new FakeDriveChangeSource(10)
+                .addFile("f-1", "report.pdf", FOLDER, "classmate@cit.edu")
+                .addFile("f-2", "report.pdf", OTHER_FOLDER, "student@cit.edu");
+        teacher.setDriveChangesPageToken("0");
+
+        syncService(drive).syncTeacher(teacher.getId(), List.of(classroom, otherClassroom));
+
+        ArgumentCaptor<Document> saved = ArgumentCaptor.forClass(Document.class);
+        verify(documentRepository, times(2)).save(saved.capture());
+        // Registered, but not in this classroom
+        assertEquals(teacher, saved.getAllValues().get(0).getUser());
+        // Enrolled in the first classroom only
+        assertEquals(teacher, saved.getAllValues().get(1).getUser());
+    }
+
+    @Test
+    void oneCursorPerTeacherDispatchesChangesByParentFolder() throws Exception {
+        FakeDriveChangeSource drive = new FakeDriveChangeSource(10)
+                .addFile("f-1", "first.pdf", FOLDER, "student@cit.edu")
+                .addFile("f-2", "second.pdf", OTHER_FOLDER, "teacher@cit.edu");
+        when(classroomRepository.findByDriveFolderIdIsNotNull()).thenReturn(List.of(classroom, otherClassroom));
+        teacher.setDriveChangesPageToken("0");
+
+        syncService(drive).syncAll();
+
+        assertEquals(1, drive.pagesRead);
+        verify(userRepository).advanceDriveChangesPageToken(teacher.getId(), "0", "2");
+        ArgumentCaptor<Document> saved = ArgumentCaptor.forClass(Document.class);
+        verify(documentRepository, times(2)).save(saved.capture());
+        assertEquals(classroom, saved.getAllValues().get(0).getClassroom());
+        assertEquals(otherClassroom, saved.getAllValues().get(1).getClassroom());
+    }
+
+    private DriveFolderSyncService syncService(DriveChangeSource drive) {
+        DriveFolderSyncService service = new DriveFolderSyncService(classroomRepository, documentRepository, userRepository,
+                classroomAccessCache, drive, adminService, new SimpleMeterRegistry(), mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "maxPagesPerRun", 20);
+        return service;
+    }
+}
@@ -0,0 +1,104 @@
+package citu.stde.service;
+
+import citu.stde.dto.EvaluationDTO;
+import citu.stde.dto.EvaluationResponse;
+import citu.stde.entity.Document;
+import citu.stde.entity.DocumentStatus;
+import citu.stde.entity.DocumentText;
+import citu.stde.entity.Evaluation;
+import citu.stde.entity.User;
+import citu.stde.entity.UserType;
+import citu.stde.repository.DocumentRepository;
+import citu.stde.repository.EvaluationRepository;
+import citu.stde.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * A re-evaluation replaces the previous evaluation only once the AI has answered.
+ */
+class EvaluationServiceTest {
+
+    private final DocumentRepository documentRepository = mock(DocumentRepository.class);
+    private final EvaluationRepository evaluationRepository = mock(EvaluationRepository.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final LlmScheduler llmScheduler = mock(LlmScheduler.class);
+    private final DocumentTextService documentTextService = mock(DocumentTextService.class);
+    private final EvaluationLeaseService evaluationLeaseService = mock(EvaluationLeaseService.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    private final EvaluationService evaluationService = new EvaluationService(mock(ChatClient.Builder.class),
+            documentRepository, evaluationRepository, mock(DocumentStorageRouter.class), mock(ClassroomService.class),
+            userRepository, mock(AdminService.class), llmScheduler, mock(DocumentTextExtractor.class),
+            mock(BlobCache.class), documentTextService, evaluationLeaseService, new SimpleMeterRegistry(),
+            new KeysetPaging(), transactionManager);
+
+    private final User student = User.builder().id(UUID.randomUUID()).email("student@cit.edu")
+            .userType(UserType.STUDENT).evaluationCount(0).evaluationWindowStart(Instant.now()).build();
+    private final Document document = Document.builder().id(UUID.randomUUID()).user(student)
+            .filename("test-plan.docx").status(DocumentStatus.COMPLETED).build();
+    private final Evaluation previous = Evaluation.builder().id(UUID.randomUUID()).document(document)
+            .userId(student.getId()).overallScore(72).build();
+
+    @BeforeEach
+    void setUp() {
+        when(documentRepository.findById(document.getId())).thenReturn(Optional.of(document));
+        when(userRepository.findById(student.getId())).thenReturn(Optional.of(student));
+        when(evaluationLeaseService.claim(document)).thenReturn(true);
+        when(documentTextService.findCurrent(document)).thenReturn(Optional.of(DocumentText.builder()
+                .documentId(document.getId()).contentHash("changed-content").text("Test plan v2").build()));
+        when(evaluationRepository.findTopByUserIdAndDocument_ContentHashOrderByCreatedAtDesc(student.getId(), "changed-content"))
+                .thenReturn(Optional.empty());
+        when(evaluationRepository.findByDocumentId(document.getId())).thenReturn(Optional.of(previous));
+        when(evaluationRepository.save(any(Evaluation.class))).thenAnswer(call -> call.getArgument(0));
+        when(llmScheduler.<Boolean>submit(any(), any(), any(), eq("llm-validate"), any())).thenReturn(true);
+    }
+
+    @Test
+    void failedAiCallKeepsThePreviousEvaluation() {
+        when(llmScheduler.submit(any(), any(), any(), eq("llm-evaluate"), any()))
+                .thenThrow(new RequestDeadline.DeadlineExceededException("llm-evaluate", "timeout"));
+
+        assertThrows(RequestDeadline.DeadlineExceededException.class, () -> evaluationService.evaluateDocument(
+                document.getId(), student.getId(), RequestDeadline.after(Duration.ofSeconds(30))));
+
+        verify(evaluationRepository, never()).delete(any());
+        verify(evaluationRepository, never()).save(any());
+        verify(evaluationLeaseService).finish(document, DocumentStatus.FAILED);
+    }
+
+    @Test
+    void successfulAiCallReplacesThePreviousEvaluationInOneTransaction() {
+        when(llmScheduler.<EvaluationResponse>submit(any(), any(), any(), eq("llm-evaluate"), any()))
+                .thenReturn(new EvaluationResponse(80, "Complete", 85, "Clear", 90, "Consistent", 75, "Verifiable", 82, "Good"));
+
+        EvaluationDTO result = evaluationService.evaluateDocument(
+                document.getId(), student.getId(), RequestDeadline.after(Duration.ofSeconds(30)));
+
+        assertEquals(82, result.getOverallScore());
+        InOrder order = inOrder(transactionManager, evaluationRepository);
+        order.verify(transactionManager).getTransaction(any());
+        order.verify(evaluationRepository).delete(previous);
+        order.verify(evaluationRepository).save(any(Evaluation.class));
+        order.verify(transactionManager).commit(any());
+    }
+}
@@ -0,0 +1,45 @@
+package citu.stde.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-memory stand-in for the Drive Changes API: an append-only change log whose
+ * page tokens are positions in the log.
+ */
+class FakeDriveChangeSource implements DriveChangeSource {
+
+    private final List<FileChange> log = new ArrayList<>();
+    private final int pageSize;
+    int pagesRead = 0;
+
+    FakeDriveChangeSource(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    FakeDriveChangeSource add(FileChange change) {
+        log.add(change);
+        return this;
+    }
+
+    FakeDriveChangeSource addFile(String fileId, String name, String folderId, String ownerEmail) {
+        return add(new FileChange(fileId, false, name, "application/pdf", 1024L, List.of(folderId),
+                "https://drive.google.com/file/d/" + fileId + "/view", ownerEmail, false));
+    }
+
+    @Override
+    public synchronized String startPageToken(String principalName) {
+        return String.valueOf(log.size());
+    }
+
+    @Override
+    public synchronized ChangePage changes(String principalName, String pageToken) {
+        pagesRead++;
+        int from = Integer.parseInt(pageToken);
+        int to = Math.min(from + pageSize, log.size());
+        List<FileChange> page = List.copyOf(log.subList(from, to));
+        return to < log.size()
+                ? new ChangePage(page, String.valueOf(to), null)
+                : new ChangePage(page, null, String.valueOf(to));
+    }
+}
@@ -0,0 +1,182 @@
+package citu.stde.service;
+
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.drive.Drive;
+import com.google.api.services.drive.model.File;
+import com.google.api.services.drive.model.Permission;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Drive batch requests against a fake transport that answers every part from a
+ * per-file script: transient failures are retried in a new batch, 404 counts as deleted.
+ */
+class GoogleDriveServiceBatchTest {
+
+    private static final String BOUNDARY = "batch_test";
+    private static final Pattern PART_FILE = Pattern.compile("(?:DELETE|GET|POST) \\S*/files/([^\\s?/]+)");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<List<String>> batches = new ArrayList<>();
+    private Map<String, List<Integer>> statusesByFile;
+    private GoogleDriveService driveService;
+
+    @BeforeEach
+    void setUp() {
+        Drive drive = new Drive.Builder(new ScriptedBatchTransport(), GsonFactory.getDefaultInstance(), null)
+                .setApplicationName(DriveClientFactory.APPLICATION_NAME)
+                .build();
+        DriveClientFactory factory = mock(DriveClientFactory.class);
+        when(factory.forPrincipal("teacher@cit.edu")).thenReturn(drive);
+
+        DriveCallExecutor executor = new DriveCallExecutor(factory, meterRegistry) {
+            @Override
+            void sleep(long millis) {
+            }
+        };
+        ReflectionTestUtils.setField(executor, "permitsPerSecond", 1000.0);
+        ReflectionTestUtils.setField(executor, "burst", 1000);
+        ReflectionTestUtils.setField(executor, "maxWaitMillis", 10_000L);
+        ReflectionTestUtils.setField(executor, "initialBackoffMillis", 500L);
+        ReflectionTestUtils.setField(executor, "maxBackoffMillis", 32_000L);
+        ReflectionTestUtils.setField(executor, "maxBuckets", 10);
+
+        driveService = new GoogleDriveService(factory, executor, meterRegistry);
+        ReflectionTestUtils.setField(driveService, "batchMaxAttempts", 3);
+    }
+
+    @Test
+    void retriesTransientPartFailuresAndCountsNotFoundAsDeleted() throws IOException {
+        statusesByFile = Map.of(
+                "file-1", List.of(204),
+                "file-2", List.of(503, 204),
+                "file-3", List.of(404));
+
+        GoogleDriveService.BatchResult<Void> result =
+                driveService.deleteFiles(List.of("file-1", "file-2", "file-3"), "teacher@cit.edu");
+
+        assertFalse(result.hasFailures());
+        assertEquals(List.of("file-1", "file-2", "file-3"), result.results().keySet().stream().sorted().toList());
+        assertEquals(List.of(List.of("file-1", "file-2", "file-3"), List.of("file-2")), batches);
+        assertEquals(1.0, meterRegistry.get("stde.drive.batch.retried-parts").counter().count());
+    }
+
+    @Test
+    void reportsPartsThatKeepFailing() throws IOException {
+        statusesByFile = Map.of(
+                "file-1", List.of(204),
+                "file-2", List.of(503, 503, 503),
+                "file-3", List.of(403));
+
+        GoogleDriveService.BatchResult<Void> result =
+                driveService.deleteFiles(List.of("file-1", "file-2", "file-3"), "teacher@cit.edu");
+
+        assertEquals(List.of("file-1"), List.copyOf(result.results().keySet()));
+        assertTrue(result.failures().get("file-2").startsWith("503"));
+        assertTrue(result.failures().get("file-3").startsWith("403"));
+        assertEquals(3, batches.size()); // 403 without a rate-limit reason is not retried
+    }
+
+    @Test
+    void readsMetadataOfManyFilesInOneBatch() throws IOException {
+        statusesByFile = Map.of(
+                "file-1", List.of(200),
+                "file-2", List.of(429, 200),
+                "file-3", List.of(404));
+
+        GoogleDriveService.BatchResult<File> result =
+                driveService.getFilesMetadata(List.of("file-1", "file-2", "file-3"), "id, name", "teacher@cit.edu");
+
+        assertEquals("file-1", result.results().get("file-1").getId());
+        assertEquals("file-2", result.results().get("file-2").getId());
+        assertTrue(result.failures().get("file-3").startsWith("404")); // Only deletes treat 404 as done
+        assertEquals(List.of(List.of("file-1", "file-2", "file-3"), List.of("file-2")), batches);
+    }
+
+    @Test
+    void grantsAPermissionOnManyFilesInOneBatch() throws IOException {
+        statusesByFile = Map.of(
+                "file-1", List.of(200),
+                "file-2", List.of(200));
+
+        GoogleDriveService.BatchResult<Permission> result =
+                driveService.grantPermission(List.of("file-1", "file-2"), "student@cit.edu", "reader", "teacher@cit.edu");
+
+        assertFalse(result.hasFailures());
+        assertEquals(List.of("file-1", "file-2"), List.copyOf(result.results().keySet()));
+        assertEquals(1, batches.size());
+    }
+
+    // Answers each batch with one part per queued file, using the file's next scripted status
+    private class ScriptedBatchTransport extends MockHttpTransport {
+        @Override
+        public LowLevelHttpRequest buildRequest(String method, String url) {
+            return new MockLowLevelHttpRequest(url) {
+                @Override
+                public LowLevelHttpResponse execute() throws IOException {
+                    List<String> files = new ArrayList<>();
+                    Matcher matcher = PART_FILE.matcher(getContentAsString());
+                    while (matcher.find()) {
+                        files.add(matcher.group(1));
+                    }
+                    int attempt = batches.size();
+                    batches.add(files);
+
+                    StringBuilder body = new StringBuilder();
+                    for (String file : files) {
+                        List<Integer> statuses = statusesByFile.get(file);
+                        int status = statuses.get(Math.min(countBefore(file, attempt), statuses.size() - 1));
+                        body.append("--").append(BOUNDARY).append("\r\n")
+                                .append("Content-Type: application/http\r\n\r\n")
+                                .append(part(file, status)).append("\r\n");
+                    }
+                    body.append("--").append(BOUNDARY).append("--\r\n");
+                    return new MockLowLevelHttpResponse()
+                            .setContentType("multipart/mixed; boundary=" + BOUNDARY)
+                            .setContent(body.toString());
+                }
+            };
+        }
+
+        private int countBefore(String file, int attempt) {
+            return (int) batches.subList(0, attempt).stream().filter(batch -> batch.contains(file)).count();
+        }
+
+        private String part(String file, int status) {
+            if (status == 204) {
+                return "HTTP/1.1 204 No Content\r\nContent-Length: 0\r\n\r\n";
+            }
+            if (status == 200) {
+                String json = "{\"id\":\"" + file + "\"}";
+                return "HTTP/1.1 200 OK\r\nContent-Type: application/json; charset=UTF-8\r\n"
+                        + "Content-Length: " + json.length() + "\r\n\r\n" + json;
+            }
+            String reason = status == 404 ? "notFound" : status == 403 ? "insufficientFilePermissions"
+                    : status == 429 ? "rateLimitExceeded" : "backendError";
+            String json = "{\"error\":{\"code\":" + status + ",\"message\":\"" + reason + "\","
+                    + "\"errors\":[{\"domain\":\"global\",\"reason\":\"" + reason + "\",\"message\":\"" + reason + "\"}]}}";
+            return "HTTP/1.1 " + status + " Error\r\nContent-Type: application/json; charset=UTF-8\r\n"
+                    + "Content-Length: " + json.length() + "\r\n\r\n" + json;
+        }
+    }
+}
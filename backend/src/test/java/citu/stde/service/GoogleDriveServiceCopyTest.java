@@ -0,0 +1,119 @@
+package citu.stde.service;
+
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.drive.Drive;
+import com.google.api.services.drive.model.File;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * files.copy is not idempotent: when the response of a copy is lost, the retry looks the
+ * copy up by its appProperties tag before copying again.
+ */
+class GoogleDriveServiceCopyTest {
+
+    private static final Pattern COPY_ID = Pattern.compile("\"stdeCopyId\":\"([^\"]+)\"");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<String> copyIds = new ArrayList<>();
+    private final List<String> queries = new ArrayList<>();
+    private boolean copyLandsBeforeTheConnectionDrops;
+    private GoogleDriveService driveService;
+
+    @BeforeEach
+    void setUp() {
+        Drive drive = new Drive.Builder(new ScriptedTransport(), GsonFactory.getDefaultInstance(), null)
+                .setApplicationName(DriveClientFactory.APPLICATION_NAME)
+                .build();
+        DriveClientFactory factory = mock(DriveClientFactory.class);
+        when(factory.currentPrincipal()).thenReturn("student@cit.edu");
+        when(factory.forPrincipal("student@cit.edu")).thenReturn(drive);
+
+        DriveCallExecutor executor = new DriveCallExecutor(factory, meterRegistry) {
+            @Override
+            void sleep(long millis) {
+            }
+        };
+        ReflectionTestUtils.setField(executor, "permitsPerSecond", 1000.0);
+        ReflectionTestUtils.setField(executor, "burst", 1000);
+        ReflectionTestUtils.setField(executor, "maxWaitMillis", 10_000L);
+        ReflectionTestUtils.setField(executor, "maxAttempts", 5);
+        ReflectionTestUtils.setField(executor, "initialBackoffMillis", 500L);
+        ReflectionTestUtils.setField(executor, "maxBackoffMillis", 32_000L);
+        ReflectionTestUtils.setField(executor, "maxBuckets", 10);
+
+        driveService = new GoogleDriveService(factory, executor, meterRegistry);
+    }
+
+    @Test
+    void retryFindsTheCopyTheLostResponseWasFor() throws IOException {
+        copyLandsBeforeTheConnectionDrops = true;
+
+        File copy = driveService.copyFile("original", "folder-1", "id, name");
+
+        assertEquals("copy-1", copy.getId());
+        assertEquals(1, copyIds.size()); // Not copied a second time
+        assertEquals(1, queries.size());
+        assertTrue(queries.get(0).contains("value='" + copyIds.get(0) + "'"));
+        assertEquals(1.0, meterRegistry.get("stde.drive.copy.recovered").counter().count());
+    }
+
+    @Test
+    void copiesAgainWhenTheFirstAttemptNeverLanded() throws IOException {
+        copyLandsBeforeTheConnectionDrops = false;
+
+        File copy = driveService.copyFile("original", "folder-1", "id, name");
+
+        assertEquals("copy-2", copy.getId());
+        assertEquals(2, copyIds.size());
+        assertEquals(copyIds.get(0), copyIds.get(1)); // Same tag on every attempt
+    }
+
+    // First copy: connection reset. Lists answer with the copy if it landed; later copies succeed.
+    private class ScriptedTransport extends MockHttpTransport {
+        @Override
+        public LowLevelHttpRequest buildRequest(String method, String url) {
+            return new MockLowLevelHttpRequest(url) {
+                @Override
+                public LowLevelHttpResponse execute() throws IOException {
+                    if (url.contains("/copy")) {
+                        Matcher matcher = COPY_ID.matcher(getContentAsString());
+                        copyIds.add(matcher.find() ? matcher.group(1) : null);
+                        if (copyIds.size() == 1) {
+                            throw new IOException("Connection reset");
+                        }
+                        return json("{\"id\":\"copy-" + copyIds.size() + "\",\"name\":\"report.pdf\"}");
+                    }
+                    queries.add(URLDecoder.decode(url, StandardCharsets.UTF_8));
+                    return json(copyLandsBeforeTheConnectionDrops
+                            ? "{\"files\":[{\"id\":\"copy-1\",\"name\":\"report.pdf\"}]}"
+                            : "{\"files\":[]}");
+                }
+            };
+        }
+
+        private MockLowLevelHttpResponse json(String body) {
+            return new MockLowLevelHttpResponse().setContentType("application/json").setContent(body);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package citu.stde.service;
+
+import citu.stde.dto.CursorPage;
+import citu.stde.dto.PageCursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Requests without a cursor or limit read the whole list; paginated ones are sized
+ * by app.pagination.* and get a cursor only when more rows follow.
+ */
+class KeysetPagingTest {
+
+    private KeysetPaging paging;
+
+    @BeforeEach
+    void setUp() {
+        paging = new KeysetPaging();
+        ReflectionTestUtils.setField(paging, "defaultSize", 100);
+        ReflectionTestUtils.setField(paging, "maxSize", 500);
+    }
+
+    @Test
+    void withoutCursorOrLimitEveryRowIsOnOnePage() {
+        int size = paging.pageSize(null, null);
+
+        assertTrue(paging.probe(size).isUnpaged());
+        CursorPage<Integer> page = paging.page(rows(250), size, KeysetPagingTest::cursorOf);
+        assertEquals(250, page.items().size());
+        assertNull(page.nextCursor());
+    }
+
+    @Test
+    void paginatedRequestsAreSizedAndCapped() {
+        assertEquals(100, paging.pageSize("cursor", null));
+        assertEquals(100, paging.pageSize(null, 0));
+        assertEquals(20, paging.pageSize(null, 20));
+        assertEquals(500, paging.pageSize(null, 10_000));
+        assertEquals(21, paging.probe(20).getPageSize());
+    }
+
+    @Test
+    void boundedListsGetTheDefaultPageWithoutALimit() {
+        assertEquals(100, paging.boundedPageSize(null));
+        assertEquals(20, paging.boundedPageSize(20));
+        assertEquals(500, paging.boundedPageSize(10_000));
+    }
+
+    @Test
+    void theExtraRowMeansAnotherPage() {
+        CursorPage<Integer> page = paging.page(rows(21), 20, KeysetPagingTest::cursorOf);
+
+        assertEquals(20, page.items().size());
+        assertNotNull(page.nextCursor());
+        assertNull(paging.page(rows(20), 20, KeysetPagingTest::cursorOf).nextCursor());
+    }
+
+    private static List<Integer> rows(int count) {
+        return IntStream.range(0, count).boxed().toList();
+    }
+
+    private static PageCursor cursorOf(Integer row) {
+        return new PageCursor(Instant.EPOCH.plusSeconds(row), UUID.nameUUIDFromBytes(new byte[] {row.byteValue()}));
+    }
+}
@@ -0,0 +1,180 @@
+package citu.stde.service;
+
+import citu.stde.entity.UserType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Waiting calls are served by weighted fair queuing over (lane, classroom) flows.
+ * One slot is held busy while the calls queue up, then the grant order is recorded.
+ */
+class LlmSchedulerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<String> served = Collections.synchronizedList(new ArrayList<>());
+    private final List<Thread> callers = new ArrayList<>();
+    private final CountDownLatch blocker = new CountDownLatch(1);
+    private final CountDownLatch busyRunning = new CountDownLatch(1);
+    private LlmScheduler scheduler;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        scheduler = new LlmScheduler(meterRegistry);
+        ReflectionTestUtils.setField(scheduler, "maxConcurrent", 1);
+        ReflectionTestUtils.setField(scheduler, "queueTimeoutSeconds", 30L);
+        ReflectionTestUtils.setField(scheduler, "interactiveWeight", 8.0);
+        ReflectionTestUtils.setField(scheduler, "batchWeight", 2.0);
+        ReflectionTestUtils.setField(scheduler, "backgroundWeight", 1.0);
+        scheduler.registerMetrics();
+
+        // Take the only slot until the queue is set up
+        call(EvaluationLane.INTERACTIVE, "busy", () -> {
+            busyRunning.countDown();
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(busyRunning.await(5, TimeUnit.SECONDS));
+    }
+
+    @AfterEach
+    void tearDown() {
+        blocker.countDown();
+        scheduler.shutdown();
+    }
+
+    @Test
+    void higherWeightLaneOvertakesEarlierBatchCalls() throws InterruptedException {
+        enqueue(EvaluationLane.BATCH, "class-a", "batch-1");
+        enqueue(EvaluationLane.BATCH, "class-a", "batch-2");
+        enqueue(EvaluationLane.BACKGROUND, "class-a", "background-1");
+        enqueue(EvaluationLane.INTERACTIVE, "class-a", "interactive-1");
+        enqueue(EvaluationLane.INTERACTIVE, "class-a", "interactive-2");
+
+        assertEquals(List.of("interactive-1", "interactive-2", "batch-1", "batch-2", "background-1"), runQueued());
+    }
+
+    @Test
+    void floodedFlowDoesNotStarveAnotherClassroom() throws InterruptedException {
+        for (int i = 1; i <= 4; i++) {
+            enqueue(EvaluationLane.BATCH, "class-a", "a-" + i);
+        }
+        enqueue(EvaluationLane.BATCH, "class-b", "b-1");
+
+        // b-1 arrived last but is served right after a-1, not after all of class-a
+        assertEquals(List.of("a-1", "b-1", "a-2", "a-3", "a-4"), runQueued());
+    }
+
+    @Test
+    void weightsSetTheShareOfEachLane() throws InterruptedException {
+        enqueue(EvaluationLane.BACKGROUND, "class-a", "g-1");
+        enqueue(EvaluationLane.BACKGROUND, "class-a", "g-2");
+        for (int i = 1; i <= 10; i++) {
+            enqueue(EvaluationLane.INTERACTIVE, "class-a", "i-" + i);
+        }
+
+        // Weight 8 vs 1: eight interactive calls per background call, even though g-1 came first
+        assertEquals(List.of("i-1", "i-2", "i-3", "i-4", "i-5", "i-6", "i-7", "g-1", "i-8", "i-9", "i-10", "g-2"),
+                runQueued());
+    }
+
+    @Test
+    void cancellingBeforeTheCallStartsFreesItsSlot() throws InterruptedException {
+        ReflectionTestUtils.setField(scheduler, "maxConcurrent", 2);
+        // An executor whose only thread is busy, so the submitted call never starts
+        CountDownLatch executorBusy = new CountDownLatch(1);
+        ExecutorService stalled = Executors.newSingleThreadExecutor();
+        stalled.execute(() -> {
+            try {
+                executorBusy.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        ReflectionTestUtils.setField(scheduler, "llmExecutor", stalled);
+
+        RequestDeadline deadline = RequestDeadline.after(Duration.ofSeconds(30));
+        Thread caller = Thread.ofVirtual().start(() -> assertThrows(RequestDeadline.DeadlineExceededException.class,
+                () -> scheduler.submit(EvaluationLane.INTERACTIVE, "class-a", deadline, "test", () -> {
+                    served.add("never");
+                    return null;
+                })));
+        awaitInFlight(2);
+
+        deadline.cancel();
+        caller.join(5000);
+        awaitInFlight(1);
+
+        // The cancelled task neither runs nor releases a second time once the executor frees up
+        executorBusy.countDown();
+        stalled.shutdown();
+        assertTrue(stalled.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(1.0, meterRegistry.get("stde.llm.in-flight").gauge().value());
+        assertEquals(List.of(), served);
+    }
+
+    @Test
+    void laneFollowsTheRequestersRole() {
+        assertEquals(EvaluationLane.BATCH, EvaluationLane.forRequester(UserType.TEACHER));
+        assertEquals(EvaluationLane.INTERACTIVE, EvaluationLane.forRequester(UserType.STUDENT));
+    }
+
+    // Queues a call and waits until the scheduler has given it a ticket
+    private void enqueue(EvaluationLane lane, String flowKey, String name) throws InterruptedException {
+        int before = queued();
+        call(lane, flowKey, () -> served.add(name));
+        long until = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (queued() == before) {
+            assertTrue(System.nanoTime() < until, "call " + name + " never queued");
+            Thread.sleep(5);
+        }
+    }
+
+    private List<String> runQueued() throws InterruptedException {
+        blocker.countDown();
+        for (Thread caller : callers) {
+            caller.join(5000);
+        }
+        return List.copyOf(served);
+    }
+
+    private void call(EvaluationLane lane, String flowKey, Runnable body) {
+        Thread caller = Thread.ofVirtual().start(() -> scheduler.submit(lane, flowKey,
+                RequestDeadline.after(Duration.ofSeconds(30)), "test", () -> {
+                    body.run();
+                    return null;
+                }));
+        callers.add(caller);
+    }
+
+    private int queued() {
+        return meterRegistry.find("stde.llm.queue.depth").gauges().stream()
+                .mapToInt(gauge -> (int) gauge.value()).sum();
+    }
+
+    private void awaitInFlight(int expected) throws InterruptedException {
+        long until = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("stde.llm.in-flight").gauge().value() != expected) {
+            assertTrue(System.nanoTime() < until, "slot never taken");
+            Thread.sleep(5);
+        }
+    }
+}
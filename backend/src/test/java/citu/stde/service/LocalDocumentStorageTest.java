@@ -0,0 +1,76 @@
+package citu.stde.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Store, memory-mapped read and delete under a temporary app.storage.local.dir.
+ */
+class LocalDocumentStorageTest {
+
+    @TempDir
+    Path directory;
+
+    private LocalDocumentStorage storage;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        storage = new LocalDocumentStorage();
+        ReflectionTestUtils.setField(storage, "directory", directory.toString());
+        storage.init();
+    }
+
+    @Test
+    void storeOpenAndDelete() throws IOException {
+        byte[] content = "Test Case 1: login with valid credentials".getBytes(StandardCharsets.UTF_8);
+
+        DocumentStorage.StoredFile stored = storage.store(new ByteArrayInputStream(content), content.length,
+                "text/plain", "plan.txt", new DocumentStorage.StoreTarget(null, null));
+
+        assertTrue(stored.key().startsWith("documents/"));
+        assertNull(stored.driveWebViewLink());
+        assertArrayEquals(content, Files.readAllBytes(directory.resolve(stored.key())));
+        try (Stream<Path> leftovers = Files.list(directory.resolve("documents"))) {
+            assertTrue(leftovers.noneMatch(path -> path.getFileName().toString().endsWith(".tmp")));
+        }
+
+        try (InputStream in = storage.open(stored.key(), deadline())) {
+            assertArrayEquals(content, in.readAllBytes());
+        }
+
+        storage.delete(stored.key());
+        assertFalse(Files.exists(directory.resolve(stored.key())));
+    }
+
+    @Test
+    void rejectsKeysOutsideTheStorageDirectory() {
+        assertThrows(IllegalArgumentException.class, () -> storage.open("../outside", deadline()));
+        assertThrows(IllegalArgumentException.class, () -> storage.delete("documents/../../outside"));
+    }
+
+    @Test
+    void missingFileIsAnIOException() {
+        assertThrows(IOException.class, () -> storage.open("documents/missing", deadline()));
+    }
+
+    private static RequestDeadline deadline() {
+        return RequestDeadline.after(Duration.ofSeconds(10));
+    }
+}
@@ -0,0 +1,151 @@
+package citu.stde.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs S3DocumentStorage against a tiny in-memory, path-style S3 stand-in
+ * (PUT/GET/DELETE object), so no real bucket or MinIO is needed.
+ */
+class S3DocumentStorageTest {
+
+    private HttpServer server;
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    private S3DocumentStorage storage;
+
+    @BeforeEach
+    void startFakeS3() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+
+        storage = new S3DocumentStorage();
+        ReflectionTestUtils.setField(storage, "bucket", "stde-test");
+        ReflectionTestUtils.setField(storage, "region", "us-east-1");
+        ReflectionTestUtils.setField(storage, "endpoint", "http://127.0.0.1:" + server.getAddress().getPort());
+        ReflectionTestUtils.setField(storage, "pathStyle", true);
+        ReflectionTestUtils.setField(storage, "accessKey", "test");
+        ReflectionTestUtils.setField(storage, "secretKey", "test-secret");
+        ReflectionTestUtils.invokeMethod(storage, "init");
+    }
+
+    @AfterEach
+    void stopFakeS3() {
+        ReflectionTestUtils.invokeMethod(storage, "shutdown");
+        server.stop(0);
+    }
+
+    @Test
+    void storeOpenAndDelete() throws IOException {
+        byte[] content = "Test Case 1: login with valid credentials".getBytes(StandardCharsets.UTF_8);
+
+        DocumentStorage.StoredFile stored = storage.store(new ByteArrayInputStream(content), content.length,
+                "text/plain", "plan.txt", new DocumentStorage.StoreTarget(null, null));
+
+        assertTrue(stored.key().startsWith("documents/"));
+        assertNull(stored.driveWebViewLink());
+        assertArrayEquals(content, objects.get("/stde-test/" + stored.key()));
+
+        try (InputStream in = storage.open(stored.key(), RequestDeadline.after(Duration.ofSeconds(10)))) {
+            assertArrayEquals(content, in.readAllBytes());
+        }
+
+        storage.delete(stored.key());
+        assertFalse(objects.containsKey("/stde-test/" + stored.key()));
+    }
+
+    @Test
+    void missingObjectIsAnIOException() {
+        assertThrows(IOException.class, () -> storage.open("documents/missing", RequestDeadline.after(Duration.ofSeconds(10))));
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        switch (exchange.getRequestMethod()) {
+            case "PUT" -> {
+                byte[] body = readBody(exchange);
+                objects.put(path, body);
+                // The SDK checks the ETag against the MD5 of what it sent
+                exchange.getResponseHeaders().add("ETag", "\"" + md5Hex(body) + "\"");
+                exchange.sendResponseHeaders(200, -1);
+            }
+            case "GET" -> {
+                byte[] body = objects.get(path);
+                if (body == null) {
+                    byte[] error = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?><Error><Code>NoSuchKey</Code>"
+                            + "<Message>The specified key does not exist.</Message></Error>").getBytes(StandardCharsets.UTF_8);
+                    exchange.getResponseHeaders().add("Content-Type", "application/xml");
+                    exchange.sendResponseHeaders(404, error.length);
+                    exchange.getResponseBody().write(error);
+                } else {
+                    exchange.sendResponseHeaders(200, body.length);
+                    exchange.getResponseBody().write(body);
+                }
+            }
+            case "DELETE" -> {
+                objects.remove(path);
+                exchange.sendResponseHeaders(204, -1);
+            }
+            default -> exchange.sendResponseHeaders(405, -1);
+        }
+        exchange.close();
+    }
+
+    // Plain bodies are stored as-is; aws-chunked bodies (used over plain HTTP) are decoded
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        byte[] raw = exchange.getRequestBody().readAllBytes();
+        if (exchange.getRequestHeaders().getFirst("x-amz-decoded-content-length") == null) {
+            return raw;
+        }
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        int pos = 0;
+        while (pos < raw.length) {
+            int lineEnd = indexOfCrlf(raw, pos);
+            String header = new String(raw, pos, lineEnd - pos, StandardCharsets.US_ASCII);
+            int size = Integer.parseInt(header.split(";")[0].trim(), 16);
+            pos = lineEnd + 2;
+            if (size == 0) break;
+            decoded.write(raw, pos, size);
+            pos += size + 2;
+        }
+        return decoded.toByteArray();
+    }
+
+    private static String md5Hex(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int indexOfCrlf(byte[] bytes, int from) {
+        for (int i = from; i < bytes.length - 1; i++) {
+            if (bytes[i] == '\r' && bytes[i + 1] == '\n') return i;
+        }
+        return bytes.length;
+    }
+}